@@ -0,0 +1,254 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes backups in the compact format and reads them again, without a database
+ */
+@RunWith(AndroidJUnit4.class)
+public class BinaryBackupTest {
+    private static final long MILLIS = 1592659800000L;
+    private static final long CHAIN_ID = 0x5eed5eed5eedL;
+
+    final private List<ListEntry> entries = new ArrayList<>();
+    final private List<MyList> lists = new ArrayList<>();
+    final private BackupSource source = new BackupSource() {
+        @Override
+        public void forEachEntry(RowConsumer<ListEntry> consumer) throws IOException {
+            for (ListEntry entry : entries) {
+                consumer.accept(entry);
+            }
+        }
+
+        @Override
+        public void forEachList(RowConsumer<MyList> consumer) throws IOException {
+            for (MyList list : lists) {
+                consumer.accept(list);
+            }
+        }
+    };
+
+    public BinaryBackupTest() {
+        lists.add(new MyList(1, "Einkauf", 0));
+        lists.add(new MyList(2, "Einkauf", 1024));
+        lists.add(new MyList(3, null, -1024));
+        final ListEntry withAlarm = new ListEntry(1, "Milk", "2 l", MILLIS, 0, 1);
+        withAlarm.setAlarmDate(MILLIS + 60000);
+        entries.add(withAlarm);
+        entries.add(new ListEntry(2, "\u00c4pfel", null, MILLIS, -2048, 2));
+        entries.add(new ListEntry(3, "", "", 0, Integer.MAX_VALUE, 3));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    public void roundTripCompressed() throws IOException {
+        assertRoundTrip(true);
+    }
+
+    @Test
+    public void truncatedBackupIsRejected() throws IOException {
+        for (boolean compress : new boolean[] {false, true}) {
+            final byte[] backup = write(compress);
+            try {
+                read(Arrays.copyOf(backup, backup.length - 1), new ArrayList<ListEntry>(),
+                        new ArrayList<MyList>());
+                fail("Truncated backup was read, compressed: " + compress);
+            } catch (IOException expected) {
+                // The restore is rolled back
+            }
+        }
+    }
+
+    @Test
+    public void hugeRecordLengthIsRejected() throws IOException {
+        for (long length : new long[] {Integer.MAX_VALUE, Long.MAX_VALUE,
+                BinaryBackupFormat.MAX_RECORD_LENGTH}) {
+            final ByteArrayOutputStream out = header();
+            out.write(BinaryBackupFormat.RECORD_ENTRY);
+            BinaryBackupFormat.writeVarLong(out, length);
+            try {
+                read(out.toByteArray(), new ArrayList<ListEntry>(), new ArrayList<MyList>());
+                fail("Record of length " + length + " was read");
+            } catch (IOException expected) {
+                // Neither allocated nor read
+            }
+        }
+    }
+
+    @Test
+    public void hugeStringCountIsRejected() throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        BinaryBackupFormat.writeVarLong(payload, Integer.MAX_VALUE);
+        final ByteArrayOutputStream out = header();
+        out.write(BinaryBackupFormat.RECORD_STRINGS);
+        BinaryBackupFormat.writeVarLong(out, payload.size());
+        payload.writeTo(out);
+        try {
+            read(out.toByteArray(), new ArrayList<ListEntry>(), new ArrayList<MyList>());
+            fail("String table with " + Integer.MAX_VALUE + " strings was read");
+        } catch (IOException expected) {
+            // The payload can't hold that many strings
+        }
+    }
+
+    @Test
+    public void deltaRoundTrip() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final BinaryBackupWriter writer = new BinaryBackupWriter(out, true);
+        writer.setChain(CHAIN_ID, 3);
+        writer.writeDelta(new DeltaSource() {
+            @Override
+            public void forEachEntry(RowConsumer<ListEntry> consumer) throws IOException {
+                source.forEachEntry(consumer);
+            }
+
+            @Override
+            public void forEachList(RowConsumer<MyList> consumer) throws IOException {
+                source.forEachList(consumer);
+            }
+
+            @Override
+            public void forEachDeletedEntry(RowConsumer<Integer> consumer) throws IOException {
+                consumer.accept(42);
+            }
+
+            @Override
+            public void forEachDeletedList(RowConsumer<Integer> consumer) throws IOException {
+                consumer.accept(7);
+            }
+        });
+        final byte[] delta = out.toByteArray();
+
+        final BinaryBackupReader.ChainLink link =
+                BinaryBackupReader.readChainLink(new ByteArrayInputStream(delta));
+        assertNotNull(link);
+        assertEquals(CHAIN_ID, link.chainId);
+        assertEquals(3, link.index);
+
+        final List<ListEntry> readEntries = new ArrayList<>();
+        final List<MyList> readLists = new ArrayList<>();
+        final List<Integer> deletedEntries = new ArrayList<>();
+        final List<Integer> deletedLists = new ArrayList<>();
+        new BinaryBackupReader(new ByteArrayInputStream(delta)).read(
+                new RowConsumer<ListEntry>() {
+                    @Override
+                    public void accept(ListEntry entry) {
+                        readEntries.add(entry);
+                    }
+                }, new RowConsumer<MyList>() {
+                    @Override
+                    public void accept(MyList list) {
+                        readLists.add(list);
+                    }
+                }, new RowConsumer<Integer>() {
+                    @Override
+                    public void accept(Integer id) {
+                        deletedEntries.add(id);
+                    }
+                }, new RowConsumer<Integer>() {
+                    @Override
+                    public void accept(Integer id) {
+                        deletedLists.add(id);
+                    }
+                });
+        assertEquals(entries.size(), readEntries.size());
+        assertEquals(lists.size(), readLists.size());
+        assertEquals(Arrays.asList(42), deletedEntries);
+        assertEquals(Arrays.asList(7), deletedLists);
+
+        // A delta on its own is not a complete backup
+        try {
+            read(delta, new ArrayList<ListEntry>(), new ArrayList<MyList>());
+            fail("Delta was read as a complete backup");
+        } catch (IOException expected) {
+            // Only restored together with its base file
+        }
+    }
+
+    @Test
+    public void standaloneBackupHasNoChain() throws IOException {
+        assertNull(BinaryBackupReader.readChainLink(new ByteArrayInputStream(write(true))));
+    }
+
+    private void assertRoundTrip(final boolean compress) throws IOException {
+        final byte[] backup = write(compress);
+        assertTrue(BinaryBackupFormat.hasHeader(
+                new BufferedInputStream(new ByteArrayInputStream(backup))));
+        final List<ListEntry> readEntries = new ArrayList<>();
+        final List<MyList> readLists = new ArrayList<>();
+        read(backup, readEntries, readLists);
+
+        assertEquals(entries.size(), readEntries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final ListEntry expected = entries.get(i);
+            final ListEntry actual = readEntries.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getModificationDate(), actual.getModificationDate());
+            assertEquals(expected.getAlarmDate(), actual.getAlarmDate());
+            assertEquals(expected.getOrderIndex(), actual.getOrderIndex());
+            assertEquals(expected.getListId(), actual.getListId());
+        }
+        assertEquals(lists.size(), readLists.size());
+        for (int i = 0; i < lists.size(); i++) {
+            assertEquals(lists.get(i).getId(), readLists.get(i).getId());
+            assertEquals(lists.get(i).getTitle(), readLists.get(i).getTitle());
+            assertEquals(lists.get(i).getOrderIndex(), readLists.get(i).getOrderIndex());
+        }
+    }
+
+    private byte[] write(final boolean compress) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryBackupWriter(out, compress).write(source);
+        return out.toByteArray();
+    }
+
+    /**
+     * Start an uncompressed complete backup
+     * @return The header, records can be appended
+     */
+    private static ByteArrayOutputStream header() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(BinaryBackupFormat.MAGIC);
+        out.write(BinaryBackupFormat.VERSION);
+        out.write(0);
+        return out;
+    }
+
+    private static void read(final byte[] backup, final List<ListEntry> readEntries,
+                             final List<MyList> readLists) throws IOException {
+        new BinaryBackupReader(new ByteArrayInputStream(backup)).read(
+                new RowConsumer<ListEntry>() {
+                    @Override
+                    public void accept(ListEntry entry) {
+                        readEntries.add(entry);
+                    }
+                }, new RowConsumer<MyList>() {
+                    @Override
+                    public void accept(MyList list) {
+                        readLists.add(list);
+                    }
+                });
+    }
+}
@@ -0,0 +1,130 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryTable;
+import liste.tobiasfraenzel.de.liste.utils.Utilities;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the rows per second of mapping a large cursor with ListEntryMapper, which looks up
+ * the column indices once per cursor, with looking them up through getColumnIndex() for every
+ * row, as DatabaseHelper did before. The results are written to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CursorMappingBenchmarkTest {
+    private static final String DATABASE_NAME = "cursor_mapping_benchmark_test_db";
+    private static final int ROWS = 50000;
+    // Measured runs per mapper, the fastest one counts
+    private static final int RUNS = 3;
+
+    // Creates the mapper for a cursor
+    private interface MapperFactory {
+        RowMapper<ListEntry> create(Cursor c);
+    }
+
+    // The column indices are looked up again for every row
+    private static final RowMapper<ListEntry> PER_ROW_LOOKUP = new RowMapper<ListEntry>() {
+        @Override
+        public ListEntry map(Cursor c) {
+            final ListEntry entry = new ListEntry(
+                    c.getInt(c.getColumnIndex(ListEntryTable.COLUMN_ID)),
+                    c.getString(c.getColumnIndex(ListEntryTable.COLUMN_TITLE)),
+                    c.getString(c.getColumnIndex(ListEntryTable.COLUMN_DESCRIPTION)),
+                    c.getLong(c.getColumnIndex(ListEntryTable.COLUMN_TIMESTAMP)),
+                    c.getInt(c.getColumnIndex(ListEntryTable.COLUMN_ORDERINDEX)),
+                    c.getInt(c.getColumnIndex(ListEntryTable.COLUMN_GROUPID)));
+            if (!c.isNull(c.getColumnIndex(ListEntryTable.COLUMN_ALARMDATE))) {
+                entry.setAlarmDate(c.getLong(c.getColumnIndex(ListEntryTable.COLUMN_ALARMDATE)));
+            }
+            return entry;
+        }
+    };
+
+    private Context appContext;
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        appContext = InstrumentationRegistry.getTargetContext();
+        db = TestDatabase.create(appContext, DATABASE_NAME, null);
+        final int listId = (int) db.insertList("Benchmark");
+        final List<String> titles = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            titles.add("Entry " + i);
+        }
+        assertEquals(ROWS, db.insertEntries(listId, titles));
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.delete(appContext, db);
+    }
+
+    @Test
+    public void measureRowsPerSecond() {
+        final long perRow = measure("getColumnIndex per row", new MapperFactory() {
+            @Override
+            public RowMapper<ListEntry> create(Cursor c) {
+                return PER_ROW_LOOKUP;
+            }
+        });
+        final long precomputed = measure("precomputed column indices", new MapperFactory() {
+            @Override
+            public RowMapper<ListEntry> create(Cursor c) {
+                return new ListEntryMapper(c);
+            }
+        });
+        Log.d(Utilities.getLogTag(), "Mapping " + ROWS + " rows: getColumnIndex per row " +
+                perRow + " rows/s, precomputed column indices " + precomputed + " rows/s");
+    }
+
+    /**
+     * Map all rows of the table repeatedly and log the rows per second of the fastest run
+     * @param name Name of the mapper
+     * @param factory Creates the mapper for each cursor
+     * @return Rows per second of the fastest run
+     */
+    private long measure(final String name, final MapperFactory factory) {
+        long fastest = Long.MAX_VALUE;
+        // The first run warms up the cursor and the mapper and isn't counted
+        for (int run = 0; run <= RUNS; run++) {
+            final Cursor cursor = db.getReadableDatabase().query(ListEntryTable.TABLE_NAME,
+                    null, null, null, null, null, null);
+            int rows = 0;
+            final long start = System.nanoTime();
+            try {
+                final RowMapper<ListEntry> mapper = factory.create(cursor);
+                while (cursor.moveToNext()) {
+                    if (mapper.map(cursor) != null) {
+                        rows++;
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            final long nanos = System.nanoTime() - start;
+            assertEquals(ROWS, rows);
+            if (run > 0) {
+                fastest = Math.min(fastest, nanos);
+            }
+        }
+        final long rowsPerSecond = ROWS * 1000000000L / Math.max(fastest, 1);
+        Log.d(Utilities.getLogTag(), name + ": " + rowsPerSecond + " rows/s");
+        return rowsPerSecond;
+    }
+}
@@ -0,0 +1,91 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryTable;
+import liste.tobiasfraenzel.de.liste.database.model.OrphanSweepTable;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the purge of the ListEntries of deleted lists is remembered in the database,
+ * so that it still runs if the process was stopped before the sweep finished
+ */
+@RunWith(AndroidJUnit4.class)
+public class OrphanSweepTest {
+    private static final String DATABASE_NAME = "orphan_sweep_test_db";
+    // ID of a list that doesn't exist
+    private static final int DELETED_LIST_ID = 999;
+    // More than one batch of the sweep
+    private static final int ORPHANS = 1200;
+
+    private Context appContext;
+    private DatabaseHelper db;
+    private int listId;
+
+    @Before
+    public void setUp() {
+        appContext = InstrumentationRegistry.getTargetContext();
+        db = TestDatabase.create(appContext, DATABASE_NAME, null);
+        listId = (int) db.insertList("Kept");
+        db.insertEntry("Kept", "", listId, ListEntry.NO_ALARM);
+        final SQLiteDatabase sqLiteDatabase = db.getWritableDatabase();
+        for (int i = 0; i < ORPHANS; i++) {
+            final ContentValues values = new ContentValues();
+            values.put(ListEntryTable.COLUMN_TITLE, "Orphan " + i);
+            values.put(ListEntryTable.COLUMN_ORDERINDEX, i);
+            values.put(ListEntryTable.COLUMN_GROUPID, DELETED_LIST_ID);
+            values.put(ListEntryTable.COLUMN_TIMESTAMP, 1000L);
+            if (i == 0) {
+                values.put(ListEntryTable.COLUMN_ALARMDATE, 5000L);
+            }
+            sqLiteDatabase.insert(ListEntryTable.TABLE_NAME, null, values);
+        }
+        // As left behind by the upgrade to DB version 7
+        sqLiteDatabase.execSQL(OrphanSweepTable.CREATE_TABLE);
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.delete(appContext, db);
+    }
+
+    @Test
+    public void sweepRunsAfterRestart() {
+        // A new helper has no state of the one that ran the upgrade, like after a restart
+        db.close();
+        db = new DatabaseHelper(appContext, DATABASE_NAME, null);
+
+        final List<ListEntry> entriesWithAlarm = db.purgeOrphanedEntries();
+        assertEquals(1, entriesWithAlarm.size());
+        assertEquals(1, DatabaseUtils.queryNumEntries(db.getReadableDatabase(),
+                ListEntryTable.TABLE_NAME));
+        assertEquals(1, db.getEntryCountForList(listId));
+        assertEquals(0, DatabaseUtils.longForQuery(db.getReadableDatabase(),
+                OrphanSweepTable.EXISTS, null));
+
+        // Only once
+        assertTrue(db.purgeOrphanedEntries().isEmpty());
+    }
+
+    @Test
+    public void noSweepWithoutMarker() {
+        db.getWritableDatabase().execSQL(OrphanSweepTable.DELETE_TABLE);
+        assertTrue(db.purgeOrphanedEntries().isEmpty());
+        assertEquals(1 + ORPHANS, DatabaseUtils.queryNumEntries(db.getReadableDatabase(),
+                ListEntryTable.TABLE_NAME));
+    }
+}
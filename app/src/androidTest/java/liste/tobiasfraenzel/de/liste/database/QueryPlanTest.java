@@ -0,0 +1,197 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+import liste.tobiasfraenzel.de.liste.database.model.ChangeLogTable;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryFtsTable;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryTable;
+import liste.tobiasfraenzel.de.liste.database.model.ListTable;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the queries issued by DatabaseHelper are answered through an index
+ * instead of scanning and sorting the whole table. The queries are recorded while the
+ * methods of DatabaseHelper run, so the check follows changes of the queries.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    private static final String DATABASE_NAME = "query_plan_test_db";
+    // SQLiteQuery only exposes its SQL through toString()
+    private static final String QUERY_PREFIX = "SQLiteQuery: ";
+    private static final String ENTRIES = ListEntryTable.TABLE_NAME;
+    private static final String LISTS = ListTable.TABLE_NAME;
+
+    // Statements that don't return a cursor and therefore can't be recorded, built from the
+    // same constants as in DatabaseHelper. Counting all rows of a table (getEntriesCount)
+    // reads the whole table by definition and is therefore not part of this list. The same
+    // goes for sorting the search results by relevance (searchEntries) and for the one-time
+    // migrateToSparseOrderIndices and purgeOrphanedEntries sweeps.
+    private static final String[] STATEMENTS = {
+            DatabaseHelper.SQL_UPDATE_ENTRY,
+            DatabaseHelper.SQL_UPDATE_ENTRY_AND_TIMESTAMP,
+            DatabaseHelper.SQL_SET_ALARM_DATE,
+            DatabaseHelper.SQL_CLEAR_ALARM,
+            DatabaseHelper.SQL_TOUCH_ENTRY,
+            DatabaseHelper.SQL_MOVE_ENTRY,
+            DatabaseHelper.SQL_RESTORE_DELETE_ENTRY,
+            DatabaseHelper.SQL_RESTORE_DELETE_LIST,
+            // reorder
+            DatabaseHelper.getSetOrderIndexSql(ENTRIES),
+            DatabaseHelper.getSetOrderIndexSql(LISTS),
+            // getEntryCountForList, through DatabaseUtils.queryNumEntries()
+            "SELECT COUNT(*) FROM " + ENTRIES + " WHERE " + DatabaseHelper.getListSelection(1),
+            // getPositionInList
+            "SELECT COUNT(*) FROM " + ENTRIES + " WHERE " + DatabaseHelper.getListSelection(1) +
+                    " AND " + DatabaseHelper.getBeforeSelection(
+                            new ListEntry(1, "", "", 0, 1024, 1)),
+            // getSearchResultCount
+            "SELECT COUNT(*) FROM " + ListEntryFtsTable.TABLE_NAME + " WHERE " +
+                    DatabaseHelper.SEARCH_SELECTION,
+            // getTopOrderIndex
+            DatabaseHelper.getMinOrderIndexQuery(ENTRIES, DatabaseHelper.getListSelection(1)),
+            DatabaseHelper.getMinOrderIndexQuery(LISTS, null),
+            // deleteItems
+            "DELETE FROM " + ENTRIES + " WHERE " + DatabaseHelper.getListSelection(1),
+            // Change log triggers
+            ChangeLogTable.deleteChange(ChangeLogTable.KIND_ENTRY, "1"),
+            ChangeLogTable.deleteChange(ChangeLogTable.KIND_LIST, "1"),
+    };
+
+    final private List<String> recorded = new ArrayList<>();
+    final private SQLiteDatabase.CursorFactory recorder = new SQLiteDatabase.CursorFactory() {
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery,
+                                String editTable, SQLiteQuery query) {
+            recorded.add(query.toString().substring(QUERY_PREFIX.length()));
+            return new SQLiteCursor(masterQuery, editTable, query);
+        }
+    };
+    private Context appContext;
+    private DatabaseHelper db;
+    private int listId;
+    private int otherListId;
+    private int entryId;
+
+    @Before
+    public void setUp() {
+        appContext = InstrumentationRegistry.getTargetContext();
+        db = TestDatabase.create(appContext, DATABASE_NAME, recorder);
+        // Inserted directly, so that nothing is in the cache of the helper
+        final SQLiteDatabase sqLiteDatabase = db.getWritableDatabase();
+        listId = insertList(sqLiteDatabase, "Plan", 0);
+        otherListId = insertList(sqLiteDatabase, "Other", 1024);
+        for (int i = 0; i < 10; i++) {
+            final ContentValues values = new ContentValues();
+            values.put(ListEntryTable.COLUMN_TITLE, "Entry " + i);
+            values.put(ListEntryTable.COLUMN_ORDERINDEX, i * 1024);
+            values.put(ListEntryTable.COLUMN_GROUPID, i % 2 == 0 ? listId : otherListId);
+            values.put(ListEntryTable.COLUMN_TIMESTAMP, 1000L + i);
+            if (i == 3) {
+                values.put(ListEntryTable.COLUMN_ALARMDATE, 5000L);
+            }
+            entryId = (int) sqLiteDatabase.insert(ENTRIES, null, values);
+        }
+        recorded.clear();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.delete(appContext, db);
+    }
+
+    @Test
+    public void queriesUseIndexes() throws IOException {
+        final Set<Integer> excluded = Collections.singleton(entryId);
+        final ListEntry entry = db.getEntry(entryId);
+        db.getListTitle(listId);
+        db.getList(listId);
+        db.getAllListsWithEntryCounts();
+        db.getAllEntries();
+        db.getEntriesWithAlarm();
+        db.getEntriesOfList(listId);
+        db.getEntriesOfListPage(listId, entry, 50, excluded);
+        db.getEntriesOrderedByLastModifiedPage(entry, 50, excluded);
+        db.getEntryKeysOfList(listId, excluded, 100);
+        db.getEntryKeysOrderedByLastModified(excluded, 100);
+        db.reorderEntries(otherListId, entryId, entryId - 4, entryId - 2);
+        db.reorderLists(otherListId, DatabaseHelper.NO_ID, listId);
+
+        db.startBackupChain(42);
+        db.touchEntry(entryId);
+        readAll(db.getChanges(db.getChangeLogEnd()));
+        db.endBackupChain();
+
+        db.deleteList(db.getList(otherListId));
+
+        final List<String> queries = new ArrayList<>(recorded);
+        assertFalse("No queries recorded", queries.isEmpty());
+        queries.addAll(Arrays.asList(STATEMENTS));
+
+        final SQLiteDatabase sqLiteDatabase = db.getReadableDatabase();
+        final List<String> failures = new ArrayList<>();
+        for (final String query : queries) {
+            final Cursor plan = sqLiteDatabase.rawQuery("EXPLAIN QUERY PLAN " + query, null);
+            final int detailColumn = plan.getColumnIndex("detail");
+            while (plan.moveToNext()) {
+                final String detail = plan.getString(detailColumn);
+                final boolean fullScan = detail.startsWith("SCAN") && !detail.contains("INDEX");
+                if (fullScan || detail.contains("TEMP B-TREE")) {
+                    failures.add(query + " -> " + detail);
+                }
+            }
+            plan.close();
+        }
+        assertTrue("Queries without a suitable index: " + failures, failures.isEmpty());
+    }
+
+    private static int insertList(final SQLiteDatabase sqLiteDatabase, final String name,
+                                  final int orderIndex) {
+        final ContentValues values = new ContentValues();
+        values.put(ListTable.COLUMN_NAME, name);
+        values.put(ListTable.COLUMN_ORDERINDEX, orderIndex);
+        return (int) sqLiteDatabase.insert(LISTS, null, values);
+    }
+
+    /**
+     * Run all queries of a delta
+     */
+    private static void readAll(final DeltaSource changes) throws IOException {
+        changes.forEachEntry(new RowConsumer<ListEntry>() {
+            @Override
+            public void accept(ListEntry entry) { }
+        });
+        changes.forEachList(new RowConsumer<MyList>() {
+            @Override
+            public void accept(MyList list) { }
+        });
+        final RowConsumer<Integer> ignoreIds = new RowConsumer<Integer>() {
+            @Override
+            public void accept(Integer id) { }
+        };
+        changes.forEachDeletedEntry(ignoreIds);
+        changes.forEachDeletedList(ignoreIds);
+    }
+}
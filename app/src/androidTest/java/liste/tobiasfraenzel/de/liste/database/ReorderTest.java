@@ -0,0 +1,113 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryTable;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drags ListEntries while another one is swiped away, i.e. hidden in the view but still in
+ * the database until its undo window closes, and checks the stored order
+ */
+@RunWith(AndroidJUnit4.class)
+public class ReorderTest {
+    private static final String DATABASE_NAME = "reorder_test_db";
+
+    private Context appContext;
+    private DatabaseHelper db;
+    private int listId;
+    // IDs of the ListEntries "A" to "D", in the stored order
+    private int a;
+    private int b;
+    private int c;
+    private int d;
+
+    @Before
+    public void setUp() {
+        appContext = InstrumentationRegistry.getTargetContext();
+        db = TestDatabase.create(appContext, DATABASE_NAME, null);
+        listId = (int) db.insertList("Reorder");
+        db.insertEntries(listId, Arrays.asList("A", "B", "C", "D"));
+        final List<ListEntry> entries = db.getEntriesOfList(listId);
+        a = entries.get(0).getId();
+        b = entries.get(1).getId();
+        c = entries.get(2).getId();
+        d = entries.get(3).getId();
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.delete(appContext, db);
+    }
+
+    @Test
+    public void dragWhileSwipedEntryIsPending() {
+        // "B" is swiped away, the view shows A, C, D
+        final List<Integer> hidden = Collections.singletonList(b);
+        assertEquals(Arrays.asList(a, c, d), getShownIds(hidden));
+
+        // "D" is dragged between "A" and "C" before the undo window of "B" closes
+        db.reorderEntries(listId, d, a, c);
+        assertEquals(Arrays.asList(a, d, c), getShownIds(hidden));
+
+        // The undo window closes
+        db.deleteItems(Collections.singletonList(db.getEntry(b)),
+                Collections.<MyList>emptyList());
+        assertEquals(Arrays.asList(a, d, c), getShownIds(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void dragWithoutRoomBetweenNeighbours() {
+        // No order index fits between "A" and "C", so the list is renumbered first
+        setOrderIndex(a, 0);
+        setOrderIndex(b, 1);
+        setOrderIndex(c, 1);
+        setOrderIndex(d, 2);
+        final List<Integer> hidden = Collections.singletonList(b);
+        db.reorderEntries(listId, d, a, c);
+        assertEquals(Arrays.asList(a, d, c), getShownIds(hidden));
+    }
+
+    @Test
+    public void dragToTheEnds() {
+        db.reorderEntries(listId, a, d, DatabaseHelper.NO_ID);
+        assertEquals(Arrays.asList(b, c, d, a), getShownIds(Collections.<Integer>emptyList()));
+        db.reorderEntries(listId, c, DatabaseHelper.NO_ID, b);
+        assertEquals(Arrays.asList(c, b, d, a), getShownIds(Collections.<Integer>emptyList()));
+    }
+
+    private void setOrderIndex(final int id, final int orderIndex) {
+        db.getWritableDatabase().execSQL(
+                DatabaseHelper.getSetOrderIndexSql(ListEntryTable.TABLE_NAME),
+                new Object[]{orderIndex, id});
+    }
+
+    /**
+     * Get the IDs of the ListEntries of the list in the stored order, like the view shows them
+     * @param hiddenIds IDs of the ListEntries that are waiting to be deleted
+     * @return The IDs
+     */
+    private List<Integer> getShownIds(final Collection<Integer> hiddenIds) {
+        final List<Integer> ids = new ArrayList<>();
+        for (ListEntry key : db.getEntryKeysOfList(listId, hiddenIds, Integer.MAX_VALUE)) {
+            ids.add(key.getId());
+        }
+        return ids;
+    }
+}
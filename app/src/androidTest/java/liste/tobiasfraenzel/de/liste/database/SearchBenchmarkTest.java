@@ -0,0 +1,107 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.utils.Utilities;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the full-text search stays below 50 ms per keystroke on a database with
+ * 100k ListEntries. A keystroke counts the results and loads their first page, as the
+ * search view does. The timings are written to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchBenchmarkTest {
+    private static final String DATABASE_NAME = "search_benchmark_test_db";
+    private static final int ROWS = 100000;
+    private static final int WORDS_PER_TITLE = 3;
+    private static final int PAGE_SIZE = 50;
+    // Measured runs per keystroke, the median counts
+    private static final int RUNS = 5;
+    private static final long TARGET_MILLIS = 50;
+    // The titles are made of words built from these syllables
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "sa", "te", "vo"};
+    // Typed one character after another
+    private static final String QUERY = "milk kalo";
+
+    private Context appContext;
+    private DatabaseHelper db;
+
+    @Before
+    public void setUp() {
+        appContext = InstrumentationRegistry.getTargetContext();
+        db = TestDatabase.create(appContext, DATABASE_NAME, null);
+        final int listId = (int) db.insertList("Benchmark");
+        // Seeded, so that every run searches the same titles
+        final Random random = new Random(42);
+        final List<String> titles = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            final StringBuilder title = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_TITLE; w++) {
+                if (w > 0) {
+                    title.append(' ');
+                }
+                for (int s = 0; s < 3; s++) {
+                    title.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+            }
+            titles.add(i % 1000 == 0 ? title + " milk" : title.toString());
+        }
+        assertEquals(ROWS, db.insertEntries(listId, titles));
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.delete(appContext, db);
+    }
+
+    @Test
+    public void searchPerKeystroke() {
+        final List<Integer> emptyExclusions = Collections.emptyList();
+        long slowest = 0;
+        String slowestQuery = null;
+        for (int length = 1; length <= QUERY.length(); length++) {
+            final String query = QUERY.substring(0, length);
+            if (query.endsWith(" ")) {
+                // The same MATCH expression as without the space
+                continue;
+            }
+            final long[] millis = new long[RUNS];
+            int count = 0;
+            List<ListEntry> page = null;
+            for (int run = 0; run < RUNS; run++) {
+                final long start = System.nanoTime();
+                count = db.getSearchResultCount(query, emptyExclusions);
+                page = db.searchEntries(query, 0, PAGE_SIZE, emptyExclusions);
+                millis[run] = (System.nanoTime() - start) / 1000000;
+            }
+            Arrays.sort(millis);
+            final long median = millis[RUNS / 2];
+            assertEquals(Math.min(count, PAGE_SIZE), page.size());
+            Log.d(Utilities.getLogTag(), "Search \"" + query + "\": " + count + " results, " +
+                    median + " ms");
+            if (median > slowest) {
+                slowest = median;
+                slowestQuery = query;
+            }
+        }
+        assertTrue("Search \"" + slowestQuery + "\" took " + slowest + " ms",
+                slowest < TARGET_MILLIS);
+    }
+}
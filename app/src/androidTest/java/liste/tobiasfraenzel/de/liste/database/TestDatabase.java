@@ -0,0 +1,36 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Creates databases of their own for tests, so that tests neither read nor change the lists
+ * of the app
+ */
+final class TestDatabase {
+
+    private TestDatabase() { }
+
+    /**
+     * Create an empty database, replacing one that was left over by an earlier run
+     * @param context The target context
+     * @param name File name of the database
+     * @param factory Creates the cursors of all queries, or null for the default cursors
+     * @return The helper of the new database
+     */
+    static DatabaseHelper create(final Context context, final String name,
+                                 final SQLiteDatabase.CursorFactory factory) {
+        context.deleteDatabase(name);
+        return new DatabaseHelper(context, name, factory);
+    }
+
+    /**
+     * Close a database created by create() and delete its file
+     * @param context The target context
+     * @param db The helper of the database
+     */
+    static void delete(final Context context, final DatabaseHelper db) {
+        db.close();
+        context.deleteDatabase(db.getDatabaseName());
+    }
+}
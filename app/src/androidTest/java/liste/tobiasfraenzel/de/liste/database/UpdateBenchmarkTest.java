@@ -0,0 +1,89 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryTable;
+import liste.tobiasfraenzel.de.liste.utils.Utilities;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the per-update latency of a full ContentValues update with the narrow, compiled
+ * updates of DatabaseHelper. The timings are written to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UpdateBenchmarkTest {
+    private static final int ITERATIONS = 500;
+    private static final String DATABASE_NAME = "update_benchmark_test_db";
+
+    private Context appContext;
+    private DatabaseHelper db;
+    private MyList list;
+    private ListEntry entry;
+
+    @Before
+    public void setUp() {
+        appContext = InstrumentationRegistry.getTargetContext();
+        db = TestDatabase.create(appContext, DATABASE_NAME, null);
+        list = db.getList(db.insertList("Benchmark"));
+        entry = db.getEntry(db.insertEntry("Benchmark entry", "Description",
+                list.getId(), ListEntry.NO_ALARM));
+    }
+
+    @After
+    public void tearDown() {
+        TestDatabase.delete(appContext, db);
+    }
+
+    @Test
+    public void measureUpdateLatency() {
+        final SQLiteDatabase sqLiteDatabase = db.getWritableDatabase();
+        final String[] whereArgs = {String.valueOf(entry.getId())};
+
+        // Before: all columns of the entry are written through ContentValues
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            final ContentValues values = new ContentValues();
+            values.put(ListEntryTable.COLUMN_TITLE, entry.getTitle());
+            values.put(ListEntryTable.COLUMN_DESCRIPTION, entry.getDescription());
+            values.put(ListEntryTable.COLUMN_TIMESTAMP, System.currentTimeMillis());
+            values.put(ListEntryTable.COLUMN_GROUPID, entry.getListId());
+            values.put(ListEntryTable.COLUMN_ALARMDATE, 1000L + i);
+            sqLiteDatabase.update(ListEntryTable.TABLE_NAME, values,
+                    ListEntryTable.COLUMN_ID + " = ?", whereArgs);
+        }
+        final long fullNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // After: only the alarm date is written with a compiled statement
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            db.setAlarmDate(entry.getId(), 1000L + i);
+        }
+        final long narrowNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            db.touchEntry(entry.getId());
+        }
+        final long touchNanos = (System.nanoTime() - start) / ITERATIONS;
+
+        Log.d(Utilities.getLogTag(), "Per update: full " + fullNanos / 1000 + " us, set alarm " +
+                narrowNanos / 1000 + " us, touch " + touchNanos / 1000 + " us");
+
+        assertEquals(1000L + ITERATIONS - 1, db.getEntry(entry.getId()).getAlarmDate());
+        db.removeAlarmForEntryId(entry.getId());
+        assertFalse(db.getEntry(entry.getId()).hasAlarm());
+    }
+}
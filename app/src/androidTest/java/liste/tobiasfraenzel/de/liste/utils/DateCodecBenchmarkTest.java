@@ -0,0 +1,120 @@
+package liste.tobiasfraenzel.de.liste.utils;
+
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the time and the allocated bytes per call of DateCodec with formatters that are
+ * created on every call, as the date helpers of Utilities did before. The results are written
+ * to the log.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DateCodecBenchmarkTest {
+    private static final int ITERATIONS = 2000;
+    private static final long MILLIS = 1592659800000L;
+
+    // An operation that is measured
+    private interface Operation {
+        void run() throws ParseException;
+    }
+
+    @Test
+    public void formatAndParseFixedPattern() throws ParseException {
+        final String formatted = DateCodec.format(Constants.ALARM_DATE_FORMAT, MILLIS);
+        assertEquals(newFullDateFormat().format(new Date(MILLIS)), formatted);
+        assertEquals(newFullDateFormat().parse(formatted).getTime(),
+                DateCodec.parse(Constants.ALARM_DATE_FORMAT, formatted));
+        // Without leading zeros, as SimpleDateFormat accepts it
+        assertEquals(newFullDateFormat().parse("2020-6-20 9:30").getTime(),
+                DateCodec.parse(Constants.ALARM_DATE_FORMAT, "2020-6-20 9:30"));
+    }
+
+    @Test
+    public void measureFormatAndParse() throws ParseException {
+        final String formatted = DateCodec.format(Constants.ALARM_DATE_FORMAT, MILLIS);
+
+        measure("format fixed pattern, new SimpleDateFormat", new Operation() {
+            @Override
+            public void run() {
+                newFullDateFormat().format(new Date(MILLIS));
+            }
+        });
+        measure("format fixed pattern, DateCodec", new Operation() {
+            @Override
+            public void run() {
+                DateCodec.format(Constants.ALARM_DATE_FORMAT, MILLIS);
+            }
+        });
+        measure("parse fixed pattern, new SimpleDateFormat", new Operation() {
+            @Override
+            public void run() throws ParseException {
+                newFullDateFormat().parse(formatted);
+            }
+        });
+        measure("parse fixed pattern, DateCodec", new Operation() {
+            @Override
+            public void run() throws ParseException {
+                DateCodec.parse(Constants.ALARM_DATE_FORMAT, formatted);
+            }
+        });
+        measure("format local date, new DateFormat", new Operation() {
+            @Override
+            public void run() {
+                final DateFormat df = DateFormat.getDateInstance(DateFormat.SHORT,
+                        Locale.getDefault());
+                df.setTimeZone(TimeZone.getDefault());
+                df.format(new Date(MILLIS));
+            }
+        });
+        measure("format local date, DateCodec", new Operation() {
+            @Override
+            public void run() {
+                DateCodec.formatLocalDateShort(MILLIS);
+            }
+        });
+    }
+
+    /**
+     * Run an operation repeatedly and log the time and the allocated bytes per run
+     * @param name Name of the operation
+     * @param operation The operation
+     */
+    @SuppressWarnings("deprecation")
+    private static void measure(final String name, final Operation operation)
+            throws ParseException {
+        // Warm up, so that the cached formatters exist
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            operation.run();
+        }
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        final long nanos = (System.nanoTime() - start) / ITERATIONS;
+        Debug.stopAllocCounting();
+        final long bytes = Debug.getThreadAllocSize() / ITERATIONS;
+        Log.d(Utilities.getLogTag(), name + ": " + nanos + " ns/op, " + bytes + " bytes/op");
+    }
+
+    private static SimpleDateFormat newFullDateFormat() {
+        final SimpleDateFormat sdf = new SimpleDateFormat(Constants.ALARM_DATE_FORMAT,
+                Locale.getDefault());
+        sdf.setTimeZone(TimeZone.getDefault());
+        return sdf;
+    }
+}
@@ -0,0 +1,60 @@
+package liste.tobiasfraenzel.de.liste.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that drawing the background of a swiped item, which happens on every frame of
+ * the swipe animation, doesn't allocate once the renderer is warmed up.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SwipeBackgroundRendererTest {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 160;
+    private static final int FRAMES = 200;
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void drawDoesNotAllocate() {
+        final Context appContext = InstrumentationRegistry.getTargetContext();
+        final SwipeBackgroundRenderer renderer = new SwipeBackgroundRenderer(appContext);
+        final View itemView = new View(appContext);
+        itemView.layout(0, 0, WIDTH, HEIGHT);
+        final RecyclerView.ViewHolder viewHolder = new RecyclerView.ViewHolder(itemView) { };
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT,
+                Bitmap.Config.ARGB_8888));
+
+        // Warm up: the icons prepare what they need for drawing on the first frames
+        swipe(renderer, canvas, viewHolder);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        swipe(renderer, canvas, viewHolder);
+        Debug.stopAllocCounting();
+        assertEquals(0, Debug.getThreadAllocCount());
+    }
+
+    /**
+     * Draw the frames of a swipe to the left and of a swipe to the right
+     */
+    private static void swipe(final SwipeBackgroundRenderer renderer, final Canvas canvas,
+                              final RecyclerView.ViewHolder viewHolder) {
+        for (int i = 1; i <= FRAMES; i++) {
+            final float dX = WIDTH * i / (float) FRAMES;
+            renderer.draw(canvas, viewHolder, dX);
+            renderer.draw(canvas, viewHolder, -dX);
+        }
+    }
+}
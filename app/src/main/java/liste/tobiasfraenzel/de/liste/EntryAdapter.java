@@ -1,7 +1,7 @@
 package liste.tobiasfraenzel.de.liste;
 
-import android.annotation.SuppressLint;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,20 +11,17 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 
-import liste.tobiasfraenzel.de.liste.database.DatabaseHelper;
-import liste.tobiasfraenzel.de.liste.utils.Constants;
 import liste.tobiasfraenzel.de.liste.utils.Utilities;
 
 // Adapter to display the ListEntries
 public class EntryAdapter extends RecyclerView.Adapter<EntryAdapter.MyViewHolder>{
 
-    final private List<ListEntry> entriesList;
+    final private PagedEntryList entriesList;
     private boolean showListName = false;
+    // Names of the lists by ID, for ListEntries that were loaded without their list name
+    final private SparseArray<String> listNames = new SparseArray<>();
 
     public static class MyViewHolder extends RecyclerView.ViewHolder {
         final public TextView title;
@@ -46,8 +43,36 @@ public class EntryAdapter extends RecyclerView.Adapter<EntryAdapter.MyViewHolder
         }
     }
 
-    public EntryAdapter(List<ListEntry> entriesList) {
+    public EntryAdapter(PagedEntryList entriesList) {
         this.entriesList = entriesList;
+        // Lets the RecyclerView keep the rows of ListEntries that didn't change on a reload
+        setHasStableIds(true);
+        // The placeholders are replaced once their page is loaded
+        entriesList.setOnPagesLoadedListener(new PagedEntryList.OnPagesLoadedListener() {
+            @Override
+            public void onPagesLoaded(int positionStart, int itemCount) {
+                notifyItemRangeChanged(positionStart, itemCount);
+            }
+        });
+    }
+
+    /**
+     * Show or hide the list name for all ListEntries
+     * @param showListName True if the list name is shown below the title
+     */
+    final protected void setShowListName(final boolean showListName) {
+        this.showListName = showListName;
+    }
+
+    /**
+     * Set the names of the lists that are used if a ListEntry was loaded without its list name
+     * @param lists All MyLists
+     */
+    final protected void setListNames(final List<MyList> lists) {
+        listNames.clear();
+        for (MyList list : lists) {
+            listNames.put(list.getId(), list.getTitle());
+        }
     }
 
     // Create view objects from layout (inflate)
@@ -61,53 +86,41 @@ public class EntryAdapter extends RecyclerView.Adapter<EntryAdapter.MyViewHolder
     }
 
     // Populate the view with data
-    @SuppressLint("SetTextI18n")
     @Override
     public void onBindViewHolder(@NonNull MyViewHolder holder, int position) {
-        final ListEntry entry = entriesList.get(position);
-        // Show or hide the list name for all ListEntries, depending on what's set in the first entry
-        if (position == 0 && entry.isShowListName()) {
-            showListName = true;
-        }
+        // Requests the page containing the position in the background, if it's not in
+        // memory. The Strings of the display model were prepared when the page was loaded.
+        final EntryDisplayModel entry = entriesList.getDisplayModel(position);
+        // Show or hide the list name for all ListEntries
         if (showListName) {
             holder.listName.setVisibility(View.VISIBLE);
-            DatabaseHelper db = new DatabaseHelper(holder.itemView.getContext());
-            holder.listName.setText(db.getListTitle(entry.getListId()));
+            final String listName = entry.getListName();
+            holder.listName.setText(listName != null ? listName :
+                    listNames.get(entry.getListId(), ""));
         } else {
             holder.listName.setVisibility(View.GONE);
         }
 
         // Set title and description
         holder.title.setText(entry.getTitle());
-        if (entry.getDescription().isEmpty()) {
-            // Hide description to safe space if it's empty
-            holder.description.setVisibility(View.GONE);
-        } else {
+        if (entry.showDescription()) {
             holder.description.setVisibility(View.VISIBLE);
             holder.description.setText(entry.getDescription());
+        } else {
+            // Hide description to safe space if it's empty
+            holder.description.setVisibility(View.GONE);
         }
 
-        // Format and display "last modified" timestamp
-        holder.timestamp.setText(formatDate(entry.getModificationDate()));
+        // Display "last modified" timestamp
+        holder.timestamp.setText(entry.getModificationDate());
 
-        if (entry.getAlarmDate() == null || entry.getAlarmDate().isEmpty()) {
-            holder.alarmIcon.setVisibility(View.GONE);
-            holder.alarmDate.setVisibility(View.GONE);
-        } else {
+        if (entry.showAlarm()) {
             holder.alarmIcon.setVisibility(View.VISIBLE);
             holder.alarmDate.setVisibility(View.VISIBLE);
-
-            Date parsedAlarmDate;
-            try {
-                parsedAlarmDate = Utilities.getFullDateFormat().parse(entry.getAlarmDate());
-
-                final String date = Utilities.convertToLocalDateString(parsedAlarmDate);
-                final String time = Utilities.convertToLocalTimeString(parsedAlarmDate);
-
-                holder.alarmDate.setText(time + " " + date);
-            } catch (ParseException e) {
-                e.printStackTrace();
-            }
+            holder.alarmDate.setText(entry.getAlarmDate());
+        } else {
+            holder.alarmIcon.setVisibility(View.GONE);
+            holder.alarmDate.setVisibility(View.GONE);
         }
     }
 
@@ -126,43 +139,16 @@ public class EntryAdapter extends RecyclerView.Adapter<EntryAdapter.MyViewHolder
         return entriesList.size();
     }
 
-    /**
-     * Format timestamp to local date format
-     * @param dateStr Date String in the format 2018-02-21 00:15:42
-     * @return Formatted date String in the local format, for example Jun 20, 2020 or 20.06.2020
-     */
-    private String formatDate(final String dateStr) {
-        try {
-            @SuppressLint("SimpleDateFormat") final SimpleDateFormat fmt = new SimpleDateFormat(Constants.TIMESTAMP_DATE_FORMAT);
-            final Date date = fmt.parse(dateStr);
-            return Utilities.convertToLocalDateStringShort(date);
-        } catch (ParseException e) {
-            Log.e(Utilities.getLogTag(), "ParseException on this date: " + dateStr);
-            e.printStackTrace();
-            return "";
-        }
-    }
-
-    /**
-     * Delete all ListEntries from this adapter
-     */
-    final protected void clear() {
-        entriesList.clear();
-    }
-
-    /**
-     * Add a List of ListEntries to this adapter
-     * @param entries The ListEntries to be added
-     */
-    final protected void addAll(final List<ListEntry> entries) {
-        entriesList.addAll(entries);
+    @Override
+    public long getItemId(int position) {
+        return entriesList.getId(position);
     }
 
     /**
      * Get all ListEntries currently added to this adapter
      * @return The List of ListEntries
      */
-    final protected List<ListEntry> getAll() {
+    final protected PagedEntryList getAll() {
         return entriesList;
     }
 
@@ -0,0 +1,107 @@
+package liste.tobiasfraenzel.de.liste;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import liste.tobiasfraenzel.de.liste.utils.DateCodec;
+
+// How a ListEntry is shown in the EntryAdapter. Created once when the ListEntry is loaded,
+// so that binding a row only sets the prepared Strings and doesn't format any dates.
+public class EntryDisplayModel {
+    // Shown for a row whose ListEntry disappeared from the database, until the list is reloaded
+    static final EntryDisplayModel PLACEHOLDER = new EntryDisplayModel();
+
+    final private String title;
+    final private String description;
+    final private boolean showDescription;
+    final private String modificationDate;
+    final private String alarmDate;
+    final private boolean showAlarm;
+    final private int listId;
+    // Null if the ListEntry was loaded without the name of its list
+    final private String listName;
+
+    private EntryDisplayModel(final ListEntry entry) {
+        title = entry.getTitle();
+        description = entry.getDescription();
+        // Hide description to save space if it's empty
+        showDescription = !description.isEmpty();
+        // For example Jun 20, 2020 or 20.06.2020
+        modificationDate = DateCodec.formatLocalDateShort(entry.getModificationDate());
+        showAlarm = entry.hasAlarm();
+        if (showAlarm) {
+            alarmDate = DateCodec.formatLocalTime(entry.getAlarmDate()) + " " +
+                    DateCodec.formatLocalDate(entry.getAlarmDate());
+        } else {
+            alarmDate = "";
+        }
+        listId = entry.getListId();
+        listName = entry.getListName();
+    }
+
+    private EntryDisplayModel() {
+        title = "";
+        description = "";
+        showDescription = false;
+        modificationDate = "";
+        alarmDate = "";
+        showAlarm = false;
+        listId = 0;
+        listName = "";
+    }
+
+    /**
+     * Create the display model of a ListEntry
+     * @param entry The ListEntry
+     * @return The display model
+     */
+    public static EntryDisplayModel of(final ListEntry entry) {
+        return new EntryDisplayModel(entry);
+    }
+
+    /**
+     * Create the display models of some ListEntries, e.g. of a page that was just loaded.
+     * Can be called on a background thread.
+     * @param entries The ListEntries
+     * @return The display models in the order of the ListEntries
+     */
+    public static List<EntryDisplayModel> of(final List<ListEntry> entries) {
+        final List<EntryDisplayModel> models = new ArrayList<>(entries.size());
+        for (ListEntry entry : entries) {
+            models.add(new EntryDisplayModel(entry));
+        }
+        return models;
+    }
+
+    final public String getTitle() {
+        return title;
+    }
+
+    final public String getDescription() {
+        return description;
+    }
+
+    final public boolean showDescription() {
+        return showDescription;
+    }
+
+    final public String getModificationDate() {
+        return modificationDate;
+    }
+
+    final public String getAlarmDate() {
+        return alarmDate;
+    }
+
+    final public boolean showAlarm() {
+        return showAlarm;
+    }
+
+    final public int getListId() {
+        return listId;
+    }
+
+    final public String getListName() {
+        return listName;
+    }
+}
@@ -1,22 +1,25 @@
 package liste.tobiasfraenzel.de.liste;
 
 public class ListEntry extends ListItem {
+    // Alarm date of ListEntries without an alarm
+    public static final long NO_ALARM = 0;
+
     private String description;
-    private String alarmDate;
-    private String modificationDate;
+    // Dates in milliseconds since the epoch
+    private long alarmDate = NO_ALARM;
+    private long modificationDate;
     private int listId;
-
-    private boolean showListName;
+    // Name of the list, only loaded for views that show it. Not part of the backup.
+    private transient String listName;
 
     public ListEntry(final int id, final String title, final String description,
-                     final String modificationDate, final int orderIndex, final int listId) {
+                     final long modificationDate, final int orderIndex, final int listId) {
         setId(id);
         setTitle(title);
         setDescription(description);
         setModificationDate(modificationDate);
         setOrderIndex(orderIndex);
         setListId(listId);
-        setShowListName(false);
     }
 
     final public String getDescription() {
@@ -27,19 +30,23 @@ public class ListEntry extends ListItem {
         this.description = description;
     }
 
-    final public String getAlarmDate() {
+    final public long getAlarmDate() {
         return alarmDate;
     }
 
-    final public void setAlarmDate(final String alarmDate) {
+    final public void setAlarmDate(final long alarmDate) {
         this.alarmDate = alarmDate;
     }
 
-    final public String getModificationDate() {
+    final public boolean hasAlarm() {
+        return alarmDate != NO_ALARM;
+    }
+
+    final public long getModificationDate() {
         return modificationDate;
     }
 
-    final public void setModificationDate(final String modificationDate) {
+    final public void setModificationDate(final long modificationDate) {
         this.modificationDate = modificationDate;
     }
 
@@ -51,11 +58,11 @@ public class ListEntry extends ListItem {
         this.listId = listId;
     }
 
-    final public boolean isShowListName() {
-        return showListName;
+    final public String getListName() {
+        return listName;
     }
 
-    final public void setShowListName(final boolean showListName) {
-        this.showListName = showListName;
+    final public void setListName(final String listName) {
+        this.listName = listName;
     }
 }
@@ -0,0 +1,65 @@
+package liste.tobiasfraenzel.de.liste;
+
+import android.text.TextUtils;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.List;
+
+// Compares two versions of a list of MyLists, so that only the rows that were inserted,
+// removed, moved or changed are updated. Items are matched by their ID. The ListEntries are
+// compared by their keys instead, see PagedEntryList.Keys.
+public abstract class ListItemDiffCallback<T extends ListItem> extends DiffUtil.Callback {
+    final private List<T> oldItems;
+    final private List<T> newItems;
+
+    private ListItemDiffCallback(final List<T> oldItems, final List<T> newItems) {
+        this.oldItems = oldItems;
+        this.newItems = newItems;
+    }
+
+    /**
+     * Compute the changes between two versions of the MyLists. Can be called on any thread.
+     * @param oldLists The MyLists that are shown
+     * @param newLists The MyLists that will be shown
+     * @return The changes, to be dispatched to the adapter
+     */
+    public static DiffUtil.DiffResult diffLists(final List<MyList> oldLists,
+                                                final List<MyList> newLists) {
+        return DiffUtil.calculateDiff(new ListItemDiffCallback<MyList>(oldLists, newLists) {
+            @Override
+            boolean contentsTheSame(final MyList oldList, final MyList newList) {
+                return TextUtils.equals(oldList.getTitle(), newList.getTitle()) &&
+                        oldList.getEntryCount() == newList.getEntryCount();
+            }
+        });
+    }
+
+    /**
+     * Check whether an item has to be bound again
+     * @param oldItem The item that is shown
+     * @param newItem The same item, as it will be shown
+     * @return True if the item looks the same
+     */
+    abstract boolean contentsTheSame(T oldItem, T newItem);
+
+    @Override
+    public int getOldListSize() {
+        return oldItems.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newItems.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(final int oldItemPosition, final int newItemPosition) {
+        return oldItems.get(oldItemPosition).getId() == newItems.get(newItemPosition).getId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(final int oldItemPosition, final int newItemPosition) {
+        return contentsTheSame(oldItems.get(oldItemPosition), newItems.get(newItemPosition));
+    }
+}
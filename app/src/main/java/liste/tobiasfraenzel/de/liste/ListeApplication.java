@@ -0,0 +1,92 @@
+package liste.tobiasfraenzel.de.liste;
+
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+import liste.tobiasfraenzel.de.liste.alarm.AlarmHandler;
+import liste.tobiasfraenzel.de.liste.database.DatabaseHelper;
+import liste.tobiasfraenzel.de.liste.database.ListRepository;
+import liste.tobiasfraenzel.de.liste.utils.DateCodec;
+
+// Owns the process-wide database connection
+public class ListeApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Create the shared helper, the connection itself is opened on first use
+        DatabaseHelper.getInstance(this);
+        purgeOrphanedEntries();
+        registerDateFormatReceiver();
+    }
+
+    /**
+     * Create the cached date formats again when the timezone or the locale changes
+     */
+    private void registerDateFormatReceiver() {
+        final IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                DateCodec.invalidate();
+            }
+        }, filter);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        DateCodec.invalidate();
+    }
+
+    /**
+     * Delete the entries of lists that were deleted by older versions of the app
+     * and cancel their alarms. Runs in the background and only once after the upgrade.
+     */
+    private void purgeOrphanedEntries() {
+        ListRepository.getInstance(this).execute(new ListRepository.Query<List<ListEntry>>() {
+            @Override
+            public List<ListEntry> run(DatabaseHelper db) {
+                return db.purgeOrphanedEntries();
+            }
+        }, new ListRepository.Callback<List<ListEntry>>() {
+            @Override
+            public void onResult(List<ListEntry> entriesWithAlarm) {
+                AlarmHandler.cancelAlarms(ListeApplication.this, entriesWithAlarm);
+            }
+        });
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        DatabaseHelper.getInstance(this).trimCache(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        DatabaseHelper.getInstance(this).requestClose();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        DatabaseHelper.getInstance(this).trimCache(level);
+        // Only give up the connection if the process is about to be killed anyway
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            DatabaseHelper.getInstance(this).requestClose();
+        }
+    }
+
+    @Override
+    public void onTerminate() {
+        DatabaseHelper.getInstance(this).close();
+        super.onTerminate();
+    }
+}
@@ -16,6 +16,7 @@ import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.text.format.DateFormat;
 import android.util.Log;
+import android.util.Pair;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.Menu;
@@ -27,6 +28,7 @@ import android.widget.DatePicker;
 import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.ImageView;
+import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.TimePicker;
@@ -35,9 +37,11 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.recyclerview.widget.DefaultItemAnimator;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -48,42 +52,55 @@ import com.google.android.material.snackbar.Snackbar;
 
 import java.io.File;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 import liste.tobiasfraenzel.de.liste.alarm.AlarmHandler;
 import liste.tobiasfraenzel.de.liste.alarm.AlarmReceiver;
 import liste.tobiasfraenzel.de.liste.alarm.BootReceiver;
 import liste.tobiasfraenzel.de.liste.database.BackupHelper;
 import liste.tobiasfraenzel.de.liste.database.DatabaseHelper;
+import liste.tobiasfraenzel.de.liste.database.ListRepository;
 import liste.tobiasfraenzel.de.liste.utils.Constants;
+import liste.tobiasfraenzel.de.liste.utils.DateCodec;
 import liste.tobiasfraenzel.de.liste.utils.MyDividerItemDecoration;
 import liste.tobiasfraenzel.de.liste.utils.RecyclerTouchListener;
+import liste.tobiasfraenzel.de.liste.utils.SwipeBackgroundRenderer;
 import liste.tobiasfraenzel.de.liste.utils.Utilities;
 
 import static liste.tobiasfraenzel.de.liste.utils.Utilities.allEntriesShown;
-import static liste.tobiasfraenzel.de.liste.utils.Utilities.drawSwipeBackground;
 import static liste.tobiasfraenzel.de.liste.utils.Utilities.entriesOfListShown;
 
 public class MainActivity extends AppCompatActivity {
     @SuppressWarnings("rawtypes")
     private RecyclerView.Adapter mAdapter;
-    final private List<ListEntry> listEntryList = new ArrayList<>();
+    private PagedEntryList listEntryList;
     final private List<MyList> listsList = new ArrayList<>();
     private CoordinatorLayout coordinatorLayout;
     private RecyclerView recyclerView;
     private TextView noEntriesView;
     private MyList displayedList = null;
     private Snackbar snackbar;
+    // Removed items that can still be restored from the snackbar
+    final private PendingDeletions pendingDeletions = new PendingDeletions();
     private BackupHelper.BackupMode backupMode;
     private Constants.displayedType currentlyDisplayed;
     private DatabaseHelper db;
+    private ListRepository repository;
+    // Loads what is currently displayed, cancelled when something else is displayed
+    private ListRepository.Task viewTask = null;
     private int listOfEntry = -1;
+    // Start and end position of the item that is currently dragged
+    private int dragFromPosition = -1;
+    private int dragToPosition = -1;
+    // What was displayed before the search was opened
+    private Constants.displayedType displayedBeforeSearch;
+    private MyList displayedListBeforeSearch = null;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -91,9 +108,9 @@ public class MainActivity extends AppCompatActivity {
         createNotificationChannel();
         // Register Alarm and Boot receivers
         registerAlarmAndBootReceivers();
-        // Add all lists to be displayed
-        db = new DatabaseHelper(this);
-        listsList.addAll(db.getAllLists());
+        db = DatabaseHelper.getInstance(this);
+        repository = ListRepository.getInstance(this);
+        listEntryList = new PagedEntryList(repository);
         currentlyDisplayed = Constants.displayedType.Lists;
 
         setupViews();
@@ -101,13 +118,53 @@ public class MainActivity extends AppCompatActivity {
         mAdapter = getCorrectAdapter();
         recyclerView.setAdapter(mAdapter);
 
-        // Show noNotesView if there is nothing to display
-        toggleEmptyNotes();
-
         setupTouchHandler();
+        // Load all lists to be displayed
+        displayLists();
         handleReceivedIntent();
     }
 
+    @Override
+    protected void onStop() {
+        // Don't lose the removed items if the app isn't shown again
+        commitPendingDeletions();
+        Utilities.dismissSnackbar(snackbar);
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Results that arrive later have no view to be displayed in
+        cancelViewTask();
+        super.onDestroy();
+    }
+
+    /**
+     * Load what is displayed next in the background. A load that is still running for
+     * the previous view is cancelled, so its result can't overwrite the new view.
+     * @param query Loads the data
+     * @param callback Displays the data
+     * @param <T> Type of the data
+     */
+    private <T> void loadView(final ListRepository.Query<T> query,
+                              final ListRepository.Callback<T> callback) {
+        // Removed items would show up again in the new view, so they are deleted first
+        commitPendingDeletions();
+        Utilities.dismissSnackbar(snackbar);
+        cancelViewTask();
+        viewTask = repository.execute(query, callback);
+    }
+
+    /**
+     * Cancel the loading of the view, if one is running
+     */
+    private void cancelViewTask() {
+        if (viewTask != null) {
+            viewTask.cancel();
+            viewTask = null;
+        }
+    }
+
     /**
      * Enables an AlarmReceiver and a BootReceiver in the PackageManager.
      * Both are used for notifications.
@@ -144,15 +201,29 @@ public class MainActivity extends AppCompatActivity {
             // Handle notification click
             final int id = intent.getIntExtra(Constants.INTENT_KEY_ENTRY_ID, -1);
             if (id >= 0) {
-                ListEntry entry = db.getEntry(id);
-                showEntriesOfList(entry.getListId());
-                for(ListEntry tempEntry:listEntryList) {
-                    if (tempEntry.getId() == id) {
-                        entry = tempEntry;
+                // The position is counted in the database, so that the pages before it
+                // don't have to be loaded
+                repository.execute(new ListRepository.Query<Pair<ListEntry, Integer>>() {
+                    @Override
+                    public Pair<ListEntry, Integer> run(DatabaseHelper db) {
+                        final ListEntry entry = db.getEntry(id);
+                        return entry != null ? new Pair<>(entry, db.getPositionInList(entry)) :
+                                null;
                     }
-                }
-                final int position = listEntryList.indexOf(entry);
-                showDisplayListEntryDialog(position, null);
+                }, new ListRepository.Callback<Pair<ListEntry, Integer>>() {
+                    @Override
+                    public void onResult(final Pair<ListEntry, Integer> result) {
+                        if (result == null) {
+                            return;
+                        }
+                        showEntriesOfList(result.first.getListId(), new Runnable() {
+                            @Override
+                            public void run() {
+                                showNotifiedEntry(id, result.second);
+                            }
+                        });
+                    }
+                });
             }
         } else {
             // Log info in case of error
@@ -161,6 +232,28 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Scroll to the ListEntry of a notification and open it once its page is loaded
+     * @param id ID of the ListEntry
+     * @param position Position of the ListEntry in its list
+     */
+    private void showNotifiedEntry(final int id, final int position) {
+        if (position >= listEntryList.size()) {
+            // The ListEntry was deleted in the meantime
+            return;
+        }
+        recyclerView.scrollToPosition(position);
+        listEntryList.load(position, new Runnable() {
+            @Override
+            public void run() {
+                if (listEntryList.isLoaded(position) &&
+                        listEntryList.get(position).getId() == id) {
+                    showDisplayListEntryDialog(position, null);
+                }
+            }
+        });
+    }
+
     /**
      * Create the NotificationChannel, but only on API 26+ because
      * the NotificationChannel class is new and not in the support library
@@ -189,7 +282,10 @@ public class MainActivity extends AppCompatActivity {
                 // If ListEntries are shown in the main view, a single ListEntry
                 // was tapped on -> open dialog to show the ListEntry
                 if (currentlyDisplayed.equals(Constants.displayedType.ListEntries)) {
-                    showDisplayListEntryDialog(position, null);
+                    // Placeholders can't be opened until their page is loaded
+                    if (listEntryList.isLoaded(position)) {
+                        showDisplayListEntryDialog(position, null);
+                    }
                 } else {
                     // If lists are shown in the main view, a list was tapped on
                     // -> display items of the list
@@ -206,10 +302,17 @@ public class MainActivity extends AppCompatActivity {
             }
         }));
 
+        // Draws the background of swiped items, created once to not allocate on every frame
+        final SwipeBackgroundRenderer swipeRenderer = new SwipeBackgroundRenderer(this);
         // Handle drag and drop events (reordering of items)
         final ItemTouchHelper.Callback _ithCallback = new ItemTouchHelper.Callback() {
             public boolean onMove(@NonNull RecyclerView recyclerView,
                                   RecyclerView.ViewHolder viewHolder, RecyclerView.ViewHolder target) {
+                // Remember where the drag started and where the item is now
+                if (dragFromPosition == -1) {
+                    dragFromPosition = viewHolder.getAdapterPosition();
+                }
+                dragToPosition = target.getAdapterPosition();
                 // Swap old and new position
                 swapPositions(viewHolder.getAdapterPosition(), target.getAdapterPosition());
                 return true;
@@ -219,8 +322,12 @@ public class MainActivity extends AppCompatActivity {
             public void clearView(@NonNull RecyclerView recyclerView,
                                   @NonNull RecyclerView.ViewHolder viewHolder) {
                 super.clearView(recyclerView, viewHolder);
-                // Update order indices after the drag/drop or swipe event
-                updateOrderIndices();
+                // Update order indices after the drag/drop event
+                if (dragFromPosition != -1) {
+                    updateOrderIndices(dragFromPosition, dragToPosition);
+                }
+                dragFromPosition = -1;
+                dragToPosition = -1;
             }
 
             // Handle swipe events (edit / deletion of items)
@@ -234,10 +341,24 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
 
+            // Placeholders can't be moved over, their ID isn't known yet
+            @Override
+            public boolean canDropOver(@NonNull RecyclerView recyclerView,
+                                       @NonNull RecyclerView.ViewHolder current,
+                                       @NonNull RecyclerView.ViewHolder target) {
+                return !currentlyDisplayed.equals(Constants.displayedType.ListEntries) ||
+                        listEntryList.isLoaded(target.getAdapterPosition());
+            }
+
             // Define in which directions items can be moved
             @Override
             public int getMovementFlags(@NonNull RecyclerView recyclerView,
                                         @NonNull RecyclerView.ViewHolder viewHolder) {
+                // Placeholders can't be moved or swiped until their page is loaded
+                if (currentlyDisplayed.equals(Constants.displayedType.ListEntries) &&
+                        !listEntryList.isLoaded(viewHolder.getAdapterPosition())) {
+                    return 0;
+                }
                 // Items can be moved in all directions
                 return makeMovementFlags(ItemTouchHelper.DOWN | ItemTouchHelper.UP |
                                 ItemTouchHelper.START | ItemTouchHelper.END,
@@ -250,7 +371,7 @@ public class MainActivity extends AppCompatActivity {
                                     @NonNull RecyclerView.ViewHolder viewHolder, float dX, float dY,
                                     int actionState, boolean isCurrentlyActive) {
                 if (actionState == ItemTouchHelper.ACTION_STATE_SWIPE) {
-                    drawSwipeBackground(MainActivity.this, c, viewHolder, dX);
+                    swipeRenderer.draw(c, viewHolder, dX);
                 }
                 super.onChildDraw(c, recyclerView, viewHolder, dX, dY, actionState, isCurrentlyActive);
             }
@@ -278,27 +399,53 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Reset all order indices of the displayed elements after a drag or swipe action
+     * Store the new position of an element after a drag action. The element is stored between
+     * its new neighbours, so that hidden items that are still in the database, e.g. swiped ones
+     * whose undo window is open, don't shift the positions.
+     * @param fromPosition Position where the drag started
+     * @param toPosition Position where the element was dropped
      */
-    private void updateOrderIndices() {
+    private void updateOrderIndices(final int fromPosition, final int toPosition) {
+        if (fromPosition == toPosition) {
+            return;
+        }
         if (currentlyDisplayed.equals(Constants.displayedType.ListEntries)) {
-            final List<ListEntry> newList =
-                    ((EntryAdapter) Objects.requireNonNull(recyclerView.getAdapter())).getAll();
-            int i = 0;
-            for (final ListEntry e : newList) {
-                e.setOrderIndex(i);
-                db.updateEntryWithoutTimestamp(e);
-                i++;
+            // If all entries are shown, they are sorted by modification date, so the order
+            // can only be stored if the entries of a single list are shown
+            if (displayedList != null) {
+                final int listId = displayedList.getId();
+                final int id = listEntryList.get(toPosition).getId();
+                final int previousId = toPosition > 0 ?
+                        listEntryList.get(toPosition - 1).getId() : DatabaseHelper.NO_ID;
+                final int nextId = toPosition < listEntryList.size() - 1 ?
+                        listEntryList.get(toPosition + 1).getId() : DatabaseHelper.NO_ID;
+                repository.execute(new ListRepository.Query<Void>() {
+                    @Override
+                    public Void run(DatabaseHelper db) {
+                        db.reorderEntries(listId, id, previousId, nextId);
+                        return null;
+                    }
+                }, new ListRepository.Callback<Void>() {
+                    @Override
+                    public void onResult(Void result) {
+                        // Pages loaded later have to reflect the new order
+                        listEntryList.invalidateFrom(Math.min(fromPosition, toPosition));
+                    }
+                });
             }
         } else {
-            final List<MyList> newList =
-                    ((MyListAdapter) Objects.requireNonNull(recyclerView.getAdapter())).getAll();
-            int i = 0;
-            for (final MyList g : newList) {
-                g.setOrderIndex(i);
-                db.updateList(g);
-                i++;
-            }
+            final int id = listsList.get(toPosition).getId();
+            final int previousId = toPosition > 0 ?
+                    listsList.get(toPosition - 1).getId() : DatabaseHelper.NO_ID;
+            final int nextId = toPosition < listsList.size() - 1 ?
+                    listsList.get(toPosition + 1).getId() : DatabaseHelper.NO_ID;
+            repository.execute(new ListRepository.Query<Void>() {
+                @Override
+                public Void run(DatabaseHelper db) {
+                    db.reorderLists(id, previousId, nextId);
+                    return null;
+                }
+            }, null);
         }
     }
 
@@ -313,8 +460,7 @@ public class MainActivity extends AppCompatActivity {
         } else {
             // Delete list
             final MyList listToBeDeleted = listsList.get(position);
-            final int entriesInList = db.getEntriesOfList(listToBeDeleted.getId()).size();
-            if (entriesInList == 0) {
+            if (listToBeDeleted.getEntryCount() == 0) {
                 deleteListWithUndo(position);
             } else {
                 // This notification is necessary for the animation of sliding the item back into the view
@@ -381,6 +527,22 @@ public class MainActivity extends AppCompatActivity {
         recyclerView.setItemAnimator(new DefaultItemAnimator());
         recyclerView.addItemDecoration(new MyDividerItemDecoration(this,
                 LinearLayoutManager.VERTICAL, Constants.VERTICAL_MARGIN));
+
+        // Count the ListEntries again if rows disappeared in the background. Posted, because
+        // the adapter can't be notified while a row is bound.
+        listEntryList.setOnStaleListener(new PagedEntryList.OnStaleListener() {
+            @Override
+            public void onStale() {
+                recyclerView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (currentlyDisplayed.equals(Constants.displayedType.ListEntries)) {
+                            refreshList();
+                        }
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -434,12 +596,53 @@ public class MainActivity extends AppCompatActivity {
      */
     private void handleReceiveText(final Intent intent) {
         final String sharedText = intent.getStringExtra(Intent.EXTRA_TEXT);
-        if (sharedText != null) {
+        if (sharedText == null) {
+            return;
+        }
+        final List<String> lines = new ArrayList<>();
+        for (String line : sharedText.split("\\r?\\n")) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line.trim());
+            }
+        }
+        if (lines.size() > 1) {
+            // Let the user choose whether e.g. a shopping list becomes one entry or one per line
+            showShareModeDialog(sharedText, lines);
+        } else {
             // Set text as description of a new list entry
             showDisplayListEntryDialog(-1, sharedText);
         }
     }
 
+    /**
+     * Ask whether shared text with several lines is added as one entry or as one entry per line
+     * @param sharedText The shared text
+     * @param lines The non-empty lines of the text
+     */
+    private void showShareModeDialog(final String sharedText, final List<String> lines) {
+        final String[] shareModes = {getString(R.string.share_one_entry),
+                getString(R.string.share_entry_per_line, lines.size())};
+        final AlertDialog.Builder alertDialogBuilder = new AlertDialog.Builder(MainActivity.this);
+        alertDialogBuilder.setTitle(R.string.share_title);
+        alertDialogBuilder.setItems(shareModes, new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialogBox, int which) {
+                if (which == 0) {
+                    // Set text as description of a new list entry
+                    showDisplayListEntryDialog(-1, sharedText);
+                } else {
+                    insertListEntriesInDBAndRefresh(lines);
+                }
+            }
+        });
+        alertDialogBuilder.setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
+            public void onClick(DialogInterface dialogBox, int id) {
+                dialogBox.dismiss();
+            }
+        });
+        alertDialogBuilder.create().show();
+    }
+
     /**
      * Show entries belonging to the list at position
      * @param position Position of the list
@@ -455,30 +658,137 @@ public class MainActivity extends AppCompatActivity {
      * @param listId ID of the list for which entries are shown
      */
     private void showEntriesOfList(final int listId) {
-        displayedList = db.getList(listId);
-        setTitle(displayedList.getTitle());
+        showEntriesOfList(listId, null);
+    }
 
-        // Add all items belonging to the list to the variable to be displayed
-        listEntryList.addAll(db.getEntriesOfList(listId));
-        // Clear lists to be displayed (because list items are to be displayed)
-        listsList.clear();
-        // Add the list of items to the view
-        mAdapter = new EntryAdapter(listEntryList);
-        recyclerView.setAdapter(mAdapter);
+    /**
+     * Show entries belonging to the list
+     * @param listId ID of the list for which entries are shown
+     * @param onShown Run once the entries are shown or null
+     */
+    private void showEntriesOfList(final int listId, final Runnable onShown) {
+        final PagedEntryList.PageSource source = createEntriesOfListSource(listId);
+        // Load the list and the first page of its items
+        loadView(new ListRepository.Query<Pair<MyList, PagedEntryList.FirstPage>>() {
+            @Override
+            public Pair<MyList, PagedEntryList.FirstPage> run(DatabaseHelper db) {
+                return new Pair<>(db.getList(listId),
+                        PagedEntryList.loadFirstPage(source, Collections.<Integer>emptySet()));
+            }
+        }, new ListRepository.Callback<Pair<MyList, PagedEntryList.FirstPage>>() {
+            @Override
+            public void onResult(Pair<MyList, PagedEntryList.FirstPage> result) {
+                displayedList = result.first;
+                setTitle(displayedList.getTitle());
+
+                // The other items belonging to the list are loaded page by page
+                listEntryList.setSource(result.second);
+                // Clear lists to be displayed (because list items are to be displayed)
+                listsList.clear();
+                // Add the list of items to the view
+                mAdapter = new EntryAdapter(listEntryList);
+                recyclerView.setAdapter(mAdapter);
+
+                // Only show list name below the entry title if all entries of all lists are shown
+                ((EntryAdapter) mAdapter).setShowListName(allEntriesShown(displayedList, listsList));
+
+                currentlyDisplayed = Constants.displayedType.ListEntries;
+
+                // Refresh view by notifying the adapter that the data has changed
+                mAdapter.notifyDataSetChanged();
+                if (onShown != null) {
+                    onShown.run();
+                }
+            }
+        });
+    }
 
-        // Only show list name below the entry title if all entries of all lists are shown
-        if (!listEntryList.isEmpty()) {
-            if (allEntriesShown(displayedList, listsList)) {
-                listEntryList.get(0).setShowListName(true);
-            } else {
-                listEntryList.get(0).setShowListName(false);
+    /**
+     * Create the source that loads the entries of a list page by page
+     * @param listId ID of the list
+     * @return The source
+     */
+    private PagedEntryList.PageSource createEntriesOfListSource(final int listId) {
+        return new PagedEntryList.PageSource() {
+            @Override
+            public int count(Set<Integer> excludedIds) {
+                return db.getEntryCountForList(listId, excludedIds);
             }
-        }
 
-        currentlyDisplayed = Constants.displayedType.ListEntries;
+            @Override
+            public List<ListEntry> loadPage(ListEntry after, int offset, int limit,
+                                            Set<Integer> excludedIds) {
+                return db.getEntriesOfListPage(listId, after, limit, excludedIds);
+            }
 
-        // Refresh view by notifying the adapter that the data has changed
-        mAdapter.notifyDataSetChanged();
+            @Override
+            public List<ListEntry> loadKeys(Set<Integer> excludedIds, int limit) {
+                return db.getEntryKeysOfList(listId, excludedIds, limit);
+            }
+        };
+    }
+
+    /**
+     * Create the source that loads all entries page by page, ordered by modification date
+     * @return The source
+     */
+    private PagedEntryList.PageSource createAllEntriesSource() {
+        return new PagedEntryList.PageSource() {
+            @Override
+            public int count(Set<Integer> excludedIds) {
+                return db.getEntriesCount(excludedIds);
+            }
+
+            @Override
+            public List<ListEntry> loadPage(ListEntry after, int offset, int limit,
+                                            Set<Integer> excludedIds) {
+                return db.getEntriesOrderedByLastModifiedPage(after, limit, excludedIds);
+            }
+
+            @Override
+            public List<ListEntry> loadKeys(Set<Integer> excludedIds, int limit) {
+                return db.getEntryKeysOrderedByLastModified(excludedIds, limit);
+            }
+        };
+    }
+
+    /**
+     * Create the source that loads the entries matching a search query page by page,
+     * ordered by relevance
+     * @param query The search query
+     * @return The source
+     */
+    private PagedEntryList.PageSource createSearchSource(final String query) {
+        return new PagedEntryList.PageSource() {
+            @Override
+            public int count(Set<Integer> excludedIds) {
+                return db.getSearchResultCount(query, excludedIds);
+            }
+
+            @Override
+            public List<ListEntry> loadPage(ListEntry after, int offset, int limit,
+                                            Set<Integer> excludedIds) {
+                return db.searchEntries(query, offset, limit, excludedIds);
+            }
+
+            @Override
+            public List<ListEntry> loadKeys(Set<Integer> excludedIds, int limit) {
+                // Results are ordered by relevance, which can change with every edit
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Show the entries matching a search query, or all entries if the query is empty
+     * @param query The search query
+     */
+    private void showSearchResults(final String query) {
+        if (query.trim().isEmpty()) {
+            displayEntries(createAllEntriesSource());
+        } else {
+            displayEntries(createSearchSource(query));
+        }
     }
 
     /**
@@ -491,56 +801,108 @@ public class MainActivity extends AppCompatActivity {
         //if(!entriesOfListShown(listsList) && displayedList == null) {
         if (currentlyDisplayed.equals(Constants.displayedType.Lists)) {
             // If all lists are shown, reload them from the DB
-            ((MyListAdapter) mAdapter).clear();
-            ((MyListAdapter) mAdapter).setAll(db.getAllLists());
-            listsList.addAll(db.getAllLists());
+            final List<MyList> shownLists = new ArrayList<>(listsList);
+            loadView(new ListRepository.Query<Pair<List<MyList>, DiffUtil.DiffResult>>() {
+                @Override
+                public Pair<List<MyList>, DiffUtil.DiffResult> run(DatabaseHelper db) {
+                    final List<MyList> lists = db.getAllListsWithEntryCounts();
+                    return new Pair<>(lists, ListItemDiffCallback.diffLists(shownLists, lists));
+                }
+            }, new ListRepository.Callback<Pair<List<MyList>, DiffUtil.DiffResult>>() {
+                @Override
+                public void onResult(Pair<List<MyList>, DiffUtil.DiffResult> result) {
+                    showLists(shownLists, result.first, result.second);
+                }
+            });
             Utilities.setAddListFAB(MainActivity.this, fab);
-        } else if (currentlyDisplayed.equals(Constants.displayedType.ListEntries) && displayedList == null) {
-            // If ListEntries are shown, but not of one specific list, then display all list items
-            ((EntryAdapter) mAdapter).clear();
-            ((EntryAdapter) mAdapter).addAll(db.getAllEntriesOrderedByLastModified());
-            if (!listEntryList.isEmpty()) {
-                listEntryList.get(0).setShowListName(true);
-            }
-            Utilities.setAddListEntryFAB(MainActivity.this, fab);
         } else {
-            // Reload the items of a specific list from the DB
-            ((EntryAdapter) mAdapter).clear();
-            ((EntryAdapter) mAdapter).addAll(db.getEntriesOfList(displayedList.getId()));
-            if (!listEntryList.isEmpty()) {
-                listEntryList.get(0).setShowListName(false);
-            }
+            // Reload the ListEntries that are shown, without the ones that were just removed
+            final boolean allListsShown = displayedList == null;
+            final PagedEntryList.PageSource source = listEntryList.getSource();
+            final Set<Integer> excludedIds = listEntryList.getHiddenIds();
+            // The keys of the shown ListEntries, to find out which rows changed
+            final PagedEntryList.Keys shownKeys = listEntryList.getKeys();
+            loadView(new ListRepository.Query<Pair<List<MyList>, PagedEntryList.FirstPage>>() {
+                @Override
+                public Pair<List<MyList>, PagedEntryList.FirstPage> run(DatabaseHelper db) {
+                    // The list names are only needed if the entries of all lists are shown
+                    return new Pair<>(allListsShown ? db.getAllLists() : null,
+                            PagedEntryList.loadFirstPage(source, excludedIds, shownKeys));
+                }
+            }, new ListRepository.Callback<Pair<List<MyList>, PagedEntryList.FirstPage>>() {
+                @Override
+                public void onResult(Pair<List<MyList>, PagedEntryList.FirstPage> result) {
+                    final DiffUtil.DiffResult diff =
+                            ((EntryAdapter) mAdapter).getAll().reload(result.second);
+                    ((EntryAdapter) mAdapter).setShowListName(allListsShown);
+                    if (allListsShown) {
+                        ((EntryAdapter) mAdapter).setListNames(result.first);
+                    }
+                    if (diff != null) {
+                        // Only update the rows that changed
+                        diff.dispatchUpdatesTo(mAdapter);
+                    } else {
+                        // Refresh view by notifying the adapter that the data has changed
+                        mAdapter.notifyDataSetChanged();
+                    }
+                }
+            });
             Utilities.setAddListEntryFAB(MainActivity.this, fab);
         }
-        // Refresh view by notifying the adapter that the data has changed
-        mAdapter.notifyDataSetChanged();
     }
 
     /**
      * Insert new ListEntry into the DB and refresh the list
      * @param title Title of the new entry
      * @param description Description of the new entry
-     * @param listId ID of the list that the entry belongs to
-     * @param alarmDateString String representing the alarm date in the format specified
-     *                       in Constants.ALARM_DATE_FORMAT
-     * @return The new ListEntry
+     * @param listId ID of the list that the entry belongs to or -1 for the first list
+     * @param alarmDate Alarm date in milliseconds or ListEntry.NO_ALARM
+     * @param callback Receives the new ListEntry
      */
-    private ListEntry insertListEntryInDBAndRefresh(final String title, final String description,
-                                                    final int listId, final String alarmDateString) {
-        // Insert new ListEntry into the database and get its ID
-        final long id = db.insertEntry(title, description, listId, alarmDateString);
-
-        // Load the new ListEntry from the DB
-        final ListEntry entry = db.getEntry(id);
-        entry.setShowListName(false);
-
-        // Refresh the data in the adapter
-        listEntryList.clear();
-        listEntryList.addAll(db.getEntriesOfList(listId));
-        toggleEmptyNotes();
-        mAdapter.notifyDataSetChanged();
+    private void insertListEntryInDBAndRefresh(final String title, final String description,
+                                               final int listId, final long alarmDate,
+                                               final ListRepository.Callback<ListEntry> callback) {
+        repository.execute(new ListRepository.Query<ListEntry>() {
+            @Override
+            public ListEntry run(DatabaseHelper db) {
+                final int list = listId != -1 ? listId : db.getAllLists().get(0).getId();
+                // Insert new ListEntry into the database and get its ID
+                final long id = db.insertEntry(title, description, list, alarmDate);
+                // Load the new ListEntry from the DB
+                return db.getEntry(id);
+            }
+        }, new ListRepository.Callback<ListEntry>() {
+            @Override
+            public void onResult(ListEntry entry) {
+                toggleEmptyNotes();
+                // The callback refreshes the data in the adapter
+                callback.onResult(entry);
+            }
+        });
+    }
 
-        return entry;
+    /**
+     * Insert one new ListEntry per title into the DB and refresh the list
+     * @param titles Titles of the new entries
+     */
+    private void insertListEntriesInDBAndRefresh(final List<String> titles) {
+        // Add the entries to the shown list or else to the first list
+        final int listId = displayedList != null ? displayedList.getId() : -1;
+        repository.execute(new ListRepository.Query<Integer>() {
+            @Override
+            public Integer run(DatabaseHelper db) {
+                final int list = listId != -1 ? listId : db.getAllLists().get(0).getId();
+                return db.insertEntries(list, titles);
+            }
+        }, new ListRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer inserted) {
+                Toast.makeText(getApplicationContext(),
+                        getString(R.string.entries_added, inserted), Toast.LENGTH_SHORT).show();
+                refreshList();
+                toggleEmptyNotes();
+            }
+        });
     }
 
     /**
@@ -549,26 +911,37 @@ public class MainActivity extends AppCompatActivity {
      * @param description New description of the entry
      * @param listId ID of the new list that the entry belongs to
      * @param position New position of the entry
-     * @param alarmDateString String representing the new alarm date in the format specified
-     *                        in Constants.ALARM_DATE_FORMAT
-     * @return The updated ListEntry
+     * @param alarmDate New alarm date in milliseconds or ListEntry.NO_ALARM
+     * @param callback Receives the updated ListEntry once it is stored
      */
-    private ListEntry updateListEntryAndRefresh(final String title, final String description,
-                                                final int listId, final int position,
-                                                final String alarmDateString) {
+    private void updateListEntryAndRefresh(final String title, final String description,
+                                           final int listId, final int position,
+                                           final long alarmDate,
+                                           final ListRepository.Callback<ListEntry> callback) {
         final ListEntry entry = listEntryList.get(position);
+        final ListEntry oldEntry = new ListEntry(entry.getId(), entry.getTitle(),
+                entry.getDescription(), entry.getModificationDate(), entry.getOrderIndex(),
+                entry.getListId());
         entry.setTitle(title);
         entry.setDescription(description);
         entry.setListId(listId);
-        entry.setAlarmDate(alarmDateString);
-
-        // Update in DB
-        db.updateEntry(entry);
+        entry.setAlarmDate(alarmDate);
 
         // Refresh the view
         listEntryList.set(position, entry);
         mAdapter.notifyItemChanged(position);
-        return entry;
+
+        // Update in DB
+        repository.execute(new ListRepository.Query<ListEntry>() {
+            @Override
+            public ListEntry run(DatabaseHelper db) {
+                if (oldEntry.getListId() != listId) {
+                    db.moveEntryToList(oldEntry, listId);
+                }
+                db.updateEntry(entry);
+                return entry;
+            }
+        }, callback);
     }
 
     /**
@@ -646,9 +1019,15 @@ public class MainActivity extends AppCompatActivity {
     private void updateList(final String title, final int position) {
         final MyList list = listsList.get(position);
         list.setTitle(title);
-        db.updateList(list);
         listsList.set(position, list);
         mAdapter.notifyItemChanged(position);
+        repository.execute(new ListRepository.Query<Void>() {
+            @Override
+            public Void run(DatabaseHelper db) {
+                db.updateList(list);
+                return null;
+            }
+        }, null);
     }
 
     /**
@@ -659,18 +1038,45 @@ public class MainActivity extends AppCompatActivity {
      */
     private void insertListInDBAndRefresh(final String title, final Spinner listSpinner) {
         Log.d(Utilities.getLogTag(), "Creating list: " + title);
-        // Insert list into database and get its id
-        final long id = db.insertList(title);
-        // Get the newly inserted list from the database
-        final MyList list = db.getList(id);
+        final List<MyList> shownLists = new ArrayList<>(listsList);
+        repository.execute(
+                new ListRepository.Query<Pair<MyList, Pair<List<MyList>, DiffUtil.DiffResult>>>() {
+            @Override
+            public Pair<MyList, Pair<List<MyList>, DiffUtil.DiffResult>> run(DatabaseHelper db) {
+                // Insert list into database and get its id
+                final long id = db.insertList(title);
+                // Get the newly inserted list and all lists from the database
+                final List<MyList> lists = db.getAllListsWithEntryCounts();
+                return new Pair<>(db.getList(id),
+                        new Pair<>(lists, ListItemDiffCallback.diffLists(shownLists, lists)));
+            }
+        }, new ListRepository.Callback<Pair<MyList, Pair<List<MyList>, DiffUtil.DiffResult>>>() {
+            @Override
+            public void onResult(Pair<MyList, Pair<List<MyList>, DiffUtil.DiffResult>> result) {
+                showInsertedList(result.first, shownLists, result.second.first,
+                        result.second.second, listSpinner);
+            }
+        });
+    }
+
+    /**
+     * Refresh the view after a new list was inserted
+     * @param list The new list
+     * @param shownLists Copy of the lists that were shown when the list was inserted
+     * @param lists All lists
+     * @param diff Changes from shownLists to lists
+     * @param listSpinner If the new list was created from the "Add new list..." entry in
+     *                    the spinner, the Spinner object to add the new list to, null otherwise
+     */
+    private void showInsertedList(final MyList list, final List<MyList> shownLists,
+                                  final List<MyList> lists, final DiffUtil.DiffResult diff,
+                                  final Spinner listSpinner) {
+        final String title = list.getTitle();
         Log.d(Utilities.getLogTag(), "Got list from DB: " + list.getTitle() + ": " + list.getId());
 
         // Refresh the displayed lists
-        listsList.clear();
-        listsList.addAll(db.getAllLists());
-        // Refresh the view
+        showLists(shownLists, lists, diff);
         toggleEmptyNotes();
-        mAdapter.notifyDataSetChanged();
 
         Log.d(Utilities.getLogTag(), "Created list: " + title);
         if (listSpinner != null) {
@@ -692,12 +1098,36 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Convert date and time into the expected format for alarm dates
+     * Show a new version of the lists. If the shown lists didn't change while the new version
+     * was loaded, only the rows that changed are updated.
+     * @param shownLists Copy of the lists that were shown when the new version was loaded
+     * @param lists The new version of the lists
+     * @param diff Changes from shownLists to lists, computed in the background
+     */
+    private void showLists(final List<MyList> shownLists, final List<MyList> lists,
+                           final DiffUtil.DiffResult diff) {
+        final boolean unchanged = listsList.equals(shownLists);
+        listsList.clear();
+        listsList.addAll(lists);
+        if (mAdapter instanceof MyListAdapter) {
+            ((MyListAdapter) mAdapter).setAll(listsList);
+            if (unchanged) {
+                // Only update the rows that changed
+                diff.dispatchUpdatesTo(mAdapter);
+                return;
+            }
+        }
+        // Refresh view by notifying the adapter that the data has changed
+        mAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Convert date and time into an alarm date
      * @param date String containing the date
      * @param time String containing the time
-     * @return Alarm date in format Constants.ALARM_DATE_FORMAT
+     * @return Alarm date in milliseconds or ListEntry.NO_ALARM if it can't be parsed
      */
-    private String convertDateAndTimeToAlarmDate(String date, String time) {
+    private long convertDateAndTimeToAlarmDate(String date, String time) {
         try {
             Log.d(Utilities.getLogTag(), "Date before parsing: " + date);
             Log.d(Utilities.getLogTag(), "Time before parsing: " + time);
@@ -705,37 +1135,31 @@ public class MainActivity extends AppCompatActivity {
             final Date parsedDate = Utilities.parseFromLocalDateString(date);
             final Date parsedTime = Utilities.parseFromLocalTimeString(time);
 
-            final SimpleDateFormat dateFormat = Utilities.getDateFormat();
-            final SimpleDateFormat timeFormat = Utilities.getTimeFormat();
-
-            final String newDate = dateFormat.format(parsedDate);
-            final String newTime = timeFormat.format(parsedTime);
+            final String newDate = DateCodec.format(Constants.ONLY_DATE_FORMAT,
+                    parsedDate.getTime());
+            final String newTime = DateCodec.format(Constants.ONLY_TIME_FORMAT,
+                    parsedTime.getTime());
 
             final String newAlarmDateString = newDate + " " + newTime;
             Log.d(Utilities.getLogTag(), "newAlarmDateString: " + newAlarmDateString);
-            return newAlarmDateString;
+            return DateCodec.parse(Constants.ALARM_DATE_FORMAT, newAlarmDateString);
         } catch (ParseException e) {
             e.printStackTrace();
         }
-        return "";
+        return ListEntry.NO_ALARM;
     }
 
     /**
-     * Parse alarm date from entry. If there's an exception, return the default date.
+     * Get the alarm date of an entry. If it has no alarm, return the default date.
      * @param entry The entry
      * @param defaultDate The default date
-     * @return The parsed alarm date or the default date
+     * @return The alarm date or the default date
      */
-    private Date parseEntryAlarmDate(final ListEntry entry, final Date defaultDate) {
-        final Date tempAlarmDate = new Date();
-        final SimpleDateFormat fullDateFormat = Utilities.getFullDateFormat();
-        try {
-            tempAlarmDate.setTime(fullDateFormat.parse(entry.getAlarmDate()).getTime());
-        } catch (ParseException | NullPointerException e) {
-            Log.e(Utilities.getLogTag(), "Error parsing alarm date");
-            tempAlarmDate.setTime(defaultDate.getTime());
+    private Date getEntryAlarmDate(final ListEntry entry, final Date defaultDate) {
+        if (!entry.hasAlarm()) {
+            return new Date(defaultDate.getTime());
         }
-        return tempAlarmDate;
+        return new Date(entry.getAlarmDate());
     }
 
     /**
@@ -752,10 +1176,10 @@ public class MainActivity extends AppCompatActivity {
                 // If a specific list was shown, then preselect it
                 listOfEntry = displayedList.getId();
             } else {
-                // Else, preselect the first list
-                listOfEntry = db.getAllLists().get(0).getId();
+                // Else, the entry is added to the first list
+                listOfEntry = -1;
             }
-            tempEntry = new ListEntry(-1, "", "", null, -1, listOfEntry);
+            tempEntry = new ListEntry(-1, "", "", 0, -1, listOfEntry);
         }
         final ListEntry entry = tempEntry;
 
@@ -777,31 +1201,27 @@ public class MainActivity extends AppCompatActivity {
         alertDialogBuilder.setPositiveButton(R.string.ok, new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialogInterface, int i) {
-                ListEntry newEntry;
-                if (listOfEntry == -1) {
-                    listOfEntry = db.getAllLists().get(0).getId();
-                }
-                if (position >= 0) {
-                    newEntry = updateListEntryAndRefresh(entry.getTitle(), entry.getDescription(), listOfEntry, position, entry.getAlarmDate());
-                } else {
-                    newEntry = insertListEntryInDBAndRefresh(entry.getTitle(), entry.getDescription(), listOfEntry, entry.getAlarmDate());
-                }
-                // If the alarm is on
-                if (View.VISIBLE == alarmDateTextView.getVisibility()) {
-                    AlarmHandler.cancelAlarm(MainActivity.this, oldTitle, newEntry.getId());
-                    final Calendar newAlarmDate = Calendar.getInstance();
-                    try {
-                        //noinspection ConstantConditions
-                        newAlarmDate.setTime(Utilities.getFullDateFormat().parse(newEntry.getAlarmDate()));
-                    } catch (ParseException e) {
-                        e.printStackTrace();
+                // The alarm is set once the entry is stored
+                final boolean alarmOn = View.VISIBLE == alarmDateTextView.getVisibility();
+                final ListRepository.Callback<ListEntry> onStored =
+                        new ListRepository.Callback<ListEntry>() {
+                    @Override
+                    public void onResult(ListEntry newEntry) {
+                        AlarmHandler.cancelAlarm(MainActivity.this, oldTitle, newEntry.getId());
+                        // If the alarm is on
+                        if (alarmOn) {
+                            final Calendar newAlarmDate = Calendar.getInstance();
+                            newAlarmDate.setTimeInMillis(newEntry.getAlarmDate());
+                            AlarmHandler.setAlarm(MainActivity.this, newAlarmDate, newEntry.getTitle(), newEntry.getId());
+                        }
+                        refreshList();
                     }
-                    AlarmHandler.setAlarm(MainActivity.this, newAlarmDate, newEntry.getTitle(), newEntry.getId());
+                };
+                if (position >= 0) {
+                    updateListEntryAndRefresh(entry.getTitle(), entry.getDescription(), listOfEntry, position, entry.getAlarmDate(), onStored);
                 } else {
-                    // If the alarm is off
-                    AlarmHandler.cancelAlarm(MainActivity.this, oldTitle, newEntry.getId());
+                    insertListEntryInDBAndRefresh(entry.getTitle(), entry.getDescription(), listOfEntry, entry.getAlarmDate(), onStored);
                 }
-                refreshList();
             }
         });
         alertDialogBuilder.setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
@@ -832,7 +1252,7 @@ public class MainActivity extends AppCompatActivity {
                 Log.d(Utilities.getLogTag(), "Time changed: " + s.toString());
                 String dateString = alarmDateTextView.getText().toString();
                 String timeString = alarmTimeTextView.getText().toString();
-                String alarmDate = convertDateAndTimeToAlarmDate(dateString, timeString);
+                long alarmDate = convertDateAndTimeToAlarmDate(dateString, timeString);
                 entry.setAlarmDate(alarmDate);
             }
         });
@@ -850,7 +1270,7 @@ public class MainActivity extends AppCompatActivity {
                 Log.d(Utilities.getLogTag(), "Date changed: " + s.toString());
                 String dateString = alarmDateTextView.getText().toString();
                 String timeString = alarmTimeTextView.getText().toString();
-                String alarmDate = convertDateAndTimeToAlarmDate(dateString, timeString);
+                long alarmDate = convertDateAndTimeToAlarmDate(dateString, timeString);
                 entry.setAlarmDate(alarmDate);
             }
         });
@@ -858,19 +1278,12 @@ public class MainActivity extends AppCompatActivity {
         final ImageView alarmIcon = view.findViewById(R.id.alarmIcon);
 
         final Date defaultAlarmDate = new Date();
-        final String oldAlarmDate = entry.getAlarmDate();
         if (position >= 0) {
-            if (oldAlarmDate != null) {
-                final SimpleDateFormat fullDateFormat = Utilities.getFullDateFormat();
-                try {
-                    //noinspection ConstantConditions
-                    defaultAlarmDate.setTime(fullDateFormat.parse(oldAlarmDate).getTime());
-                    alarmTimeTextView.setVisibility(View.VISIBLE);
-                    alarmDateTextView.setVisibility(View.VISIBLE);
-                    alarmIcon.setImageDrawable(getDrawable(R.drawable.ic_notification_on));
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
+            if (entry.hasAlarm()) {
+                defaultAlarmDate.setTime(entry.getAlarmDate());
+                alarmTimeTextView.setVisibility(View.VISIBLE);
+                alarmDateTextView.setVisibility(View.VISIBLE);
+                alarmIcon.setImageDrawable(getDrawable(R.drawable.ic_notification_on));
             }
         }
 
@@ -885,13 +1298,13 @@ public class MainActivity extends AppCompatActivity {
                     alarmIcon.setImageDrawable(getDrawable(R.drawable.ic_notification_on));
                     String dateString = alarmDateTextView.getText().toString();
                     String timeString = alarmTimeTextView.getText().toString();
-                    String alarmDate = convertDateAndTimeToAlarmDate(dateString, timeString);
+                    long alarmDate = convertDateAndTimeToAlarmDate(dateString, timeString);
                     entry.setAlarmDate(alarmDate);
                 } else {
                     alarmTimeTextView.setVisibility(View.GONE);
                     alarmDateTextView.setVisibility(View.GONE);
                     alarmIcon.setImageDrawable(getDrawable(R.drawable.ic_notification_off_grey));
-                    entry.setAlarmDate(null);
+                    entry.setAlarmDate(ListEntry.NO_ALARM);
                 }
             }
         });
@@ -901,7 +1314,7 @@ public class MainActivity extends AppCompatActivity {
             public void onClick(View v) {
                 // Show DatePicker
                 // Parse date shown in text view
-                final Date tempAlarmDate = parseEntryAlarmDate(entry, defaultAlarmDate);
+                final Date tempAlarmDate = getEntryAlarmDate(entry, defaultAlarmDate);
                 // If the default date is shown in the text view use it to initialize the DatePicker,
                 // if another date is shown, use that one
                 if (tempAlarmDate.equals(defaultAlarmDate)) {
@@ -918,7 +1331,7 @@ public class MainActivity extends AppCompatActivity {
             public void onClick(View v) {
                 // Show TimePicker
                 // Parse date shown in text view
-                final Date tempAlarmDate = parseEntryAlarmDate(entry, defaultAlarmDate);
+                final Date tempAlarmDate = getEntryAlarmDate(entry, defaultAlarmDate);
                 // If the default date is shown in the text view use it to initialize the DatePicker,
                 // if another date is shown, use that one
                 if (tempAlarmDate.equals(defaultAlarmDate)) {
@@ -981,13 +1394,8 @@ public class MainActivity extends AppCompatActivity {
         }
 
         Log.d(Utilities.getLogTag(), "ShowNote: Alarm date: " + entry.getAlarmDate());
-        if (entry.getAlarmDate() != null) {
-            Date parsedAlarmDate = null;
-            try {
-                parsedAlarmDate = Utilities.getFullDateFormat().parse(entry.getAlarmDate());
-            } catch (ParseException e) {
-                e.printStackTrace();
-            }
+        if (entry.hasAlarm()) {
+            final Date parsedAlarmDate = new Date(entry.getAlarmDate());
             final String date = Utilities.convertToLocalDateString(parsedAlarmDate);
             final String time = Utilities.convertToLocalTimeString(parsedAlarmDate);
             alarmDateTextView.setText(date);
@@ -1128,18 +1536,20 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize list selection dropdown
         final Spinner listSelection = view.findViewById(R.id.list_selection);
-        int tempListId;
         if (isUpdate) {
-            tempListId = initializeListSelectionSpinner(listSelection, listEntryList.get(position));
+            initializeListSelectionSpinner(listSelection, listEntryList.get(position));
         } else {
-            tempListId = initializeListSelectionSpinner(listSelection, null);
+            initializeListSelectionSpinner(listSelection, null);
         }
-        final int oldListId = tempListId;
+        final int oldListId = listOfEntry;
 
         alertDialogBuilderUserInput
                 .setPositiveButton(R.string.ok, new DialogInterface.OnClickListener() {
                     public void onClick(DialogInterface dialogBox, int id) {
-                        listOfEntry = ((MyList) listSelection.getSelectedItem()).getId();
+                        // The lists might not be loaded yet
+                        if (listSelection.getSelectedItem() != null) {
+                            listOfEntry = ((MyList) listSelection.getSelectedItem()).getId();
+                        }
                         dialogBox.dismiss();
                     }
                 })
@@ -1205,8 +1615,28 @@ public class MainActivity extends AppCompatActivity {
      * @param listSelection The Spinner object
      * @param entry The entry to be updated
      */
-    private int initializeListSelectionSpinner(final Spinner listSelection, final ListEntry entry) {
-        final List<MyList> lists = db.getAllLists();
+    private void initializeListSelectionSpinner(final Spinner listSelection, final ListEntry entry) {
+        repository.execute(new ListRepository.Query<List<MyList>>() {
+            @Override
+            public List<MyList> run(DatabaseHelper db) {
+                return db.getAllLists();
+            }
+        }, new ListRepository.Callback<List<MyList>>() {
+            @Override
+            public void onResult(List<MyList> lists) {
+                populateListSelectionSpinner(listSelection, entry, lists);
+            }
+        });
+    }
+
+    /**
+     * Populate the Spinner for list selection with the loaded lists
+     * @param listSelection The Spinner object
+     * @param entry The entry to be updated
+     * @param lists List of all lists
+     */
+    private void populateListSelectionSpinner(final Spinner listSelection, final ListEntry entry,
+                                              final List<MyList> lists) {
         final ArrayAdapter<MyList> listAdapter = new ListsSpinnerAdapter(MainActivity.this,
                 R.layout.spinner_item, lists);
         listAdapter.setDropDownViewResource(R.layout.spinner_dropdown_item);
@@ -1224,18 +1654,27 @@ public class MainActivity extends AppCompatActivity {
         // Preselect the list
         final int preselectListIndex = determineListPreselectionIndex(entry, lists);
         listSelection.setSelection(preselectListIndex);
-        return ((MyList)listSelection.getSelectedItem()).getId();
     }
 
     /**
      * Show lists or list items if there are any or the noNotesView if not
      */
     private void toggleEmptyNotes() {
-        if (db.getAllLists().size() > 0) {
-            noEntriesView.setVisibility(View.GONE);
-        } else {
-            noEntriesView.setVisibility(View.VISIBLE);
-        }
+        repository.execute(new ListRepository.Query<Integer>() {
+            @Override
+            public Integer run(DatabaseHelper db) {
+                return db.getListsCount();
+            }
+        }, new ListRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer listsCount) {
+                if (listsCount > 0) {
+                    noEntriesView.setVisibility(View.GONE);
+                } else {
+                    noEntriesView.setVisibility(View.VISIBLE);
+                }
+            }
+        });
     }
 
     /**
@@ -1246,6 +1685,52 @@ public class MainActivity extends AppCompatActivity {
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this adds items to the action bar if it is present.
         getMenuInflater().inflate(R.menu.menu_main, menu);
+
+        final MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.hint_search));
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                // Search in all entries, until something is typed all of them are shown
+                displayedBeforeSearch = currentlyDisplayed;
+                displayedListBeforeSearch = displayedList;
+                displayAllEntries();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                // Go back to what was shown before the search
+                final FloatingActionButton fab = findViewById(R.id.fab);
+                if (Constants.displayedType.Lists.equals(displayedBeforeSearch)) {
+                    displayLists();
+                    Utilities.setAddListFAB(MainActivity.this, fab);
+                } else if (displayedListBeforeSearch != null) {
+                    showEntriesOfList(displayedListBeforeSearch.getId());
+                    Utilities.setAddListEntryFAB(MainActivity.this, fab);
+                } else {
+                    displayAllEntries();
+                    Utilities.setAddListEntryFAB(MainActivity.this, fab);
+                }
+                return true;
+            }
+        });
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                showSearchResults(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                // Words are matched as prefixes, so results are shown while typing
+                showSearchResults(newText);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -1291,23 +1776,41 @@ public class MainActivity extends AppCompatActivity {
      * Display all list entries
      */
     private void displayAllEntries() {
-        // Reset because only entries are displayed, regardless of the lists they belong to
-        displayedList = null;
-        listsList.clear();
-        // Add all list items
-        listEntryList.clear();
-        listEntryList.addAll(db.getAllEntriesOrderedByLastModified());
-        // Set correct adapter
-        mAdapter = new EntryAdapter(listEntryList);
-        recyclerView.setAdapter(mAdapter);
-        if (listEntryList.size() > 0) {
-            listEntryList.get(0).setShowListName(true);
-        }
-        currentlyDisplayed = Constants.displayedType.ListEntries;
-        // Refresh the view
-        mAdapter.notifyDataSetChanged();
-        // Set title
-        setTitle(R.string.all_entries);
+        displayEntries(createAllEntriesSource());
+    }
+
+    /**
+     * Display list entries of all lists, e.g. all entries or search results
+     * @param source Source of the entries
+     */
+    private void displayEntries(final PagedEntryList.PageSource source) {
+        // Load the names of the lists and the first page of the entries
+        loadView(new ListRepository.Query<Pair<List<MyList>, PagedEntryList.FirstPage>>() {
+            @Override
+            public Pair<List<MyList>, PagedEntryList.FirstPage> run(DatabaseHelper db) {
+                return new Pair<>(db.getAllLists(),
+                        PagedEntryList.loadFirstPage(source, Collections.<Integer>emptySet()));
+            }
+        }, new ListRepository.Callback<Pair<List<MyList>, PagedEntryList.FirstPage>>() {
+            @Override
+            public void onResult(Pair<List<MyList>, PagedEntryList.FirstPage> result) {
+                // Reset because only entries are displayed, regardless of the lists they belong to
+                displayedList = null;
+                listsList.clear();
+                // The other list items are loaded page by page
+                listEntryList.setSource(result.second);
+                // Set correct adapter
+                mAdapter = new EntryAdapter(listEntryList);
+                recyclerView.setAdapter(mAdapter);
+                ((EntryAdapter) mAdapter).setShowListName(true);
+                ((EntryAdapter) mAdapter).setListNames(result.first);
+                currentlyDisplayed = Constants.displayedType.ListEntries;
+                // Refresh the view
+                mAdapter.notifyDataSetChanged();
+                // Set title
+                setTitle(R.string.all_entries);
+            }
+        });
     }
 
     /**
@@ -1325,17 +1828,45 @@ public class MainActivity extends AppCompatActivity {
         final Spinner backupSelection = view.findViewById(R.id.backup_selection);
 
         // Initialize backup mode dropdown
-        final String[] backupModes = {getString(R.string.backup_create), getString(R.string.backup_restore)};
+        final String[] backupModes = {getString(R.string.backup_create),
+                getString(R.string.backup_create_incremental),
+                getString(R.string.backup_compact_incremental),
+                getString(R.string.backup_restore)};
         final ArrayAdapter<String> adapter = new ArrayAdapter<>(this,
                 android.R.layout.simple_spinner_item, backupModes);
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         backupSelection.setAdapter(adapter);
         backupSelection.setSelection(0);
 
+        // Initialize backup format dropdown, in the order of BackupHelper.BackupFormat
+        final Spinner formatSelection = view.findViewById(R.id.backup_format);
+        final String[] backupFormats = {getString(R.string.backup_format_json),
+                getString(R.string.backup_format_binary),
+                getString(R.string.backup_format_binary_compressed)};
+        final ArrayAdapter<String> formatAdapter = new ArrayAdapter<>(this,
+                android.R.layout.simple_spinner_item, backupFormats);
+        formatAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        formatSelection.setAdapter(formatAdapter);
+        formatSelection.setSelection(0);
+        // The format of a backup is detected when it is restored, so it is only selectable
+        // when a backup is created. Incremental backups always use the compact format.
+        backupSelection.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                formatSelection.setVisibility(getString(R.string.backup_create)
+                        .equals(parent.getItemAtPosition(position)) ? View.VISIBLE : View.GONE);
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) { }
+        });
+
         alertDialogBuilderUserInput
                 .setPositiveButton(R.string.save, new DialogInterface.OnClickListener() {
                     public void onClick(DialogInterface dialogBox, int id) {
-                        handleBackupDialogPositiveButton((String)backupSelection.getSelectedItem());
+                        handleBackupDialogPositiveButton((String)backupSelection.getSelectedItem(),
+                                BackupHelper.BackupFormat.values()[
+                                        formatSelection.getSelectedItemPosition()]);
                         dialogBox.dismiss();
                     }
                 })
@@ -1353,19 +1884,43 @@ public class MainActivity extends AppCompatActivity {
         Log.d(Utilities.getLogTag(), "After alertDialog.show()");
     }
 
-    private void handleBackupDialogPositiveButton(final String backupString) {
+    private void handleBackupDialogPositiveButton(final String backupString,
+                                                  final BackupHelper.BackupFormat format) {
         // Determine selected backup mode
         if (backupString.equals(getString(R.string.backup_restore))) {
             backupMode = BackupHelper.BackupMode.RESTORE;
         } else if (backupString.equals(getString(R.string.backup_create))) {
             backupMode = BackupHelper.BackupMode.CREATE;
+        } else if (backupString.equals(getString(R.string.backup_create_incremental))) {
+            backupMode = BackupHelper.BackupMode.CREATE_INCREMENTAL;
+        } else if (backupString.equals(getString(R.string.backup_compact_incremental))) {
+            backupMode = BackupHelper.BackupMode.COMPACT_INCREMENTAL;
         }
 
         Log.d(Utilities.getLogTag(), "Before Toast");
         final BackupHelper backupHelper = new BackupHelper(MainActivity.this);
 
         if (BackupHelper.BackupMode.CREATE.equals(backupMode)) {
-            createBackup(backupHelper);
+            createBackup(new ListRepository.Query<Boolean>() {
+                @Override
+                public Boolean run(DatabaseHelper db) {
+                    return backupHelper.createBackup(format);
+                }
+            });
+        } else if (BackupHelper.BackupMode.CREATE_INCREMENTAL.equals(backupMode)) {
+            createBackup(new ListRepository.Query<Boolean>() {
+                @Override
+                public Boolean run(DatabaseHelper db) {
+                    return backupHelper.createIncrementalBackup();
+                }
+            });
+        } else if (BackupHelper.BackupMode.COMPACT_INCREMENTAL.equals(backupMode)) {
+            createBackup(new ListRepository.Query<Boolean>() {
+                @Override
+                public Boolean run(DatabaseHelper db) {
+                    return backupHelper.compactIncrementalBackup();
+                }
+            });
         } else if (BackupHelper.BackupMode.RESTORE.equals(backupMode)) {
             restoreBackup(backupHelper);
         } else {
@@ -1373,10 +1928,27 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void createBackup(final BackupHelper backupHelper) {
+    /**
+     * Create a backup in the background and tell the user whether it was created
+     * @param backup Creates the backup, returns true if it was created
+     */
+    private void createBackup(final ListRepository.Query<Boolean> backup) {
         Log.d(Utilities.getLogTag(), "Create Mode");
         Toast.makeText(getApplicationContext(), R.string.backup_start, Toast.LENGTH_SHORT).show();
-        if (backupHelper.createBackup()) {
+        repository.execute(backup, new ListRepository.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean success) {
+                showBackupResult(success);
+            }
+        });
+    }
+
+    /**
+     * Tell the user whether the backup was created
+     * @param success True if the backup was created
+     */
+    private void showBackupResult(final boolean success) {
+        if (success) {
             Toast.makeText(getApplicationContext(), R.string.backup_end, Toast.LENGTH_LONG).show();
             File backupDirectory = MainActivity.this.getExternalFilesDir(null);
             Toast.makeText(getApplicationContext(),
@@ -1391,18 +1963,74 @@ public class MainActivity extends AppCompatActivity {
         Log.d(Utilities.getLogTag(), "Restore Mode");
         // Backup can only be restored if the file is in the expected location
         File backupDirectory = MainActivity.this.getExternalFilesDir(null);
-        if (backupDirectory != null) {
-            final File location = new File(backupDirectory.getAbsolutePath(),
-                    Constants.BACKUP_FILE_NAME);
-            if (backupHelper.restoreBackup(location)) {
-                Toast.makeText(getApplicationContext(), R.string.backup_restore_end,
-                        Toast.LENGTH_LONG).show();
-                // Refresh displayed items
-                displayLists();
-            } else {
-                Toast.makeText(getApplicationContext(), R.string.backup_restore_fail,
-                        Toast.LENGTH_LONG).show();
-            }
+        final File location = backupDirectory != null ?
+                BackupHelper.findBackup(backupDirectory) : null;
+        if (location != null) {
+            final ProgressBar progressBar = new ProgressBar(MainActivity.this, null,
+                    android.R.attr.progressBarStyleHorizontal);
+            progressBar.setMax(100);
+            final AlertDialog progressDialog = new AlertDialog.Builder(MainActivity.this)
+                    .setTitle(R.string.backup_restore_progress)
+                    .setView(progressBar)
+                    .setCancelable(false)
+                    .create();
+            progressDialog.show();
+            final BackupHelper.ProgressListener listener = new BackupHelper.ProgressListener() {
+                @Override
+                public void onProgress(final int percent) {
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            progressBar.setProgress(percent);
+                        }
+                    });
+                }
+            };
+            // The backup is read into a new database while the lists can still be loaded
+            repository.executeInBackground(new ListRepository.Query<File>() {
+                @Override
+                public File run(DatabaseHelper db) {
+                    return backupHelper.prepareRestore(location, listener);
+                }
+            }, new ListRepository.Callback<File>() {
+                @Override
+                public void onResult(final File restored) {
+                    if (restored == null) {
+                        showRestoreResult(progressDialog, false);
+                        return;
+                    }
+                    // Swapped in between two queries, so none of them sees a closed database
+                    repository.execute(new ListRepository.Query<Boolean>() {
+                        @Override
+                        public Boolean run(DatabaseHelper db) {
+                            return backupHelper.finishRestore(restored);
+                        }
+                    }, new ListRepository.Callback<Boolean>() {
+                        @Override
+                        public void onResult(Boolean success) {
+                            showRestoreResult(progressDialog, success);
+                        }
+                    });
+                }
+            });
+        } else {
+            Toast.makeText(getApplicationContext(), R.string.backup_restore_fail,
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Close the progress dialog and tell the user whether the backup was restored
+     * @param progressDialog The dialog shown while restoring
+     * @param success True if the backup was restored
+     */
+    private void showRestoreResult(final AlertDialog progressDialog, final boolean success) {
+        progressDialog.dismiss();
+        if (success) {
+            Toast.makeText(getApplicationContext(), R.string.backup_restore_end,
+                    Toast.LENGTH_LONG).show();
+            // Refresh displayed items
+            displayLists();
         } else {
             Toast.makeText(getApplicationContext(), R.string.backup_restore_fail,
                     Toast.LENGTH_LONG).show();
@@ -1431,20 +2059,30 @@ public class MainActivity extends AppCompatActivity {
      * Show all lists
      */
     private void displayLists() {
-        // Reset, because no list items are displayed
-        listEntryList.clear();
-        displayedList = null;
-        setTitle(R.string.all_lists);
         // Load lists from DB
-        listsList.clear();
-        listsList.addAll(db.getAllLists());
-        mAdapter = new MyListAdapter(listsList);
-        recyclerView.setAdapter(mAdapter);
-        currentlyDisplayed = Constants.displayedType.Lists;
-        // If there are no lists to be displayed, show a note
-        toggleEmptyNotes();
-        // Refresh the view
-        mAdapter.notifyDataSetChanged();
+        loadView(new ListRepository.Query<List<MyList>>() {
+            @Override
+            public List<MyList> run(DatabaseHelper db) {
+                return db.getAllListsWithEntryCounts();
+            }
+        }, new ListRepository.Callback<List<MyList>>() {
+            @Override
+            public void onResult(List<MyList> lists) {
+                // Reset, because no list items are displayed
+                listEntryList.clear();
+                displayedList = null;
+                setTitle(R.string.all_lists);
+                listsList.clear();
+                listsList.addAll(lists);
+                mAdapter = new MyListAdapter(listsList);
+                recyclerView.setAdapter(mAdapter);
+                currentlyDisplayed = Constants.displayedType.Lists;
+                // If there are no lists to be displayed, show a note
+                toggleEmptyNotes();
+                // Refresh the view
+                mAdapter.notifyDataSetChanged();
+            }
+        });
     }
 
     /**
@@ -1456,8 +2094,9 @@ public class MainActivity extends AppCompatActivity {
         final ListEntry deletedEntry = listEntryList.get(position);
         // Remove the item from the view
         ((EntryAdapter)mAdapter).removeItem(position);
+        pendingDeletions.add(deletedEntry, position);
         // Show snackbar with UNDO option
-        showUndoSnackbar(position, deletedEntry, Constants.displayedType.ListEntries);
+        showUndoSnackbar();
     }
 
     /**
@@ -1469,44 +2108,43 @@ public class MainActivity extends AppCompatActivity {
         final MyList deletedList = listsList.get(position);
         // Remove the item from the view
         ((MyListAdapter)mAdapter).removeList(position);
+        pendingDeletions.add(deletedList, position);
         // Show snackbar with undo option
-        showUndoSnackbar(position, deletedList, Constants.displayedType.Lists);
+        showUndoSnackbar();
     }
 
     /**
-     * Show snackbar with info which item was deleted and an undo option
-     * @param position Position of the deleted item
-     * @param deletedItem The deleted item
-     * @param itemType Type of the deleted item
+     * Show snackbar with info which item was deleted last and an undo option for it
      */
-    private void showUndoSnackbar(final int position, final ListItem deletedItem,
-                                  final Constants.displayedType itemType) {
-        // Get the name of the item to be deleted
-        String name = "";
-        if (itemType.equals(Constants.displayedType.Lists)) {
-            name = deletedItem.getTitle();
-        } else if (itemType.equals(Constants.displayedType.ListEntries)){
-            name = deletedItem.getTitle();
+    private void showUndoSnackbar() {
+        final PendingDeletions.Item pending = pendingDeletions.peekLast();
+        if (pending == null) {
+            return;
         }
         // Show snackbar
-        snackbar = Snackbar.make(coordinatorLayout, name + " " +
+        snackbar = Snackbar.make(coordinatorLayout, pending.getItem().getTitle() + " " +
                 getResources().getString(R.string.deleted), Snackbar.LENGTH_LONG);
         snackbar.setAction(R.string.undo, new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 // Undo is selected, restore the deleted item
-                if (itemType.equals(Constants.displayedType.Lists)) {
-                    ((MyListAdapter) mAdapter).restoreList((MyList) deletedItem, position);
-                } else if (itemType.equals(Constants.displayedType.ListEntries)) {
-                    ((EntryAdapter) mAdapter).restoreItem((ListEntry) deletedItem, position);
+                final PendingDeletions.Item restored = pendingDeletions.removeLast();
+                if (restored.getItem() instanceof MyList) {
+                    ((MyListAdapter) mAdapter).restoreList((MyList) restored.getItem(),
+                            restored.getPosition());
+                } else if (restored.getItem() instanceof ListEntry) {
+                    ((EntryAdapter) mAdapter).restoreItem((ListEntry) restored.getItem(),
+                            restored.getPosition());
                 }
+                // The item that was deleted before can be restored next
+                showUndoSnackbar();
             }
         });
         // Delete if the snackbar is dismissed
         snackbar.addCallback(new Snackbar.Callback() {
             @Override
             public void onDismissed(Snackbar sb, int event) {
-                handleSnackbarDismiss(event, deletedItem, itemType);
+                handleSnackbarDismiss(event);
             }
         });
         snackbar.setActionTextColor(Color.YELLOW);
@@ -1514,27 +2152,41 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Delete the item when the undo snackbar is dismissed
+     * Delete the pending items when the undo snackbar is dismissed. If it was only replaced
+     * by the snackbar of the next deleted item, the items stay pending.
      * @param event The way the snackbar was dismissed
-     * @param deletedItem The deleted item
-     * @param itemType Type of the deleted item
      */
-    private void handleSnackbarDismiss(final int event, final ListItem deletedItem,
-                                       final Constants.displayedType itemType) {
+    private void handleSnackbarDismiss(final int event) {
         if (event == Snackbar.Callback.DISMISS_EVENT_SWIPE ||
                 event == Snackbar.Callback.DISMISS_EVENT_TIMEOUT ||
-                event == Snackbar.Callback.DISMISS_EVENT_CONSECUTIVE ||
                 event == Snackbar.Callback.DISMISS_EVENT_MANUAL) {
+            commitPendingDeletions();
+        }
+    }
 
-            // Delete the item from the database
-            if (itemType.equals(Constants.displayedType.Lists)) {
-                db.deleteList((MyList) deletedItem);
-            } else if (itemType.equals(Constants.displayedType.ListEntries)) {
-                db.deleteEntry((ListEntry) deletedItem);
-            }
-
-            // If the last item was deleted, show a note
-            toggleEmptyNotes();
+    /**
+     * Delete all pending items from the database in one transaction
+     */
+    private void commitPendingDeletions() {
+        if (pendingDeletions.isEmpty()) {
+            return;
         }
+        final List<ListEntry> entries = new ArrayList<>();
+        final List<MyList> lists = new ArrayList<>();
+        pendingDeletions.drainTo(entries, lists);
+        repository.execute(new ListRepository.Query<List<ListEntry>>() {
+            @Override
+            public List<ListEntry> run(DatabaseHelper db) {
+                // The entries of the lists are deleted with them
+                return db.deleteItems(entries, lists);
+            }
+        }, new ListRepository.Callback<List<ListEntry>>() {
+            @Override
+            public void onResult(List<ListEntry> entriesWithAlarm) {
+                AlarmHandler.cancelAlarms(getApplicationContext(), entriesWithAlarm);
+                // If the last item was deleted, show a note
+                toggleEmptyNotes();
+            }
+        });
     }
-}
\ No newline at end of file
+}
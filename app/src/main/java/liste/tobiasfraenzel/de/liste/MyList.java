@@ -1,6 +1,9 @@
 package liste.tobiasfraenzel.de.liste;
 
 public class MyList extends ListItem {
+    // Number of ListEntries in this list, not part of the backup
+    private transient int entryCount;
+
     public MyList() { }
 
     public MyList(final int id, final String title, final int orderIndex) {
@@ -8,4 +11,12 @@ public class MyList extends ListItem {
         setTitle(title);
         setOrderIndex(orderIndex);
     }
+
+    final public int getEntryCount() {
+        return entryCount;
+    }
+
+    final public void setEntryCount(final int entryCount) {
+        this.entryCount = entryCount;
+    }
 }
@@ -10,8 +10,6 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.List;
 
-import liste.tobiasfraenzel.de.liste.database.DatabaseHelper;
-
 // Adapter to display the MyLists
 public class MyListAdapter extends RecyclerView.Adapter<MyListAdapter.MyViewHolder>{
 
@@ -32,6 +30,8 @@ public class MyListAdapter extends RecyclerView.Adapter<MyListAdapter.MyViewHold
 
     public MyListAdapter(final List<MyList> listsList) {
         this.listsList = listsList;
+        // Lets the RecyclerView keep the rows of lists that didn't change on a reload
+        setHasStableIds(true);
     }
 
     // Create view objects from layout (inflate)
@@ -47,12 +47,11 @@ public class MyListAdapter extends RecyclerView.Adapter<MyListAdapter.MyViewHold
     // Populate the view with data
     @Override
     public void onBindViewHolder(MyViewHolder holder, int position) {
-        final DatabaseHelper db = new DatabaseHelper(holder.itemView.getContext());
         final MyList list = listsList.get(position);
         // Set the title
         holder.title.setText(list.getTitle());
         // Set the number of entries in this list
-        holder.entryCount.setText(String.valueOf(db.getEntryCountForList(list.getId())));
+        holder.entryCount.setText(String.valueOf(list.getEntryCount()));
     }
 
     @Override
@@ -60,6 +59,11 @@ public class MyListAdapter extends RecyclerView.Adapter<MyListAdapter.MyViewHold
         return listsList.size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        return listsList.get(position).getId();
+    }
+
     /**
      * Delete all MyLists from this adapter
      */
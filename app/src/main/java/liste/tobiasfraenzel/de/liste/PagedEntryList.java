@@ -0,0 +1,763 @@
+package liste.tobiasfraenzel.de.liste;
+
+import android.util.Log;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import liste.tobiasfraenzel.de.liste.database.DatabaseHelper;
+import liste.tobiasfraenzel.de.liste.database.ListRepository;
+import liste.tobiasfraenzel.de.liste.utils.Utilities;
+
+// List of ListEntries that is loaded from the database page by page while it is accessed.
+// Only the pages close to the last accessed position are kept in memory. The pages are loaded
+// on the thread of the ListRepository, positions whose page isn't loaded yet are placeholders.
+public class PagedEntryList extends AbstractList<ListEntry> implements RandomAccess {
+    // Number of ListEntries loaded with one query
+    private static final int PAGE_SIZE = 50;
+    // Pages that are further away from the last accessed page are dropped
+    private static final int KEEP_DISTANCE = 2;
+    // The neighbouring page is loaded once a position this close to it is accessed
+    private static final int PREFETCH_DISTANCE = 10;
+    // Longer lists don't keep keys, their rows are all bound again on a reload
+    private static final int MAX_KEYS = 2000;
+
+    /**
+     * Loads the ListEntries of the list from the database. Called on the thread of the
+     * ListRepository, never on the main thread.
+     */
+    public interface PageSource {
+        /**
+         * Count the ListEntries
+         * @param excludedIds IDs of ListEntries that are not counted
+         * @return The number of ListEntries
+         */
+        int count(Set<Integer> excludedIds);
+
+        /**
+         * Load the ListEntries that follow a given ListEntry. Sources whose order can't be
+         * continued from a ListEntry can use the offset instead.
+         * @param after The ListEntry after which the page starts or null for the first page
+         * @param offset Position of the first ListEntry of the page
+         * @param limit Maximum number of ListEntries to load
+         * @param excludedIds IDs of ListEntries that are skipped
+         * @return The ListEntries of the page
+         */
+        List<ListEntry> loadPage(ListEntry after, int offset, int limit, Set<Integer> excludedIds);
+
+        /**
+         * Load the keys (ID, modification date, alarm date, list) of the ListEntries,
+         * in the order of the list. Used to find out which rows changed on a reload.
+         * @param excludedIds IDs of ListEntries that are skipped
+         * @param limit Maximum number of keys
+         * @return The keys or null if the source doesn't support it
+         */
+        List<ListEntry> loadKeys(Set<Integer> excludedIds, int limit);
+    }
+
+    /**
+     * Notified when a page has fewer ListEntries than counted, e.g. because ListEntries were
+     * deleted in the background. The list should then be reloaded.
+     */
+    public interface OnStaleListener {
+        /**
+         * Called on the thread that accesses the list, at most once per reload. May be called
+         * while a row is bound, so the reload has to be posted.
+         */
+        void onStale();
+    }
+
+    /**
+     * Notified when pages that were requested by accessing their positions are loaded
+     */
+    public interface OnPagesLoadedListener {
+        /**
+         * Called on the main thread. The positions have to be bound again.
+         * @param positionStart First position of the loaded pages
+         * @param itemCount Number of positions
+         */
+        void onPagesLoaded(int positionStart, int itemCount);
+    }
+
+    // Keys of all ListEntries that are shown, see PageSource.loadKeys(). Only kept for up to
+    // MAX_KEYS ListEntries, as the ID and a fingerprint of the shown values of every
+    // ListEntry. The arrays are never changed, so the keys can be used on another thread.
+    public static class Keys {
+        final private int[] ids;
+        final private long[] contents;
+        // Version of the list the keys were taken from, -1 if they were just loaded
+        final private int version;
+
+        private Keys(final int[] ids, final long[] contents, final int version) {
+            this.ids = ids;
+            this.contents = contents;
+            this.version = version;
+        }
+
+        /**
+         * Take the keys of loaded ListEntries
+         * @param entries The keys loaded by PageSource.loadKeys() or null
+         * @return The keys, null if there are none or more than MAX_KEYS
+         */
+        private static Keys of(final List<ListEntry> entries) {
+            if (entries == null || entries.size() > MAX_KEYS) {
+                return null;
+            }
+            final int[] ids = new int[entries.size()];
+            final long[] contents = new long[entries.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = entries.get(i).getId();
+                contents[i] = contentOf(entries.get(i));
+            }
+            return new Keys(ids, contents, -1);
+        }
+
+        /**
+         * Combine the values that are shown besides the title and description. Every change
+         * of the title or description sets a new modification date, so they aren't needed.
+         * @param entry The ListEntry
+         * @return The fingerprint of the ListEntry
+         */
+        private static long contentOf(final ListEntry entry) {
+            long content = entry.getModificationDate();
+            content = content * 31 + entry.getAlarmDate();
+            return content * 31 + entry.getListId();
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        /**
+         * Copy the keys with one ListEntry replaced
+         * @param index Position of the ListEntry
+         * @param entry The new version of the ListEntry
+         * @return The new keys
+         */
+        private Keys replace(final int index, final ListEntry entry) {
+            final int[] newIds = ids.clone();
+            final long[] newContents = contents.clone();
+            newIds[index] = entry.getId();
+            newContents[index] = contentOf(entry);
+            return new Keys(newIds, newContents, -1);
+        }
+
+        /**
+         * Copy the keys without one ListEntry
+         * @param index Position of the ListEntry
+         * @return The new keys
+         */
+        private Keys remove(final int index) {
+            final int[] newIds = new int[ids.length - 1];
+            final long[] newContents = new long[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(ids, index + 1, newIds, index, ids.length - index - 1);
+            System.arraycopy(contents, 0, newContents, 0, index);
+            System.arraycopy(contents, index + 1, newContents, index, ids.length - index - 1);
+            return new Keys(newIds, newContents, -1);
+        }
+
+        /**
+         * Copy the keys with one more ListEntry
+         * @param index Position of the ListEntry
+         * @param entry The ListEntry
+         * @return The new keys, null if there would be more than MAX_KEYS
+         */
+        private Keys add(final int index, final ListEntry entry) {
+            if (ids.length >= MAX_KEYS) {
+                return null;
+            }
+            final int[] newIds = new int[ids.length + 1];
+            final long[] newContents = new long[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, index);
+            System.arraycopy(ids, index, newIds, index + 1, ids.length - index);
+            System.arraycopy(contents, 0, newContents, 0, index);
+            System.arraycopy(contents, index, newContents, index + 1, ids.length - index);
+            newIds[index] = entry.getId();
+            newContents[index] = contentOf(entry);
+            return new Keys(newIds, newContents, -1);
+        }
+
+        /**
+         * Compute the rows that were inserted, removed, moved or changed. Can be called on
+         * any thread.
+         * @param oldKeys The keys of the ListEntries that are shown
+         * @param newKeys The keys of the ListEntries that will be shown
+         * @return The changes, to be dispatched to the adapter
+         */
+        private static DiffUtil.DiffResult diff(final Keys oldKeys, final Keys newKeys) {
+            return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldKeys.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return newKeys.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                    return oldKeys.ids[oldItemPosition] == newKeys.ids[newItemPosition];
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                    return oldKeys.contents[oldItemPosition] == newKeys.contents[newItemPosition];
+                }
+            });
+        }
+    }
+
+    // The ListEntries of a page and their display models, created when the page is loaded
+    private static class Page {
+        final private List<ListEntry> entries;
+        final private List<EntryDisplayModel> models;
+
+        private Page(final List<ListEntry> entries) {
+            this.entries = entries;
+            models = EntryDisplayModel.of(entries);
+        }
+    }
+
+    // Pages loaded in the background, from the last known anchor up to the requested page
+    private static class LoadedPages {
+        final private int firstPage;
+        // The key of the last ListEntry of every full page, starting with firstPage
+        final private List<ListEntry> anchors = new ArrayList<>();
+        // The pages close to the requested page by page number, the others are only walked
+        final private Map<Integer, Page> pages = new HashMap<>();
+
+        private LoadedPages(final PageSource source, final int firstPage, final ListEntry anchor,
+                            final int pageIndex, final Set<Integer> excludedIds) {
+            this.firstPage = firstPage;
+            // A page starts after the last ListEntry of the previous page, so the pages
+            // between the last known anchor and the requested page are loaded one by one
+            ListEntry after = anchor;
+            for (int i = firstPage; i <= pageIndex; i++) {
+                final List<ListEntry> loaded =
+                        source.loadPage(after, i * PAGE_SIZE, PAGE_SIZE, excludedIds);
+                // The display models are only created for the pages that are kept
+                if (pageIndex - i <= KEEP_DISTANCE) {
+                    pages.put(i, new Page(loaded));
+                }
+                if (loaded.size() < PAGE_SIZE) {
+                    if (i < pageIndex) {
+                        // There are no more ListEntries after this page
+                        pages.put(pageIndex, new Page(new ArrayList<ListEntry>()));
+                    }
+                    break;
+                }
+                after = keyOf(loaded.get(loaded.size() - 1));
+                anchors.add(after);
+            }
+        }
+    }
+
+    // Number of ListEntries and first page of a source, loaded in the background
+    public static class FirstPage {
+        final private PageSource source;
+        final private Set<Integer> excludedIds;
+        final private int size;
+        final private Page page;
+        final private Keys keys;
+        // Changes since the previous keys or null if they are unknown
+        final private DiffUtil.DiffResult diff;
+        final private int previousVersion;
+
+        private FirstPage(final PageSource source, final Set<Integer> excludedIds,
+                          final Keys previousKeys) {
+            this.source = source;
+            this.excludedIds = excludedIds;
+            // One more than can be kept, to find out if there are too many
+            keys = Keys.of(source.loadKeys(excludedIds, MAX_KEYS + 1));
+            size = keys != null ? keys.size() : source.count(excludedIds);
+            page = new Page(source.loadPage(null, 0, PAGE_SIZE, excludedIds));
+            if (keys != null && previousKeys != null) {
+                diff = Keys.diff(previousKeys, keys);
+                previousVersion = previousKeys.version;
+            } else {
+                diff = null;
+                previousVersion = -1;
+            }
+        }
+    }
+
+    final private ListRepository repository;
+    private PageSource source = null;
+    private int size = 0;
+    // Loaded pages by page number
+    final private Map<Integer, Page> pages = new HashMap<>();
+    // For every page, the key of the last ListEntry of the previous page (null for the first page)
+    final private List<ListEntry> anchors = new ArrayList<>();
+    // ListEntries that were removed from the list, but are still in the database
+    final private Set<Integer> hiddenIds = new HashSet<>();
+    // Keys of all ListEntries in the order of the list or null if they aren't known or there
+    // are too many. The version changes whenever the ListEntries change.
+    private Keys keys = null;
+    private int keysVersion = 0;
+    private OnStaleListener onStaleListener = null;
+    private OnPagesLoadedListener onPagesLoadedListener = null;
+    // Set once the listener was told that the count is outdated, until the next reload
+    private boolean stale = false;
+    // Numbers of the pages that are being loaded
+    final private Set<Integer> loadingPages = new HashSet<>();
+    // Run once the page with the number is loaded, see load()
+    final private Map<Integer, List<Runnable>> pageCallbacks = new HashMap<>();
+    // Changes whenever loaded pages are dropped, pages loaded before are outdated then
+    private int generation = 0;
+    // Number of the page that was accessed last
+    private int currentPage = 0;
+
+    /**
+     * @param repository Loads the pages in the background
+     */
+    public PagedEntryList(final ListRepository repository) {
+        this.repository = repository;
+        anchors.add(null);
+    }
+
+    /**
+     * Show the ListEntries of another source, with the first page already loaded
+     * @param firstPage The first page of the new source, see loadFirstPage()
+     */
+    final public void setSource(final FirstPage firstPage) {
+        this.source = firstPage.source;
+        hiddenIds.clear();
+        reload(firstPage);
+    }
+
+    /**
+     * Set who is told when the ListEntries changed since they were counted
+     * @param listener The listener or null
+     */
+    final public void setOnStaleListener(final OnStaleListener listener) {
+        onStaleListener = listener;
+    }
+
+    /**
+     * Set who is told when pages were loaded in the background
+     * @param listener The listener or null
+     */
+    final public void setOnPagesLoadedListener(final OnPagesLoadedListener listener) {
+        onPagesLoadedListener = listener;
+    }
+
+    /**
+     * Get the source of the ListEntries
+     * @return The source or null if the list is empty
+     */
+    final public PageSource getSource() {
+        return source;
+    }
+
+    /**
+     * Load the first page of a source. Can be called on a background thread.
+     * @param source The source
+     * @param excludedIds IDs of ListEntries that are skipped, see getHiddenIds()
+     * @return The first page, to be passed to setSource() or reload() on the main thread
+     */
+    public static FirstPage loadFirstPage(final PageSource source,
+                                          final Set<Integer> excludedIds) {
+        return new FirstPage(source, excludedIds, null);
+    }
+
+    /**
+     * Load the first page of a source and the changes since the ListEntries that are shown.
+     * Can be called on a background thread.
+     * @param source The source
+     * @param excludedIds IDs of ListEntries that are skipped, see getHiddenIds()
+     * @param previousKeys The keys of the ListEntries that are shown, see getKeys()
+     * @return The first page, to be passed to reload() on the main thread
+     */
+    public static FirstPage loadFirstPage(final PageSource source,
+                                          final Set<Integer> excludedIds,
+                                          final Keys previousKeys) {
+        return new FirstPage(source, excludedIds, previousKeys);
+    }
+
+    /**
+     * Get the keys of the ListEntries that are shown
+     * @return The keys, which can be used on another thread, or null if not known
+     */
+    final public Keys getKeys() {
+        return keys != null ? new Keys(keys.ids, keys.contents, keysVersion) : null;
+    }
+
+    /**
+     * Get the IDs of the ListEntries that were removed from the list
+     * @return A copy of the IDs, which can be used on another thread
+     */
+    final public Set<Integer> getHiddenIds() {
+        return new HashSet<>(hiddenIds);
+    }
+
+    /**
+     * Drop all loaded pages and use a first page that was loaded in the background
+     * @param firstPage The first page of the current source, see loadFirstPage()
+     * @return The changes to be dispatched to the adapter or null if all rows have to be updated
+     */
+    final public DiffUtil.DiffResult reload(final FirstPage firstPage) {
+        if (firstPage.source != source) {
+            // Another source is shown in the meantime
+            return null;
+        }
+        if (!firstPage.excludedIds.equals(hiddenIds)) {
+            // ListEntries were removed or added back in the meantime, so the count is off
+            notifyStale();
+            return null;
+        }
+        // The diff is only valid if the ListEntries didn't change since it was computed
+        final boolean diffValid = firstPage.diff != null && firstPage.previousVersion == keysVersion;
+        dropAllPages();
+        size = firstPage.size;
+        pages.put(0, firstPage.page);
+        if (firstPage.page.entries.size() == PAGE_SIZE) {
+            anchors.add(keyOf(firstPage.page.entries.get(PAGE_SIZE - 1)));
+        }
+        keys = firstPage.keys;
+        keysVersion++;
+        stale = false;
+        modCount++;
+        return diffValid ? firstPage.diff : null;
+    }
+
+    /**
+     * Drop all loaded pages, also the ones that are being loaded
+     */
+    private void dropAllPages() {
+        pages.clear();
+        anchors.clear();
+        anchors.add(null);
+        loadingPages.clear();
+        generation++;
+    }
+
+    /**
+     * Drop the loaded pages from the given position on, e.g. after the order changed
+     * @param index The first position that changed
+     */
+    final public void invalidateFrom(final int index) {
+        dropPagesFrom(index);
+        // The order might have changed in a way that isn't known here
+        keys = null;
+        keysVersion++;
+    }
+
+    /**
+     * Drop the loaded pages from the given position on
+     * @param index The first position that changed
+     */
+    private void dropPagesFrom(final int index) {
+        // Pages that are being loaded might have been loaded before the change
+        loadingPages.clear();
+        generation++;
+        final int firstPage = Math.max(index, 0) / PAGE_SIZE;
+        final Iterator<Integer> it = pages.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next() >= firstPage) {
+                it.remove();
+            }
+        }
+        // The anchor of the first page is the last ListEntry before it and thus still valid
+        while (anchors.size() > firstPage + 1) {
+            anchors.remove(anchors.size() - 1);
+        }
+    }
+
+    @Override
+    public void clear() {
+        source = null;
+        hiddenIds.clear();
+        pageCallbacks.clear();
+        dropAllPages();
+        size = 0;
+        keys = null;
+        keysVersion++;
+        stale = false;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a ListEntry, the page containing it is loaded in the background if necessary
+     * @param index Position of the ListEntry
+     * @return The ListEntry or a placeholder with a negative ID until its page is loaded
+     */
+    @Override
+    public ListEntry get(final int index) {
+        final Page page = getLoadedPage(index);
+        if (page == null) {
+            // Negative, so that the stable IDs of the placeholders don't collide
+            return new ListEntry(-(index + 1), "", "", 0, 0, DatabaseHelper.NO_ID);
+        }
+        return page.entries.get(index % PAGE_SIZE);
+    }
+
+    /**
+     * Get how a ListEntry is shown
+     * @param index Position of the ListEntry
+     * @return The display model of the ListEntry
+     */
+    final public EntryDisplayModel getDisplayModel(final int index) {
+        final Page page = getLoadedPage(index);
+        return page != null ? page.models.get(index % PAGE_SIZE) : EntryDisplayModel.PLACEHOLDER;
+    }
+
+    /**
+     * Get the ID of a ListEntry. Taken from the keys if they are loaded, so that the page
+     * containing the ListEntry doesn't have to be loaded.
+     * @param index Position of the ListEntry
+     * @return The ID of the ListEntry
+     */
+    final public int getId(final int index) {
+        return keys != null ? keys.ids[index] : get(index).getId();
+    }
+
+    @Override
+    public ListEntry set(final int index, final ListEntry entry) {
+        // The keys have to follow, otherwise the next diff is made against the old ListEntry
+        if (keys != null && index < keys.size()) {
+            keys = keys.replace(index, entry);
+        }
+        keysVersion++;
+        final Page page = getLoadedPage(index);
+        if (page == null) {
+            // The row is replaced on the reload anyway
+            return get(index);
+        }
+        page.models.set(index % PAGE_SIZE, EntryDisplayModel.of(entry));
+        return page.entries.set(index % PAGE_SIZE, entry);
+    }
+
+    /**
+     * Remove a ListEntry from the list. It is only hidden, deleting it from the database
+     * is up to the caller.
+     * @param index Position of the ListEntry
+     * @return The removed ListEntry
+     */
+    @Override
+    public ListEntry remove(final int index) {
+        final ListEntry entry = get(index);
+        hiddenIds.add(entry.getId());
+        size--;
+        dropPagesFrom(index);
+        if (keys != null) {
+            keys = keys.remove(index);
+        }
+        keysVersion++;
+        modCount++;
+        return entry;
+    }
+
+    /**
+     * Add a ListEntry back that was removed before. New ListEntries have to be inserted
+     * into the database instead, followed by a reload().
+     * @param index Position of the ListEntry
+     * @param entry The ListEntry
+     */
+    @Override
+    public void add(final int index, final ListEntry entry) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (!hiddenIds.remove(entry.getId())) {
+            throw new UnsupportedOperationException("Only removed ListEntries can be added back");
+        }
+        size++;
+        dropPagesFrom(index);
+        if (keys != null) {
+            keys = keys.add(index, entry);
+        }
+        keysVersion++;
+        modCount++;
+    }
+
+    /**
+     * Check whether the ListEntry at a position is loaded, e.g. before it is edited
+     * @param index Position of the ListEntry
+     * @return True if the ListEntry is loaded, false if a placeholder is shown
+     */
+    final public boolean isLoaded(final int index) {
+        final Page page = index >= 0 && index < size ? pages.get(index / PAGE_SIZE) : null;
+        return page != null && index % PAGE_SIZE < page.entries.size();
+    }
+
+    /**
+     * Run code once the ListEntry at a position is loaded
+     * @param index Position of the ListEntry
+     * @param onLoaded Run on the main thread, right away if the ListEntry is already loaded.
+     *                 Not run if another source is shown before the page is loaded.
+     */
+    final public void load(final int index, final Runnable onLoaded) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        final int pageIndex = index / PAGE_SIZE;
+        if (pages.containsKey(pageIndex)) {
+            onLoaded.run();
+            return;
+        }
+        List<Runnable> callbacks = pageCallbacks.get(pageIndex);
+        if (callbacks == null) {
+            callbacks = new ArrayList<>();
+            pageCallbacks.put(pageIndex, callbacks);
+        }
+        callbacks.add(onLoaded);
+        currentPage = pageIndex;
+        requestPage(pageIndex);
+    }
+
+    /**
+     * Get the page that contains a position. If it isn't loaded, it is requested.
+     * @param index The position
+     * @return The page, null if it isn't loaded yet or if the ListEntries changed since they
+     * were counted and the page ends before the position. The OnStaleListener is told in
+     * the latter case.
+     */
+    private Page getLoadedPage(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        final int pageIndex = index / PAGE_SIZE;
+        currentPage = pageIndex;
+        final Page page = pages.get(pageIndex);
+        if (page == null) {
+            requestPage(pageIndex);
+            return null;
+        }
+        dropDistantPages(pageIndex);
+        // Load the neighbouring page before it is scrolled to
+        final int offset = index % PAGE_SIZE;
+        if (offset >= PAGE_SIZE - PREFETCH_DISTANCE && (pageIndex + 1) * PAGE_SIZE < size) {
+            requestPage(pageIndex + 1);
+        } else if (offset < PREFETCH_DISTANCE && pageIndex > 0) {
+            requestPage(pageIndex - 1);
+        }
+        if (offset >= page.entries.size()) {
+            // E.g. a renumbering, an alarm or the orphan sweep changed the ListEntries
+            notifyStale();
+            return null;
+        }
+        return page;
+    }
+
+    /**
+     * Tell the OnStaleListener that the ListEntries changed since they were counted,
+     * at most once per reload
+     */
+    private void notifyStale() {
+        if (!stale) {
+            stale = true;
+            Log.d(Utilities.getLogTag(), "ListEntries changed since they were counted");
+            if (onStaleListener != null) {
+                onStaleListener.onStale();
+            }
+        }
+    }
+
+    /**
+     * Load a page in the background, unless it is loaded or being loaded already
+     * @param pageIndex Number of the page
+     */
+    private void requestPage(final int pageIndex) {
+        if (source == null || pages.containsKey(pageIndex) || !loadingPages.add(pageIndex)) {
+            return;
+        }
+        final PageSource loadSource = source;
+        final int firstPage = Math.min(anchors.size() - 1, pageIndex);
+        final ListEntry anchor = anchors.get(firstPage);
+        final Set<Integer> excludedIds = new HashSet<>(hiddenIds);
+        final int loadGeneration = generation;
+        repository.execute(new ListRepository.Query<LoadedPages>() {
+            @Override
+            public LoadedPages run(DatabaseHelper db) {
+                return new LoadedPages(loadSource, firstPage, anchor, pageIndex, excludedIds);
+            }
+        }, new ListRepository.Callback<LoadedPages>() {
+            @Override
+            public void onResult(LoadedPages loaded) {
+                onPageLoaded(loadSource, loadGeneration, pageIndex, loaded);
+            }
+        });
+    }
+
+    /**
+     * Add the pages that were loaded in the background, if they are still current
+     * @param loadSource The source they were loaded from
+     * @param loadGeneration The generation when the load was requested
+     * @param pageIndex Number of the requested page
+     * @param loaded The loaded pages
+     */
+    private void onPageLoaded(final PageSource loadSource, final int loadGeneration,
+                              final int pageIndex, final LoadedPages loaded) {
+        if (loadSource != source) {
+            return;
+        }
+        if (loadGeneration == generation) {
+            loadingPages.remove(pageIndex);
+            for (int i = 0; i < loaded.anchors.size(); i++) {
+                if (anchors.size() == loaded.firstPage + i + 1) {
+                    anchors.add(loaded.anchors.get(i));
+                }
+            }
+            pages.putAll(loaded.pages);
+            final List<Runnable> callbacks = pageCallbacks.remove(pageIndex);
+            if (callbacks != null) {
+                for (Runnable callback : callbacks) {
+                    callback.run();
+                }
+            }
+            dropDistantPages(currentPage);
+        } else if (pageCallbacks.containsKey(pageIndex)) {
+            // Loaded before a change, so it is loaded again for the waiting callbacks
+            requestPage(pageIndex);
+        }
+        // The placeholders are bound again, which also requests outdated pages again
+        final int positionStart = pageIndex * PAGE_SIZE;
+        if (onPagesLoadedListener != null && positionStart < size) {
+            onPagesLoadedListener.onPagesLoaded(positionStart,
+                    Math.min(PAGE_SIZE, size - positionStart));
+        }
+    }
+
+    /**
+     * Drop the pages that are too far away from the current page
+     * @param pageIndex Number of the current page
+     */
+    private void dropDistantPages(final int pageIndex) {
+        final Iterator<Integer> it = pages.keySet().iterator();
+        while (it.hasNext()) {
+            if (Math.abs(it.next() - pageIndex) > KEEP_DISTANCE) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Copy only the values of a ListEntry that are needed to find its position and
+     * to detect changes
+     * @param entry The ListEntry
+     * @return A ListEntry with only ID, order index, list, modification and alarm date set
+     */
+    private static ListEntry keyOf(final ListEntry entry) {
+        final ListEntry key = new ListEntry(entry.getId(), "", "", entry.getModificationDate(),
+                entry.getOrderIndex(), entry.getListId());
+        key.setAlarmDate(entry.getAlarmDate());
+        return key;
+    }
+}
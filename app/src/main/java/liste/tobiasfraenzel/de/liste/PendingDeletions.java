@@ -0,0 +1,76 @@
+package liste.tobiasfraenzel.de.liste;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+// Items that were removed from the view, but are only deleted from the database once the undo
+// window closes. Undo works item by item, starting with the most recently removed one.
+public class PendingDeletions {
+
+    // An item awaiting deletion and the position it was removed from
+    public static class Item {
+        final private ListItem item;
+        final private int position;
+
+        private Item(final ListItem item, final int position) {
+            this.item = item;
+            this.position = position;
+        }
+
+        final public ListItem getItem() {
+            return item;
+        }
+
+        final public int getPosition() {
+            return position;
+        }
+    }
+
+    final private Deque<Item> items = new ArrayDeque<>();
+
+    /**
+     * Add an item that was removed from the view
+     * @param item The MyList or ListEntry
+     * @param position Position of the item before it was removed
+     */
+    final public void add(final ListItem item, final int position) {
+        items.addLast(new Item(item, position));
+    }
+
+    /**
+     * Get the most recently removed item, the one that can be restored next
+     * @return The item or null if there are none
+     */
+    final public Item peekLast() {
+        return items.peekLast();
+    }
+
+    /**
+     * Take the most recently removed item out of the queue, e.g. to restore it
+     * @return The item or null if there are none
+     */
+    final public Item removeLast() {
+        return items.pollLast();
+    }
+
+    final public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Take all ListEntries and lists out of the queue, to delete them
+     * @param entries Receives the ListEntries
+     * @param lists Receives the lists
+     */
+    final public void drainTo(final List<ListEntry> entries, final List<MyList> lists) {
+        for (Item pending : items) {
+            if (pending.item instanceof MyList) {
+                lists.add((MyList) pending.item);
+            } else if (pending.item instanceof ListEntry) {
+                entries.add((ListEntry) pending.item);
+            }
+        }
+        items.clear();
+    }
+}
@@ -8,6 +8,7 @@ import android.os.Build;
 import android.util.Log;
 
 import java.util.Calendar;
+import java.util.List;
 
 import liste.tobiasfraenzel.de.liste.ListEntry;
 import liste.tobiasfraenzel.de.liste.utils.Constants;
@@ -43,6 +44,19 @@ public class AlarmHandler {
         cancelAlarm(context, entry.getTitle(), entry.getId());
     }
 
+    /**
+     * Cancels the registered alarms of several entries, e.g. of a deleted list
+     * @param context Current context
+     * @param entries The entries for which the reminders are canceled
+     */
+    public static void cancelAlarms(final Context context, final List<ListEntry> entries) {
+        final AlarmManager alarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
+        for (final ListEntry entry : entries) {
+            alarmManager.cancel(createPendingIntentForAlarm(context, entry.getTitle(), entry.getId()));
+        }
+        Log.d(Utilities.getLogTag(), "Alarms canceled for ListEntries: " + entries.size());
+    }
+
     public static void cancelAlarm(final Context context, final String title, final int id) {
         final AlarmManager alarmManager = (AlarmManager) context.getSystemService(ALARM_SERVICE);
         alarmManager.cancel(createPendingIntentForAlarm(context, title, id));
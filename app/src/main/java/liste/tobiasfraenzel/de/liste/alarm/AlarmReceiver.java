@@ -58,8 +58,12 @@ public class AlarmReceiver extends BroadcastReceiver {
         notificationManager.notify(Constants.NOTIFICATION_ID, builder.build());
         // Delete the alarm from the database, so it won't be triggered again
         if (id > -1) {
-            final DatabaseHelper db = new DatabaseHelper(context);
-            db.removeAlarmForEntryId(id);
+            final DatabaseHelper db = DatabaseHelper.acquire(context);
+            try {
+                db.removeAlarmForEntryId(id);
+            } finally {
+                db.release();
+            }
         }
     }
 }
\ No newline at end of file
@@ -5,11 +5,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.List;
-import java.util.Locale;
 
 import liste.tobiasfraenzel.de.liste.ListEntry;
 import liste.tobiasfraenzel.de.liste.database.DatabaseHelper;
@@ -31,20 +28,18 @@ public class BootReceiver extends BroadcastReceiver {
      * @param context Current context
      */
     final public void recreateAlarms(final Context context) {
-        final DatabaseHelper db = new DatabaseHelper(context);
-        final List<ListEntry> allEntries = db.getAllEntries();
+        final DatabaseHelper db = DatabaseHelper.acquire(context);
+        final List<ListEntry> allEntries;
+        try {
+            allEntries = db.getEntriesWithAlarm();
+        } finally {
+            db.release();
+        }
         for (final ListEntry entry : allEntries) {
-            if (entry.getAlarmDate() != null) {
+            if (entry.hasAlarm()) {
                 final Calendar newAlarmDate = Calendar.getInstance();
-                final SimpleDateFormat newAlarmDateFormat = new SimpleDateFormat(
-                        Constants.ALARM_DATE_FORMAT, Locale.getDefault());
-                try {
-                    //noinspection ConstantConditions
-                    newAlarmDate.setTime(newAlarmDateFormat.parse(entry.getAlarmDate()));
-                    AlarmHandler.setAlarm(context, newAlarmDate, entry.getTitle(), entry.getId());
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
+                newAlarmDate.setTimeInMillis(entry.getAlarmDate());
+                AlarmHandler.setAlarm(context, newAlarmDate, entry.getTitle(), entry.getId());
             }
         }
     }
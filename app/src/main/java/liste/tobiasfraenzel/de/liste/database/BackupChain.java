@@ -0,0 +1,144 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import liste.tobiasfraenzel.de.liste.utils.Utilities;
+
+// The files of an incremental backup, in a directory of their own: the base file, which is a
+// complete backup, and the delta files that were written after it, numbered from 1.
+// All files of a chain contain the same random chain id, see BinaryBackupFormat.
+final class BackupChain {
+    private static final String BASE_FILE_NAME = "base.bin";
+    private static final String DELTA_PREFIX = "delta-";
+    private static final String DELTA_SUFFIX = ".bin";
+    private static final String DELTA_FORMAT = DELTA_PREFIX + "%05d" + DELTA_SUFFIX;
+
+    private BackupChain() { }
+
+    static File getBase(final File directory) {
+        return new File(directory, BASE_FILE_NAME);
+    }
+
+    /**
+     * @param directory The directory of the chain
+     * @param index Number of the delta file, starting at 1
+     * @return The delta file
+     */
+    static File getDelta(final File directory, final int index) {
+        return new File(directory, String.format(Locale.ROOT, DELTA_FORMAT, index));
+    }
+
+    /**
+     * Check whether a file is the base file of a chain, which is restored together with
+     * the delta files written after it
+     * @param file The file
+     * @return True if it is a base file
+     */
+    static boolean isBase(final File file) {
+        return BASE_FILE_NAME.equals(file.getName());
+    }
+
+    private static boolean isDelta(final File file) {
+        return file.getName().startsWith(DELTA_PREFIX) && file.getName().endsWith(DELTA_SUFFIX);
+    }
+
+    /**
+     * Find the files of the chain that can be restored: the base file and the delta files
+     * with the same chain id, up to the first missing one
+     * @param directory The directory of the chain
+     * @return The files in the order they have to be restored, empty if there is no base file
+     * @throws IOException If a file can't be read
+     */
+    static List<File> find(final File directory) throws IOException {
+        final List<File> files = new ArrayList<>();
+        final BinaryBackupReader.ChainLink base = readLink(getBase(directory));
+        if (base == null || base.index != 0) {
+            return files;
+        }
+        files.add(getBase(directory));
+        for (int index = 1; ; index++) {
+            final BinaryBackupReader.ChainLink delta = readLink(getDelta(directory, index));
+            // Left over from an older chain, e.g. if deleting it was interrupted
+            if (delta == null || delta.chainId != base.chainId || delta.index != index) {
+                return files;
+            }
+            files.add(getDelta(directory, index));
+        }
+    }
+
+    /**
+     * Check whether the files of the chain are the ones the database expects
+     * @param directory The directory of the chain
+     * @param chainId ID of the chain in the database
+     * @param length Number of delta files the database wrote
+     * @return True if the next delta file can be added to the chain
+     * @throws IOException If a file can't be read
+     */
+    static boolean matches(final File directory, final long chainId, final int length)
+            throws IOException {
+        final List<File> files = find(directory);
+        if (files.size() != length + 1) {
+            return false;
+        }
+        final BinaryBackupReader.ChainLink base = readLink(files.get(0));
+        return base != null && base.chainId == chainId;
+    }
+
+    /**
+     * Get the time the chain was last written to
+     * @param directory The directory of the chain
+     * @return The modification time of the newest file, 0 if there is no chain
+     */
+    static long getLastModified(final File directory) {
+        long lastModified = 0;
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (isBase(file) || isDelta(file)) {
+                    lastModified = Math.max(lastModified, file.lastModified());
+                }
+            }
+        }
+        return lastModified;
+    }
+
+    /**
+     * Delete all delta files, after a new base file was written
+     * @param directory The directory of the chain
+     */
+    static void deleteDeltas(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (isDelta(file) && !file.delete()) {
+                Log.d(Utilities.getLogTag(), "Old delta not deleted: " + file);
+            }
+        }
+    }
+
+    /**
+     * Read which chain a file belongs to
+     * @param file The file
+     * @return The chain id and index, null if the file doesn't exist or isn't part of a chain
+     * @throws IOException If the file can't be read
+     */
+    private static BinaryBackupReader.ChainLink readLink(final File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (final InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return BinaryBackupFormat.hasHeader(in) ? BinaryBackupReader.readChainLink(in) : null;
+        }
+    }
+}
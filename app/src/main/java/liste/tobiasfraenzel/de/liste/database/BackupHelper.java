@@ -4,84 +4,397 @@ import android.content.Context;
 import android.os.Environment;
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
 
 import liste.tobiasfraenzel.de.liste.utils.Constants;
 import liste.tobiasfraenzel.de.liste.utils.Utilities;
 
 public class BackupHelper {
+    // Appended to the name of a backup file while it is written
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Number of delta files after which an incremental backup writes a new base file instead
+    private static final int MAX_DELTAS = 30;
+
     final private Context context;
     public enum BackupMode {
         CREATE,
+        CREATE_INCREMENTAL,
+        COMPACT_INCREMENTAL,
         RESTORE
     }
 
+    // Informed about the progress of restoring a backup
+    public interface ProgressListener {
+        /**
+         * @param percent How much of the backup file was read (0-100)
+         */
+        void onProgress(int percent);
+    }
+
+    // Counts the bytes that are read from the backup file to report the progress
+    private static class ProgressInputStream extends FilterInputStream {
+        final private long length;
+        final private ProgressListener listener;
+        private long read;
+        private int percent = -1;
+
+        /**
+         * @param in The file
+         * @param offset Number of bytes of the backup that were read before this file
+         * @param length Length of the backup in bytes, the sum of all files
+         * @param listener Informed about the progress
+         */
+        private ProgressInputStream(final InputStream in, final long offset, final long length,
+                                    final ProgressListener listener) {
+            super(in);
+            this.read = offset;
+            this.length = length;
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            final int n = super.read(buffer, offset, count);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(final int n) {
+            read += n;
+            final int current = length > 0 ? (int) Math.min(100, read * 100 / length) : 100;
+            // Only report changes, not every buffer that is read
+            if (current != percent) {
+                percent = current;
+                listener.onProgress(current);
+            }
+        }
+    }
+
+    // Formats of the backup file. The binary formats are smaller and faster to write,
+    // JSON can be read by older versions of the app.
+    public enum BackupFormat {
+        JSON(Constants.BACKUP_FILE_NAME),
+        BINARY(Constants.BINARY_BACKUP_FILE_NAME),
+        BINARY_COMPRESSED(Constants.BINARY_BACKUP_FILE_NAME);
+
+        final private String fileName;
+
+        BackupFormat(final String fileName) {
+            this.fileName = fileName;
+        }
+
+        final public String getFileName() {
+            return fileName;
+        }
+    }
+
     public BackupHelper(Context context) {
         this.context = context;
     }
 
     /**
-     * Converts a nested List to JSON
-     * @param data The nested List to be converted
-     * @return The JSON String
+     * Read all data from the database and save it in a backup file. The rows are written while
+     * they are read from the database, so memory use doesn't depend on the size of the backup.
+     * The file is first written under a temporary name, so a failed backup doesn't replace
+     * the previous one.
+     * @param format The format of the backup file
+     * @return True if the saving was successful, false otherwise
      */
-    private String convertDataToJson(final List<List<?>> data) {
-        final Gson gson = new Gson();
-        return gson.toJson(data);
+    final public boolean createBackup(final BackupFormat format) {
+        if (!isExternalStorageWritable()) {
+            return false;
+        }
+        final DatabaseHelper db = DatabaseHelper.getInstance(context);
+        try {
+            final File directory = createPublicBackupStorageDir();
+            final File backup = new File(directory, format.getFileName());
+            final File temp = new File(directory, format.getFileName() + TEMP_SUFFIX);
+            try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                createWriter(format, out).write(db);
+            }
+            if (!temp.renameTo(backup)) {
+                return false;
+            }
+            // Only the newest backup is restored, see findBackup()
+            deleteOtherBackups(directory, format);
+            return true;
+        } catch (IOException ex) {
+            Log.e(Utilities.getLogTag(), "Backup failed", ex);
+            return false;
+        }
     }
 
     /**
-     * Convert JSON data to a nested List
-     * @param data The JSON String
-     * @return The nested List containing the data
+     * Create the writer for a backup format
+     * @param format The format of the backup file
+     * @param out The backup file
+     * @return The writer
      */
-    private List<List<Map<String, Object>>> convertJsonToData(final String data) {
-        final Gson gson = new Gson();
-        return gson.fromJson(data, new TypeToken<List<List<Map<String, Object>>>>(){}.getType());
+    private static BackupWriter createWriter(final BackupFormat format, final OutputStream out) {
+        switch (format) {
+            case BINARY:
+                return new BinaryBackupWriter(out, false);
+            case BINARY_COMPRESSED:
+                return new BinaryBackupWriter(out, true);
+            default:
+                return new JsonBackupWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
     }
 
     /**
-     * Read all data from the database and save it in a JSON file
-     * @return True if the saving was successful, false otherwise
+     * Delete the backup files of the other formats, so that restoring a backup always uses the
+     * one that was created last
+     * @param directory The backup directory
+     * @param format The format of the backup that was just created
+     */
+    private static void deleteOtherBackups(final File directory, final BackupFormat format) {
+        for (BackupFormat other : BackupFormat.values()) {
+            if (!other.getFileName().equals(format.getFileName())) {
+                final File file = new File(directory, other.getFileName());
+                if (file.exists() && !file.delete()) {
+                    Log.d(Utilities.getLogTag(), "Old backup not deleted: " + file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the backup file in the backup directory
+     * @param directory The backup directory
+     * @return The most recently modified backup file of any format, or the base file of the
+     * incremental backup if it was written to last. Null if there is no backup.
      */
-    final public boolean createBackup() {
-        final DatabaseHelper db = new DatabaseHelper(context);
-        return saveDataToFile(db.getFullDatabaseContent());
+    public static File findBackup(final File directory) {
+        File latest = null;
+        long latestModified = 0;
+        for (BackupFormat format : BackupFormat.values()) {
+            final File file = new File(directory, format.getFileName());
+            if (file.isFile() && (latest == null || file.lastModified() > latestModified)) {
+                latest = file;
+                latestModified = file.lastModified();
+            }
+        }
+        final File chain = new File(directory, Constants.INCREMENTAL_BACKUP_DIRECTORY);
+        final File base = BackupChain.getBase(chain);
+        if (base.isFile() && (latest == null ||
+                BackupChain.getLastModified(chain) > latestModified)) {
+            latest = base;
+        }
+        return latest;
     }
 
     /**
-     * Write the data into a JSON file in the public backup storage directory
-     * @param data Nested List containing the data to be backed up
-     * @return True if the write was successful, false otherwise
+     * Save the changes since the last incremental backup in a delta file. Reading the changes
+     * takes time proportional to their number, not to the size of the database.
+     * A new base file is written instead if there is no backup chain yet, if it got too long,
+     * or if its files don't match the database anymore.
+     * @return True if the saving was successful, false otherwise
      */
-    private boolean saveDataToFile(final List<List<?>> data) {
+    final public boolean createIncrementalBackup() {
         if (!isExternalStorageWritable()) {
             return false;
         }
-        final String jsonData = convertDataToJson(data);
+        final DatabaseHelper db = DatabaseHelper.getInstance(context);
+        try {
+            final File directory = createIncrementalBackupDir();
+            final long chainId = db.getBackupChainId();
+            final int length = db.getBackupChainLength();
+            if (chainId == 0 || length >= MAX_DELTAS ||
+                    !BackupChain.matches(directory, chainId, length)) {
+                return writeBase(db, directory);
+            }
+            final long logEnd = db.getChangeLogEnd();
+            if (logEnd == 0) {
+                Log.d(Utilities.getLogTag(), "Nothing changed since the last incremental backup");
+                return true;
+            }
+            final File delta = BackupChain.getDelta(directory, length + 1);
+            final File temp = new File(directory, delta.getName() + TEMP_SUFFIX);
+            try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                final BinaryBackupWriter writer = new BinaryBackupWriter(out, true);
+                writer.setChain(chainId, length + 1);
+                writer.writeDelta(db.getChanges(logEnd));
+            }
+            if (!temp.renameTo(delta)) {
+                return false;
+            }
+            db.extendBackupChain(logEnd);
+            return true;
+        } catch (IOException ex) {
+            Log.e(Utilities.getLogTag(), "Incremental backup failed", ex);
+            return false;
+        }
+    }
 
-        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(createPublicBackupStorageDir() + "/" +
-                        Constants.BACKUP_FILE_NAME), StandardCharsets.UTF_8))) {
-            writer.write(jsonData);
+    /**
+     * Replace the incremental backup with a new base file containing the current data.
+     * The delta files are deleted.
+     * @return True if the saving was successful, false otherwise
+     */
+    final public boolean compactIncrementalBackup() {
+        if (!isExternalStorageWritable()) {
+            return false;
+        }
+        try {
+            return writeBase(DatabaseHelper.getInstance(context), createIncrementalBackupDir());
         } catch (IOException ex) {
+            Log.e(Utilities.getLogTag(), "Compacting the incremental backup failed", ex);
             return false;
         }
-        return true;
+    }
+
+    /**
+     * Start a new backup chain by writing its base file and deleting the delta files of the
+     * previous chain
+     * @param db The database
+     * @param directory The directory of the incremental backup
+     * @return True if the base file was written
+     * @throws IOException If the base file can't be written
+     */
+    private static boolean writeBase(final DatabaseHelper db, final File directory)
+            throws IOException {
+        final long chainId = newChainId();
+        // Changes made from now on are recorded for the next delta file
+        final long logEnd = db.startBackupChain(chainId);
+        boolean success = false;
+        try {
+            final File base = BackupChain.getBase(directory);
+            final File temp = new File(directory, base.getName() + TEMP_SUFFIX);
+            try (final OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                final BinaryBackupWriter writer = new BinaryBackupWriter(out, true);
+                writer.setChain(chainId, 0);
+                writer.write(db);
+            }
+            if (temp.renameTo(base)) {
+                // The deltas of the previous chain are ignored from now on, see BackupChain
+                BackupChain.deleteDeltas(directory);
+                db.trimChangeLog(logEnd);
+                success = true;
+            }
+        } finally {
+            if (!success) {
+                // Deltas must not be written for a base file that doesn't exist
+                db.endBackupChain();
+            }
+        }
+        return success;
+    }
+
+    /**
+     * @return A random ID for a backup chain, not 0
+     */
+    private static long newChainId() {
+        final SecureRandom random = new SecureRandom();
+        long chainId;
+        do {
+            chainId = random.nextLong();
+        } while (chainId == 0);
+        return chainId;
+    }
+
+    /**
+     * Build a database from an incremental backup: its base file and the delta files that
+     * belong to it, all in one transaction
+     * @param directory The directory of the incremental backup
+     * @param listener Informed about the progress
+     * @return The restored database file
+     * @throws IOException If a file can't be read
+     */
+    private File restoreChain(final File directory, final ProgressListener listener)
+            throws IOException {
+        final List<File> files = BackupChain.find(directory);
+        if (files.isEmpty()) {
+            throw new IOException("No base file in " + directory);
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        final long length = total;
+        final File baseFile = files.get(0);
+        final BackupReader base = new BackupReader() {
+            @Override
+            public void read(RowConsumer<ListEntry> entries, RowConsumer<MyList> lists)
+                    throws IOException {
+                try (final InputStream in = openBackup(baseFile, 0, length, listener)) {
+                    new BinaryBackupReader(in).read(entries, lists);
+                }
+            }
+        };
+        final List<DeltaReader> deltas = new ArrayList<>();
+        long offset = baseFile.length();
+        for (final File file : files.subList(1, files.size())) {
+            final long start = offset;
+            deltas.add(new DeltaReader() {
+                @Override
+                public void read(RowConsumer<ListEntry> entries, RowConsumer<MyList> lists,
+                                 RowConsumer<Integer> deletedEntries,
+                                 RowConsumer<Integer> deletedLists) throws IOException {
+                    try (final InputStream in = openBackup(file, start, length, listener)) {
+                        new BinaryBackupReader(in).read(entries, lists, deletedEntries,
+                                deletedLists);
+                    }
+                }
+            });
+            offset += file.length();
+        }
+        return DatabaseHelper.getInstance(context).createFromBackup(base, deltas);
+    }
+
+    /**
+     * Open a file of a backup for reading
+     * @param file The file
+     * @param offset Number of bytes of the backup that were read before this file
+     * @param length Length of the backup in bytes, the sum of all files
+     * @param listener Informed about the progress
+     * @return The buffered stream
+     * @throws IOException If the file can't be opened
+     */
+    private static InputStream openBackup(final File file, final long offset, final long length,
+                                          final ProgressListener listener) throws IOException {
+        return new BufferedInputStream(new ProgressInputStream(new FileInputStream(file),
+                offset, length, listener));
+    }
+
+    /**
+     * Create the directory of the incremental backup within the public backup storage directory
+     * @return The File object of the directory
+     */
+    private File createIncrementalBackupDir() throws IOException {
+        final File directory = new File(createPublicBackupStorageDir(),
+                Constants.INCREMENTAL_BACKUP_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Incremental backup directory creation failed");
+        }
+        return directory;
     }
 
     /**
@@ -102,42 +415,58 @@ public class BackupHelper {
     }
 
     /**
-     * Read backup from file, delete current DB content, insert data read from backup
-     * @param location File object of the backup file
-     * @return True if restoring the backup was successful, false otherwise
+     * First step of a restore: read the backup from file into a new database file next to the
+     * current one. The file can be in any of the backup formats, a base file is restored with
+     * the deltas of its incremental backup. The file is read while the rows are inserted, so
+     * memory use doesn't depend on the size of the backup. The current DB content isn't touched
+     * and can still be read and written meanwhile.
+     * @param location File object of the backup file, see findBackup()
+     * @param listener Informed about the progress, called on the thread that restores the backup
+     * @return The restored database file for finishRestore(), null if restoring failed
      */
-    final public boolean restoreBackup(final File location) {
+    final public File prepareRestore(final File location, final ProgressListener listener) {
         if (!isExternalStorageReadable()) {
-            return false;
+            return null;
+        }
+        if (BackupChain.isBase(location)) {
+            try {
+                return restoreChain(location.getParentFile(), listener);
+            } catch (IOException | RuntimeException ex) {
+                Log.e(Utilities.getLogTag(), "Restoring the incremental backup failed", ex);
+                return null;
+            }
         }
-        // Read from file
-        final StringBuilder text = new StringBuilder();
+        final DatabaseHelper db = DatabaseHelper.getInstance(context);
+        try (final InputStream in = openBackup(location, 0, location.length(), listener)) {
+            // The format is detected from the header, independent of the file name
+            if (BinaryBackupFormat.hasHeader(in)) {
+                return db.createFromBackup(new BinaryBackupReader(in));
+            } else {
+                return db.createFromBackup(new JsonBackupReader(new InputStreamReader(in,
+                        StandardCharsets.UTF_8)));
+            }
+        } catch (IOException | RuntimeException ex) {
+            // JsonReader throws IllegalStateExceptions for unexpected tokens
+            Log.e(Utilities.getLogTag(), "Restoring the backup failed", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Second step of a restore: replace the current DB content with the restored database.
+     * Changes made since prepareRestore() was called are replaced as well. Has to be called
+     * on the thread of the ListRepository.
+     * @param restored The file returned by prepareRestore()
+     * @return True if the restored database is used now, false if the current one is kept
+     */
+    final public boolean finishRestore(final File restored) {
         try {
-            final BufferedReader br = new BufferedReader(new FileReader(location));
-            String line;
-            while ((line = br.readLine()) != null) {
-                text.append(line);
-                text.append('\n');
-            }
-            br.close();
-        } catch (IOException e) {
+            DatabaseHelper.getInstance(context).replaceDatabase(restored);
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            Log.e(Utilities.getLogTag(), "Replacing the database failed", ex);
             return false;
         }
-
-        // Erase current DB entries
-        final DatabaseHelper db = new DatabaseHelper(context);
-        db.cleanTables();
-
-        // Write to DB
-        final String backupDataJson = text.toString();
-        final List<List<Map<String, Object>>> backupData = convertJsonToData(backupDataJson);
-        Log.d(Utilities.getLogTag(), "ArrayList: " + Arrays.toString(backupData.toArray()));
-        final List<Map<String, Object>> entries = backupData.get(0);
-        Log.d(Utilities.getLogTag(), "ListEntries: " + Arrays.toString(entries.toArray()));
-        final List<Map<String, Object>> lists = backupData.get(1);
-        Log.d(Utilities.getLogTag(), "Lists: " + Arrays.toString(lists.toArray()));
-
-        return db.parseAndStoreEntries(entries) && db.parseAndRestoreLists(lists);
     }
 
     /**
@@ -0,0 +1,18 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.IOException;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+
+// Reads the ListEntries and lists of a backup one by one, while the file is read.
+// Implementations only decode the file, storing the rows is up to the consumers.
+interface BackupReader {
+    /**
+     * Read the whole backup
+     * @param entries Receives the ListEntries in the order of the backup
+     * @param lists Receives the lists in the order of the backup
+     * @throws IOException If the backup can't be read or is malformed
+     */
+    void read(RowConsumer<ListEntry> entries, RowConsumer<MyList> lists) throws IOException;
+}
@@ -0,0 +1,24 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.IOException;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+
+// The ListEntries and lists that are written into a backup, passed one by one.
+// Both methods can be called more than once and in any order.
+interface BackupSource {
+    /**
+     * Pass all ListEntries to a consumer
+     * @param consumer Receives the ListEntries
+     * @throws IOException If the consumer fails
+     */
+    void forEachEntry(RowConsumer<ListEntry> consumer) throws IOException;
+
+    /**
+     * Pass all lists to a consumer
+     * @param consumer Receives the lists
+     * @throws IOException If the consumer fails
+     */
+    void forEachList(RowConsumer<MyList> consumer) throws IOException;
+}
@@ -0,0 +1,14 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.IOException;
+
+// Writes the ListEntries and lists of a backup in one of the backup formats.
+// Implementations only encode the rows, where they come from is up to the source.
+interface BackupWriter {
+    /**
+     * Write the whole backup
+     * @param source Provides the ListEntries and lists
+     * @throws IOException If the backup can't be written
+     */
+    void write(BackupSource source) throws IOException;
+}
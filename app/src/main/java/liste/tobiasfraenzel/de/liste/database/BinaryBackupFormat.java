@@ -0,0 +1,127 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Layout of the compact backup file, written by BinaryBackupWriter and read by
+// BinaryBackupReader.
+//
+// Header (never compressed):
+//   4 bytes  magic "LSTB"
+//   1 byte   version
+//   1 byte   flags, FLAG_DEFLATE if the rest of the file is deflate-compressed
+// Records, until RECORD_END:
+//   1 byte   record type
+//   varint   length of the payload in bytes, at most MAX_RECORD_LENGTH
+//   payload
+// Records of unknown types are skipped, so newer versions can add records without breaking
+// older readers. A file without RECORD_END is truncated and rejected.
+//
+// Incremental backups consist of a base file and delta files, each starting with a
+// RECORD_CHAIN. The base file is a complete backup of VERSION. Delta files have
+// VERSION_DELTA, so that they are rejected by readers that would restore them as a complete
+// backup. Their list and ListEntry records replace the rows with the same ID.
+//
+// Numbers in the payload are zigzag varints. Strings are a varint with the number of UTF-8
+// bytes, or -1 for null, followed by the bytes.
+final class BinaryBackupFormat {
+    static final byte[] MAGIC = {'L', 'S', 'T', 'B'};
+    static final int VERSION = 1;
+    static final int VERSION_DELTA = 2;
+    static final int FLAG_DEFLATE = 1;
+    // Longest payload of a record. Longer ones are rejected instead of allocated, the
+    // largest records (the string table and ListEntries with long texts) stay far below.
+    static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+
+    // Marks the end of the backup, no payload
+    static final int RECORD_END = 0;
+    // The list names: count, then the names. List records refer to them by index.
+    static final int RECORD_STRINGS = 1;
+    // A list: id, index of its name, order index
+    static final int RECORD_LIST = 2;
+    // A ListEntry: id, list id, order index, modification date, alarm date, title, description
+    static final int RECORD_ENTRY = 3;
+    // The incremental backup the file belongs to: chain id, index of the file (0 = base file)
+    static final int RECORD_CHAIN = 4;
+    // A deleted ListEntry in a delta file: id
+    static final int RECORD_DELETED_ENTRY = 5;
+    // A deleted list in a delta file: id
+    static final int RECORD_DELETED_LIST = 6;
+
+    private BinaryBackupFormat() { }
+
+    /**
+     * Check whether a backup starts with the header of this format. The stream is reset
+     * to its position before the header afterwards.
+     * @param in The backup, has to support mark()
+     * @return True if the backup is in this format, false if it is e.g. JSON
+     * @throws IOException If the backup can't be read
+     */
+    static boolean hasHeader(final InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            for (byte b : MAGIC) {
+                if (in.read() != b) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Write a number as a zigzag varint: small positive and negative numbers take one byte
+     * @param out Receives the number
+     * @param value The number
+     * @throws IOException If the number can't be written
+     */
+    static void writeVarLong(final OutputStream out, final long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    /**
+     * Write a String as its length and UTF-8 bytes
+     * @param out Receives the String
+     * @param value The String or null
+     * @throws IOException If the String can't be written
+     */
+    static void writeString(final OutputStream out, final String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, -1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a zigzag varint
+     * @param in The stream, positioned before the number
+     * @return The number
+     * @throws IOException If the stream ends before the number or the number is too long
+     */
+    static long readVarLong(final InputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.read();
+            if (b == -1) {
+                throw new IOException("Backup ends within a number");
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed number in backup");
+    }
+}
@@ -0,0 +1,266 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+
+import static liste.tobiasfraenzel.de.liste.database.BinaryBackupFormat.readVarLong;
+
+// Reads the compact backup format, see BinaryBackupFormat.
+// The records are decoded one by one, records of unknown types are skipped.
+class BinaryBackupReader implements BackupReader, DeltaReader {
+    final private InputStream in;
+
+    // The incremental backup a file belongs to
+    static final class ChainLink {
+        final long chainId;
+        // 0 for the base file, 1 and up for the delta files
+        final int index;
+
+        private ChainLink(final long chainId, final int index) {
+            this.chainId = chainId;
+            this.index = index;
+        }
+    }
+
+    // The payload of the current record, the buffer is reused for all records
+    private static class Payload extends ByteArrayInputStream {
+        private static final int INITIAL_SIZE = 256;
+
+        private Payload() {
+            super(new byte[INITIAL_SIZE]);
+        }
+
+        /**
+         * Read the length and the payload of the next record from the backup
+         * @param in The backup, positioned after the type of the record
+         * @throws IOException If the length is malformed or the backup ends before the payload
+         */
+        private void load(final DataInputStream in) throws IOException {
+            final long length = readVarLong(in);
+            if (length < 0 || length > BinaryBackupFormat.MAX_RECORD_LENGTH) {
+                throw new IOException("Malformed record length in backup");
+            }
+            // The buffer only grows as far as the data arrives, so that a corrupt length
+            // in a truncated backup doesn't allocate the whole length up front
+            int read = 0;
+            while (read < length) {
+                if (read == buf.length) {
+                    buf = Arrays.copyOf(buf, (int) Math.min(length, buf.length * 2L));
+                }
+                in.readFully(buf, read, (int) Math.min(length, buf.length) - read);
+                read = (int) Math.min(length, buf.length);
+            }
+            pos = 0;
+            count = (int) length;
+        }
+
+        private int readInt() throws IOException {
+            final long value = readVarLong(this);
+            if (value != (int) value) {
+                throw new IOException("Number out of range in backup");
+            }
+            return (int) value;
+        }
+
+        private String readString() throws IOException {
+            final int length = readInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > available()) {
+                throw new IOException("Malformed string in backup");
+            }
+            final String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+
+    /**
+     * @param in The backup file, closed by the caller
+     */
+    BinaryBackupReader(final InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public void read(final RowConsumer<ListEntry> entries, final RowConsumer<MyList> lists)
+            throws IOException {
+        read(entries, lists, null, null, false);
+    }
+
+    @Override
+    public void read(final RowConsumer<ListEntry> entries, final RowConsumer<MyList> lists,
+                     final RowConsumer<Integer> deletedEntries,
+                     final RowConsumer<Integer> deletedLists) throws IOException {
+        read(entries, lists, deletedEntries, deletedLists, true);
+    }
+
+    /**
+     * Read a complete backup or a delta
+     * @param entries Receives the ListEntries
+     * @param lists Receives the lists
+     * @param deletedEntries Receives the IDs of deleted ListEntries, null for a complete backup
+     * @param deletedLists Receives the IDs of deleted lists, null for a complete backup
+     * @param delta True if the file has to be a delta
+     * @throws IOException If the backup can't be read or isn't of the expected kind
+     */
+    private void read(final RowConsumer<ListEntry> entries, final RowConsumer<MyList> lists,
+                      final RowConsumer<Integer> deletedEntries,
+                      final RowConsumer<Integer> deletedLists, final boolean delta)
+            throws IOException {
+        final DataInputStream header = new DataInputStream(in);
+        final int version = readVersion(header);
+        if ((version == BinaryBackupFormat.VERSION_DELTA) != delta) {
+            throw new IOException(delta ? "Not a delta of an incremental backup" :
+                    "Delta of an incremental backup, it can only be restored with its base file");
+        }
+        final int flags = header.readUnsignedByte();
+        if ((flags & BinaryBackupFormat.FLAG_DEFLATE) != 0) {
+            final Inflater inflater = new Inflater();
+            try {
+                readRecords(new DataInputStream(new InflaterInputStream(in, inflater)),
+                        entries, lists, deletedEntries, deletedLists);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            readRecords(header, entries, lists, deletedEntries, deletedLists);
+        }
+    }
+
+    /**
+     * Read the incremental backup a file belongs to, without reading the rest of the file
+     * @param in The file, closed by the caller
+     * @return The chain id and the index of the file, null if it is a standalone backup
+     * @throws IOException If the file can't be read
+     */
+    static ChainLink readChainLink(final InputStream in) throws IOException {
+        final DataInputStream header = new DataInputStream(in);
+        readVersion(header);
+        final int flags = header.readUnsignedByte();
+        final Inflater inflater = new Inflater();
+        try {
+            final DataInputStream body = (flags & BinaryBackupFormat.FLAG_DEFLATE) != 0 ?
+                    new DataInputStream(new InflaterInputStream(in, inflater)) : header;
+            // The chain record is the first record of the files of an incremental backup
+            if (body.read() != BinaryBackupFormat.RECORD_CHAIN) {
+                return null;
+            }
+            final Payload payload = new Payload();
+            payload.load(body);
+            final long chainId = readVarLong(payload);
+            return new ChainLink(chainId, payload.readInt());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Read the magic number and the version of the header
+     * @param header The file, positioned at its start
+     * @return The version
+     * @throws IOException If the file isn't a binary backup or of a newer version
+     */
+    private static int readVersion(final DataInputStream header) throws IOException {
+        final byte[] magic = new byte[BinaryBackupFormat.MAGIC.length];
+        header.readFully(magic);
+        if (!Arrays.equals(magic, BinaryBackupFormat.MAGIC)) {
+            throw new IOException("Not a binary backup");
+        }
+        final int version = header.readUnsignedByte();
+        if (version > BinaryBackupFormat.VERSION_DELTA) {
+            throw new IOException("Backup version " + version + " is not supported");
+        }
+        return version;
+    }
+
+    /**
+     * Read everything after the header
+     * @param body The records
+     * @param entries Receives the ListEntries
+     * @param lists Receives the lists
+     * @param deletedEntries Receives the IDs of deleted ListEntries, null for a complete backup
+     * @param deletedLists Receives the IDs of deleted lists, null for a complete backup
+     * @throws IOException If a record can't be read or the backup is truncated
+     */
+    private static void readRecords(final DataInputStream body,
+                                    final RowConsumer<ListEntry> entries,
+                                    final RowConsumer<MyList> lists,
+                                    final RowConsumer<Integer> deletedEntries,
+                                    final RowConsumer<Integer> deletedLists) throws IOException {
+        final Payload payload = new Payload();
+        String[] names = new String[0];
+        while (true) {
+            final int type = body.read();
+            if (type == -1) {
+                throw new IOException("Backup is truncated");
+            }
+            payload.load(body);
+            switch (type) {
+                case BinaryBackupFormat.RECORD_END:
+                    // Also makes the inflater check that the compressed data is complete
+                    if (body.read() != -1) {
+                        throw new IOException("Unexpected data after the end of the backup");
+                    }
+                    return;
+                case BinaryBackupFormat.RECORD_STRINGS:
+                    final int count = payload.readInt();
+                    // Every string takes at least one byte for its length
+                    if (count < 0 || count > payload.available()) {
+                        throw new IOException("Malformed string table in backup");
+                    }
+                    names = new String[count];
+                    for (int i = 0; i < names.length; i++) {
+                        names[i] = payload.readString();
+                    }
+                    break;
+                case BinaryBackupFormat.RECORD_LIST:
+                    final int listId = payload.readInt();
+                    final int nameIndex = payload.readInt();
+                    if (nameIndex < -1 || nameIndex >= names.length) {
+                        throw new IOException("List " + listId + " refers to a missing name");
+                    }
+                    lists.accept(new MyList(listId, nameIndex != -1 ? names[nameIndex] : null,
+                            payload.readInt()));
+                    break;
+                case BinaryBackupFormat.RECORD_ENTRY:
+                    final int id = payload.readInt();
+                    final int entryListId = payload.readInt();
+                    final int orderIndex = payload.readInt();
+                    final long modificationDate = readVarLong(payload);
+                    final long alarmDate = readVarLong(payload);
+                    final ListEntry entry = new ListEntry(id, payload.readString(),
+                            payload.readString(), modificationDate, orderIndex, entryListId);
+                    entry.setAlarmDate(alarmDate);
+                    entries.accept(entry);
+                    break;
+                case BinaryBackupFormat.RECORD_DELETED_ENTRY:
+                    if (deletedEntries == null) {
+                        throw new IOException("Deletion in a complete backup");
+                    }
+                    deletedEntries.accept(payload.readInt());
+                    break;
+                case BinaryBackupFormat.RECORD_DELETED_LIST:
+                    if (deletedLists == null) {
+                        throw new IOException("Deletion in a complete backup");
+                    }
+                    deletedLists.accept(payload.readInt());
+                    break;
+                default:
+                    // E.g. RECORD_CHAIN, which is checked before the chain is restored,
+                    // or written by a newer version. The payload was already consumed.
+                    break;
+            }
+        }
+    }
+}
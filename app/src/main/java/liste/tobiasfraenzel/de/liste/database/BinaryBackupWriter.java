@@ -0,0 +1,187 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+
+import static liste.tobiasfraenzel.de.liste.database.BinaryBackupFormat.writeString;
+import static liste.tobiasfraenzel.de.liste.database.BinaryBackupFormat.writeVarLong;
+
+// Writes the compact backup format, see BinaryBackupFormat.
+// The lists are collected first to build the string table, the ListEntries are written
+// while they are read from the source.
+class BinaryBackupWriter implements BackupWriter {
+    final private OutputStream out;
+    final private boolean compress;
+    // Payload of the current record, reused for all records
+    final private ByteArrayOutputStream record = new ByteArrayOutputStream();
+    // The incremental backup the file belongs to, 0 for a standalone backup
+    private long chainId = 0;
+    private int chainIndex = 0;
+
+    /**
+     * @param out The backup file, closed by the caller
+     * @param compress True to deflate everything after the header
+     */
+    BinaryBackupWriter(final OutputStream out, final boolean compress) {
+        this.out = out;
+        this.compress = compress;
+    }
+
+    /**
+     * Make the file part of an incremental backup
+     * @param chainId Random ID of the backup chain, not 0
+     * @param index 0 for the base file, 1 and up for the delta files
+     */
+    final public void setChain(final long chainId, final int index) {
+        this.chainId = chainId;
+        this.chainIndex = index;
+    }
+
+    @Override
+    public void write(final BackupSource source) throws IOException {
+        write(BinaryBackupFormat.VERSION, source, null);
+    }
+
+    /**
+     * Write a delta file of an incremental backup, setChain() has to be called before
+     * @param delta Provides the changed and deleted ListEntries and lists
+     * @throws IOException If the delta can't be written
+     */
+    final public void writeDelta(final DeltaSource delta) throws IOException {
+        write(BinaryBackupFormat.VERSION_DELTA, delta, delta);
+    }
+
+    /**
+     * Write the header and the records
+     * @param version Version in the header
+     * @param source Provides the ListEntries and lists
+     * @param delta Provides the deleted ListEntries and lists, null for a complete backup
+     * @throws IOException If the file can't be written
+     */
+    private void write(final int version, final BackupSource source, final DeltaSource delta)
+            throws IOException {
+        out.write(BinaryBackupFormat.MAGIC);
+        out.write(version);
+        out.write(compress ? BinaryBackupFormat.FLAG_DEFLATE : 0);
+        if (compress) {
+            final Deflater deflater = new Deflater();
+            try {
+                final DeflaterOutputStream body = new DeflaterOutputStream(out, deflater);
+                writeRecords(source, delta, body);
+                body.finish();
+            } finally {
+                deflater.end();
+            }
+        } else {
+            writeRecords(source, delta, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write everything after the header
+     * @param source Provides the ListEntries and lists
+     * @param delta Provides the deleted ListEntries and lists, null for a complete backup
+     * @param body Receives the records
+     * @throws IOException If a record can't be written
+     */
+    private void writeRecords(final BackupSource source, final DeltaSource delta,
+                              final OutputStream body) throws IOException {
+        if (chainId != 0) {
+            writeVarLong(record, chainId);
+            writeVarLong(record, chainIndex);
+            writeRecord(body, BinaryBackupFormat.RECORD_CHAIN);
+        }
+
+        // There are few lists compared to ListEntries, so they are kept in memory
+        final List<MyList> lists = new ArrayList<>();
+        source.forEachList(new RowConsumer<MyList>() {
+            @Override
+            public void accept(MyList list) {
+                lists.add(list);
+            }
+        });
+        // Index of each distinct list name in the string table
+        final Map<String, Integer> names = new LinkedHashMap<>();
+        for (MyList list : lists) {
+            if (list.getTitle() != null && !names.containsKey(list.getTitle())) {
+                names.put(list.getTitle(), names.size());
+            }
+        }
+
+        writeVarLong(record, names.size());
+        for (String name : names.keySet()) {
+            writeString(record, name);
+        }
+        writeRecord(body, BinaryBackupFormat.RECORD_STRINGS);
+
+        for (MyList list : lists) {
+            writeVarLong(record, list.getId());
+            // -1 for lists without a name
+            final Integer nameIndex = names.get(list.getTitle());
+            writeVarLong(record, nameIndex != null ? nameIndex : -1);
+            writeVarLong(record, list.getOrderIndex());
+            writeRecord(body, BinaryBackupFormat.RECORD_LIST);
+        }
+
+        source.forEachEntry(new RowConsumer<ListEntry>() {
+            @Override
+            public void accept(ListEntry entry) throws IOException {
+                writeVarLong(record, entry.getId());
+                writeVarLong(record, entry.getListId());
+                writeVarLong(record, entry.getOrderIndex());
+                writeVarLong(record, entry.getModificationDate());
+                writeVarLong(record, entry.getAlarmDate());
+                writeString(record, entry.getTitle());
+                writeString(record, entry.getDescription());
+                writeRecord(body, BinaryBackupFormat.RECORD_ENTRY);
+            }
+        });
+
+        if (delta != null) {
+            delta.forEachDeletedEntry(new RowConsumer<Integer>() {
+                @Override
+                public void accept(Integer id) throws IOException {
+                    writeVarLong(record, id);
+                    writeRecord(body, BinaryBackupFormat.RECORD_DELETED_ENTRY);
+                }
+            });
+            delta.forEachDeletedList(new RowConsumer<Integer>() {
+                @Override
+                public void accept(Integer id) throws IOException {
+                    writeVarLong(record, id);
+                    writeRecord(body, BinaryBackupFormat.RECORD_DELETED_LIST);
+                }
+            });
+        }
+
+        writeRecord(body, BinaryBackupFormat.RECORD_END);
+    }
+
+    /**
+     * Write the type and length of the current record followed by its payload
+     * @param body Receives the record
+     * @param type The type of the record
+     * @throws IOException If the record can't be written or is too long to be read back
+     */
+    private void writeRecord(final OutputStream body, final int type) throws IOException {
+        if (record.size() > BinaryBackupFormat.MAX_RECORD_LENGTH) {
+            // It couldn't be restored
+            throw new IOException("Record too large for the backup");
+        }
+        body.write(type);
+        writeVarLong(body, record.size());
+        record.writeTo(body);
+        record.reset();
+    }
+}
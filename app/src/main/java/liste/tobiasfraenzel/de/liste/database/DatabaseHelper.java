@@ -1,43 +1,303 @@
 package liste.tobiasfraenzel.de.liste.database;
 
+import android.content.ComponentCallbacks2;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseIntArray;
 
-import java.text.SimpleDateFormat;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import liste.tobiasfraenzel.de.liste.MyList;
 import liste.tobiasfraenzel.de.liste.ListEntry;
 import liste.tobiasfraenzel.de.liste.R;
+import liste.tobiasfraenzel.de.liste.database.model.BackupChainTable;
+import liste.tobiasfraenzel.de.liste.database.model.ChangeLogTable;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryFtsTable;
 import liste.tobiasfraenzel.de.liste.database.model.ListTable;
 import liste.tobiasfraenzel.de.liste.database.model.ListEntryTable;
+import liste.tobiasfraenzel.de.liste.database.model.OrphanSweepTable;
 import liste.tobiasfraenzel.de.liste.utils.Constants;
 import liste.tobiasfraenzel.de.liste.utils.Utilities;
 
-public class DatabaseHelper extends SQLiteOpenHelper {
+public class DatabaseHelper extends SQLiteOpenHelper implements BackupSource {
 
-    private static final int DATABASE_VERSION = 2;
+    // Stands for a missing item, e.g. a missing neighbour in reorderEntries(). IDs start at 1.
+    public static final int NO_ID = 0;
+
+    private static final int DATABASE_VERSION = 8;
     private static final String DATABASE_NAME = "list_db";
+    // Distance between the order indices of neighbouring items after renumbering
+    private static final int ORDER_INDEX_GAP = 1024;
+    // Number of orphaned ListEntries deleted per transaction by purgeOrphanedEntries()
+    private static final int ORPHAN_BATCH_SIZE = 500;
+    // A restore builds this file next to the database and then renames it to the database
+    private static final String RESTORED_SUFFIX = "-restore";
+    // Time replaceDatabase() waits for the other handles to be released
+    private static final long RELEASE_TIMEOUT_MILLIS = 10000;
+    // Single-row updates that only write the columns that change. They are compiled once per
+    // connection and reused, see executeUpdate(). Package-private for QueryPlanTest.
+    static final String SQL_UPDATE_ENTRY = "UPDATE " + ListEntryTable.TABLE_NAME +
+            " SET " + ListEntryTable.COLUMN_TITLE + " = ?, " + ListEntryTable.COLUMN_DESCRIPTION +
+            " = ?, " + ListEntryTable.COLUMN_ALARMDATE + " = ? WHERE " +
+            ListEntryTable.COLUMN_ID + " = ?";
+    static final String SQL_UPDATE_ENTRY_AND_TIMESTAMP = "UPDATE " +
+            ListEntryTable.TABLE_NAME + " SET " + ListEntryTable.COLUMN_TITLE + " = ?, " +
+            ListEntryTable.COLUMN_DESCRIPTION + " = ?, " + ListEntryTable.COLUMN_ALARMDATE +
+            " = ?, " + ListEntryTable.COLUMN_TIMESTAMP + " = ? WHERE " +
+            ListEntryTable.COLUMN_ID + " = ?";
+    static final String SQL_SET_ALARM_DATE = "UPDATE " + ListEntryTable.TABLE_NAME +
+            " SET " + ListEntryTable.COLUMN_ALARMDATE + " = ? WHERE " +
+            ListEntryTable.COLUMN_ID + " = ?";
+    static final String SQL_CLEAR_ALARM = "UPDATE " + ListEntryTable.TABLE_NAME +
+            " SET " + ListEntryTable.COLUMN_ALARMDATE + " = NULL WHERE " +
+            ListEntryTable.COLUMN_ID + " = ?";
+    static final String SQL_TOUCH_ENTRY = "UPDATE " + ListEntryTable.TABLE_NAME +
+            " SET " + ListEntryTable.COLUMN_TIMESTAMP + " = ? WHERE " +
+            ListEntryTable.COLUMN_ID + " = ?";
+    // Inserts of restored rows. Rows of a delta replace the older version of the same row.
+    private static final String SQL_RESTORE_ENTRY = "INSERT OR REPLACE INTO " +
+            ListEntryTable.TABLE_NAME +
+            "(" + ListEntryTable.COLUMN_ID + ", " + ListEntryTable.COLUMN_TITLE + ", " +
+            ListEntryTable.COLUMN_DESCRIPTION + ", " + ListEntryTable.COLUMN_TIMESTAMP + ", " +
+            ListEntryTable.COLUMN_ORDERINDEX + ", " + ListEntryTable.COLUMN_GROUPID +
+            ") VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SQL_RESTORE_LIST = "INSERT OR REPLACE INTO " +
+            ListTable.TABLE_NAME + "(" +
+            ListTable.COLUMN_ID + ", " + ListTable.COLUMN_NAME + ", " +
+            ListTable.COLUMN_ORDERINDEX + ") VALUES (?, ?, ?)";
+    static final String SQL_RESTORE_DELETE_ENTRY = "DELETE FROM " +
+            ListEntryTable.TABLE_NAME + " WHERE " + ListEntryTable.COLUMN_ID + " = ?";
+    static final String SQL_RESTORE_DELETE_LIST = "DELETE FROM " + ListTable.TABLE_NAME +
+            " WHERE " + ListTable.COLUMN_ID + " = ?";
+    static final String SQL_MOVE_ENTRY = "UPDATE " + ListEntryTable.TABLE_NAME +
+            " SET " + ListEntryTable.COLUMN_GROUPID + " = ?, " + ListEntryTable.COLUMN_ORDERINDEX +
+            " = ?, " + ListEntryTable.COLUMN_TIMESTAMP + " = ? WHERE " +
+            ListEntryTable.COLUMN_ID + " = ?";
+    // Selection of the ListEntries matching an FTS MATCH expression
+    static final String SEARCH_SELECTION = ListEntryFtsTable.TABLE_NAME + " MATCH ?";
+    // ListEntries whose list doesn't exist anymore
+    private static final String ORPHAN_SELECTION = ListEntryTable.COLUMN_GROUPID + " NOT IN (" +
+            "SELECT " + ListTable.COLUMN_ID + " FROM " + ListTable.TABLE_NAME + ")";
+    // Maps a row to the ID in its first column
+    private static final RowMapper<Integer> ID_MAPPER = new RowMapper<Integer>() {
+        @Override
+        public Integer map(Cursor cursor) {
+            return cursor.getInt(0);
+        }
+    };
+    // Display order of entries within a list and of lists.
+    // Both tables use the same names for the ID and order index columns.
+    private static final String ORDER_BY_ORDER_INDEX = ListEntryTable.COLUMN_ORDERINDEX + " " +
+            Constants.DIRECTION_ASCENDING + ", " + ListEntryTable.COLUMN_ID + " " +
+            Constants.DIRECTION_ASCENDING;
+    // Entries together with the name of the list they belong to
+    private static final String ENTRIES_WITH_LIST_NAME = ListEntryTable.TABLE_NAME +
+            " LEFT JOIN " + ListTable.TABLE_NAME + " ON " + ListEntryTable.TABLE_NAME + "." +
+            ListEntryTable.COLUMN_GROUPID + " = " + ListTable.TABLE_NAME + "." + ListTable.COLUMN_ID;
+    private static final String[] COLUMNS_WITH_LIST_NAME = {ListEntryTable.TABLE_NAME + ".*",
+            ListTable.TABLE_NAME + "." + ListTable.COLUMN_NAME + " AS " +
+                    ListEntryMapper.COLUMN_LIST_NAME};
+    // Columns that identify a ListEntry and its position, without the title and description
+    private static final String[] KEY_COLUMNS = {ListEntryTable.COLUMN_ID,
+            ListEntryTable.COLUMN_TIMESTAMP, ListEntryTable.COLUMN_ORDERINDEX,
+            ListEntryTable.COLUMN_GROUPID, ListEntryTable.COLUMN_ALARMDATE};
+    // The one helper (and therefore the one connection) shared by the whole process
+    private static DatabaseHelper instance;
     final private Context context;
+    // Number of components that currently hold a handle acquired through acquire() or retain()
+    private int references = 0;
+    // Set if a close was requested while handles were still held
+    private boolean closeRequested = false;
+    // Statistics to verify that the connection is reused
+    private int openCount = 0;
+    private int closeCount = 0;
+    // Renumbers order indices in the background before the gaps run out
+    final private ExecutorService rebalanceExecutor = Executors.newSingleThreadExecutor();
+    // Selections for which a renumbering is already scheduled
+    final private Set<String> pendingRebalances = new HashSet<>();
+    // Lists and recently viewed ListEntries, updated on every write
+    final private ListCache cache = new ListCache();
+    // Compiled statements by SQL and the connection they were compiled for
+    final private Map<String, SQLiteStatement> statements = new HashMap<>();
+    private SQLiteDatabase statementsDb = null;
+
+    private DatabaseHelper(Context context) {
+        this(context, DATABASE_NAME, null);
+    }
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    /**
+     * Create a helper for a database file of its own, e.g. a temporary database in a test.
+     * The app uses the shared helper of getInstance() instead.
+     * @param context The application context
+     * @param name File name of the database
+     * @param factory Creates the cursors of all queries, or null for the default cursors
+     */
+    DatabaseHelper(final Context context, final String name,
+                   final SQLiteDatabase.CursorFactory factory) {
+        super(context, name, factory, DATABASE_VERSION);
         this.context = context;
     }
 
+    /**
+     * Get the process-wide DatabaseHelper. The connection is opened lazily and stays open
+     * until close() is called, so callers must not close it themselves.
+     * @param context Any context, only its application context is kept
+     * @return The shared DatabaseHelper
+     */
+    public static synchronized DatabaseHelper getInstance(final Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Get the shared DatabaseHelper and keep the connection open until release() is called.
+     * Used by components that live outside the Activity, e.g. BroadcastReceivers.
+     * @param context Any context, only its application context is kept
+     * @return The shared DatabaseHelper
+     */
+    public static synchronized DatabaseHelper acquire(final Context context) {
+        final DatabaseHelper db = getInstance(context);
+        db.retain();
+        return db;
+    }
+
+    /**
+     * Keep the connection open until release() is called, like acquire(). Taken by the
+     * threads that run queries in the background for the duration of every task, so that
+     * requestClose() doesn't close the connection under a running query.
+     */
+    void retain() {
+        synchronized (DatabaseHelper.class) {
+            references++;
+        }
+    }
+
+    /**
+     * Give back a handle obtained through acquire(). If a close was requested in the meantime,
+     * the connection is closed once the last handle is released.
+     */
+    public void release() {
+        synchronized (DatabaseHelper.class) {
+            if (references > 0) {
+                references--;
+            }
+            if (references == 0 && closeRequested) {
+                close();
+            }
+            // A restore may be waiting to swap the database file
+            DatabaseHelper.class.notifyAll();
+        }
+    }
+
+    /**
+     * Close the connection, e.g. on low memory. If handles are still held, e.g. by a running
+     * Query of the ListRepository or a renumbering, closing is deferred until the last one is
+     * released.
+     */
+    public void requestClose() {
+        synchronized (DatabaseHelper.class) {
+            if (references > 0) {
+                closeRequested = true;
+            } else {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        openCount++;
+        Log.d(Utilities.getLogTag(), "Database opened (opened: " + openCount +
+                ", closed: " + closeCount + ")");
+    }
+
+    @Override
+    public synchronized void close() {
+        closeStatements();
+        super.close();
+        closeCount++;
+        closeRequested = false;
+        Log.d(Utilities.getLogTag(), "Database closed (opened: " + openCount +
+                ", closed: " + closeCount + ")");
+    }
+
+    /**
+     * Get the number of times the connection was opened since the process started
+     * @return Number of open events
+     */
+    final public int getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * Get the number of times the connection was closed since the process started
+     * @return Number of close events
+     */
+    final public int getCloseCount() {
+        return closeCount;
+    }
+
+    /**
+     * Get the number of reads that were served from the in-memory cache
+     * @return Number of cache hits
+     */
+    final public int getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * Get the number of reads that had to query the database because the data wasn't cached
+     * @return Number of cache misses
+     */
+    final public int getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * Shed cached data when the system runs low on memory
+     * @param level The level passed to onTrimMemory()
+     */
+    final public void trimCache(final int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ||
+                level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // The lists are small and needed as soon as the app is shown again
+            cache.invalidateAllEntries();
+        }
+        Log.d(Utilities.getLogTag(), "Cache trimmed (level: " + level + ", hits: " +
+                cache.getHitCount() + ", misses: " + cache.getMissCount() + ")");
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(ListEntryTable.CREATE_TABLE);
         db.execSQL(ListTable.CREATE_TABLE);
+        createIndexes(db);
+        createSearchIndex(db);
+        createChangeLog(db);
 
         // Insert default list
         final ContentValues values = new ContentValues();
@@ -49,10 +309,37 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         if (newVersion > oldVersion) {
             // Alarms added in DB version 2
-            if (newVersion >= 2 && oldVersion == 1) {
+            if (newVersion >= 2 && oldVersion < 2) {
                 db.execSQL("ALTER TABLE " + ListEntryTable.TABLE_NAME + " ADD COLUMN " +
                         ListEntryTable.COLUMN_ALARMDATE + " DATETIME DEFAULT NULL");
             }
+            // Sparse order indices per list added in DB version 3
+            if (newVersion >= 3 && oldVersion < 3) {
+                migrateToSparseOrderIndices(db);
+            }
+            // Indexes added in DB version 4
+            if (newVersion >= 4 && oldVersion < 4) {
+                createIndexes(db);
+            }
+            // Dates stored as milliseconds since the epoch in DB version 5
+            if (newVersion >= 5 && oldVersion < 5) {
+                migrateToEpochMillis(db);
+            }
+            // Full-text search added in DB version 6
+            if (newVersion >= 6 && oldVersion < 6) {
+                createSearchIndex(db);
+                db.execSQL(ListEntryFtsTable.REBUILD);
+            }
+            // Deleting a list deletes its entries since DB version 7. The entries of lists that
+            // were deleted before are purged in the background, see purgeOrphanedEntries().
+            // The marker is created in the transaction of the upgrade, so it can't get lost.
+            if (newVersion >= 7 && oldVersion < 7) {
+                db.execSQL(OrphanSweepTable.CREATE_TABLE);
+            }
+            // Incremental backups added in DB version 8
+            if (newVersion >= 8 && oldVersion < 8) {
+                createChangeLog(db);
+            }
         }
     }
 
@@ -65,31 +352,82 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @param title Title of the ListEntry
      * @param description Description of the ListEntry
      * @param listId ID of the List that the entry belongs to
-     * @param alarmDateString Alarm date as a String
+     * @param alarmDate Alarm date in milliseconds or ListEntry.NO_ALARM
      * @return ID of the inserted entry
      */
     final public long insertEntry(final String title, final String description, final int listId,
-                                  final String alarmDateString) {
+                                  final long alarmDate) {
         final SQLiteDatabase db = this.getWritableDatabase();
 
         final ContentValues values = new ContentValues();
-        // ID and timestamp will be inserted automatically
+        // ID will be inserted automatically
         values.put(ListEntryTable.COLUMN_TITLE, title);
         values.put(ListEntryTable.COLUMN_DESCRIPTION, description);
+        values.put(ListEntryTable.COLUMN_TIMESTAMP, System.currentTimeMillis());
         values.put(ListEntryTable.COLUMN_GROUPID, listId);
-        values.put(ListEntryTable.COLUMN_ALARMDATE, alarmDateString);
-        // Use -1 as the order index, to make it 0 when moving all entries back (explained below)
-        values.put(ListEntryTable.COLUMN_ORDERINDEX, -1);
-
-        final long id = db.insert(ListEntryTable.TABLE_NAME, null, values);
-        // Add 1 to the order index of all entries. Thereby, the newly inserted entry gets
-        // index 0 and all other entries get higher numbers. I.e., the new entry will be at the top.
-        moveAllEntriesBack();
-        db.close();
+        putAlarmDate(values, alarmDate);
+
+        final long id;
+        db.beginTransaction();
+        try {
+            // Use an order index below the first entry of the list, i.e. the new entry will be
+            // at the top. No other entry has to be touched for this.
+            values.put(ListEntryTable.COLUMN_ORDERINDEX, getTopOrderIndex(db,
+                    ListEntryTable.TABLE_NAME, getListSelection(listId)));
+            id = db.insert(ListEntryTable.TABLE_NAME, null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        cache.invalidateEntries(listId);
         // Return the ID of the inserted entry
         return id;
     }
 
+    /**
+     * Insert several ListEntries into a list at once. They are put at the top of the list
+     * in the given order. All rows are written with one compiled statement in one transaction.
+     * @param listId ID of the list that the entries belong to
+     * @param titles Titles of the new entries
+     * @return Number of inserted entries
+     */
+    final public int insertEntries(final int listId, final List<String> titles) {
+        if (titles.isEmpty()) {
+            return 0;
+        }
+        final SQLiteDatabase db = this.getWritableDatabase();
+        final SQLiteStatement insert = db.compileStatement("INSERT INTO " +
+                ListEntryTable.TABLE_NAME + "(" + ListEntryTable.COLUMN_TITLE + ", " +
+                ListEntryTable.COLUMN_DESCRIPTION + ", " + ListEntryTable.COLUMN_TIMESTAMP + ", " +
+                ListEntryTable.COLUMN_GROUPID + ", " + ListEntryTable.COLUMN_ORDERINDEX +
+                ") VALUES (?, ?, ?, ?, ?)");
+        int inserted = 0;
+        db.beginTransaction();
+        try {
+            // Order indices for the whole batch, the first title gets the smallest one
+            long orderIndex = getTopOrderIndex(db, ListEntryTable.TABLE_NAME,
+                    getListSelection(listId), titles.size());
+            final long timestamp = System.currentTimeMillis();
+            insert.bindString(2, "");
+            insert.bindLong(3, timestamp);
+            insert.bindLong(4, listId);
+            for (final String title : titles) {
+                insert.bindString(1, title);
+                insert.bindLong(5, orderIndex);
+                if (insert.executeInsert() > -1) {
+                    inserted++;
+                }
+                orderIndex += ORDER_INDEX_GAP;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+        cache.invalidateEntries(listId);
+        return inserted;
+    }
+
     /**
      * Read values of a ListEntry from the database and return them as a ListEntry object
      * @param id ID of the ListEntry
@@ -108,61 +446,215 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         assert cursor != null;
         ListEntry entry = null;
         if (cursor.moveToFirst()) {
-            entry = getListEntryFromCursor(cursor);
+            entry = new ListEntryMapper(cursor).map(cursor);
         }
         cursor.close();
-        db.close();
         return entry;
     }
 
     /**
-     * Return a list of all entries, ordered by a specific column and direction
-     * @param column Name of the column that the ListEntries will be ordered by
-     * @param direction Direction of the order ("ASC" or "DESC")
+     * Return a list of the entries matching a selection, in a specific order
+     * @param selection Selection of the ListEntries or null for all ListEntries
+     * @param orderBy ORDER BY clause that the ListEntries will be ordered by
+     * @return Ordered List of the ListEntries
+     */
+    private List<ListEntry> getEntries(final String selection, final String orderBy) {
+        return getEntries(selection, null, orderBy, null);
+    }
+
+    /**
+     * Return a list of the entries matching a selection, in a specific order
+     * @param selection Selection of the ListEntries or null for all ListEntries
+     * @param selectionArgs Values for the placeholders in the selection or null
+     * @param orderBy ORDER BY clause that the ListEntries will be ordered by
+     * @param limit Maximum number of ListEntries or null for all ListEntries
+     * @return Ordered List of the ListEntries
+     */
+    private List<ListEntry> getEntries(final String selection, final String[] selectionArgs,
+                                       final String orderBy, final String limit) {
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final Cursor cursor = db.query(ListEntryTable.TABLE_NAME, null, selection,
+                selectionArgs, null, null, orderBy, limit);
+        assert cursor != null;
+        return readAll(cursor, new ListEntryMapper(cursor));
+    }
+
+    /**
+     * Return a list of all entries, ordered by list and ascending by the order index within a list
      * @return Ordered List of all ListEntries
      */
-    private List<ListEntry> getAllEntriesOrderedBy(final String column, final String direction) {
-        final List<ListEntry> entries = new ArrayList<>();
+    final public List<ListEntry> getAllEntries() {
+        return getEntries(null, ListEntryTable.COLUMN_GROUPID + " " +
+                Constants.DIRECTION_ASCENDING + ", " + ORDER_BY_ORDER_INDEX);
+    }
+
+    /**
+     * Return one page of all entries, ordered descending by the last modified timestamp.
+     * The page starts after the given entry (keyset pagination on timestamp and ID).
+     * The name of the list is loaded with every entry.
+     * @param after The last ListEntry of the previous page or null for the first page
+     * @param limit Maximum number of ListEntries
+     * @param excludedIds IDs of ListEntries that are skipped
+     * @return Ordered List of the ListEntries of the page
+     */
+    final public List<ListEntry> getEntriesOrderedByLastModifiedPage(
+            final ListEntry after, final int limit, final Collection<Integer> excludedIds) {
+        // The ID column exists in both tables of the join
+        final String idColumn = ListEntryTable.TABLE_NAME + "." + ListEntryTable.COLUMN_ID;
+        final StringBuilder selection = new StringBuilder();
+        if (after != null) {
+            selection.append(ListEntryTable.COLUMN_TIMESTAMP).append(" <= ")
+                    .append(after.getModificationDate()).append(" AND (")
+                    .append(ListEntryTable.COLUMN_TIMESTAMP).append(" < ")
+                    .append(after.getModificationDate()).append(" OR ")
+                    .append(idColumn).append(" < ").append(after.getId())
+                    .append(")");
+        }
+        appendExclusion(selection, idColumn, excludedIds);
+
         final SQLiteDatabase db = this.getReadableDatabase();
-        final Cursor cursor = db.query(ListEntryTable.TABLE_NAME, null, null,
-                null, null, null, column + " " + direction);
+        final Cursor cursor = db.query(ENTRIES_WITH_LIST_NAME, COLUMNS_WITH_LIST_NAME,
+                selection.length() > 0 ? selection.toString() : null, null, null, null,
+                ListEntryTable.COLUMN_TIMESTAMP + " " + Constants.DIRECTION_DESCENDING + ", " +
+                        idColumn + " " + Constants.DIRECTION_DESCENDING,
+                String.valueOf(limit));
         assert cursor != null;
-        // Add the returned entries to the list
-        if (cursor.moveToFirst()) {
-            do {
-                final ListEntry entry = getListEntryFromCursor(cursor);
-                entries.add(entry);
-            } while (cursor.moveToNext());
+        return readAll(cursor, new ListEntryMapper(cursor));
+    }
+
+    /**
+     * Return the keys of the ListEntries of a list, in the order of getEntriesOfListPage().
+     * Only the ID, order index, list ID, modification and alarm date are loaded, the title
+     * and description are left empty. Used to compare the shown ListEntries with the database.
+     * @param listId ID of the list
+     * @param excludedIds IDs of ListEntries that are skipped
+     * @param limit Maximum number of keys
+     * @return Ordered List of the keys of the ListEntries
+     */
+    final public List<ListEntry> getEntryKeysOfList(
+            final int listId, final Collection<Integer> excludedIds, final int limit) {
+        final StringBuilder selection = new StringBuilder(getListSelection(listId));
+        appendExclusion(selection, excludedIds);
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final Cursor cursor = db.query(ListEntryTable.TABLE_NAME, KEY_COLUMNS,
+                selection.toString(), null, null, null, ORDER_BY_ORDER_INDEX,
+                String.valueOf(limit));
+        assert cursor != null;
+        return readAll(cursor, new ListEntryMapper(cursor));
+    }
+
+    /**
+     * Return the keys of all ListEntries, in the order of getEntriesOrderedByLastModifiedPage().
+     * Only the ID, order index, list ID, modification and alarm date are loaded.
+     * @param excludedIds IDs of ListEntries that are skipped
+     * @param limit Maximum number of keys
+     * @return Ordered List of the keys of the ListEntries
+     */
+    final public List<ListEntry> getEntryKeysOrderedByLastModified(
+            final Collection<Integer> excludedIds, final int limit) {
+        final StringBuilder selection = new StringBuilder();
+        appendExclusion(selection, excludedIds);
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final Cursor cursor = db.query(ListEntryTable.TABLE_NAME, KEY_COLUMNS,
+                selection.length() > 0 ? selection.toString() : null, null, null, null,
+                ListEntryTable.COLUMN_TIMESTAMP + " " + Constants.DIRECTION_DESCENDING + ", " +
+                        ListEntryTable.COLUMN_ID + " " + Constants.DIRECTION_DESCENDING,
+                String.valueOf(limit));
+        assert cursor != null;
+        return readAll(cursor, new ListEntryMapper(cursor));
+    }
+
+    /**
+     * Return one page of the entries whose title or description contain all words of a search
+     * query. The last word may be incomplete. Entries that match in the title come first,
+     * the rest is ordered descending by the last modified timestamp.
+     * @param query The search query as typed by the user
+     * @param offset Number of matching ListEntries before the page
+     * @param limit Maximum number of ListEntries
+     * @param excludedIds IDs of ListEntries that are skipped
+     * @return Ordered List of the ListEntries of the page
+     */
+    final public List<ListEntry> searchEntries(final String query, final int offset,
+                                               final int limit,
+                                               final Collection<Integer> excludedIds) {
+        final String matchQuery = toMatchQuery(query, null);
+        if (matchQuery == null) {
+            return new ArrayList<>();
         }
-        db.close();
-        cursor.close();
-        return entries;
+        final String idColumn = ListEntryTable.TABLE_NAME + "." + ListEntryTable.COLUMN_ID;
+        final StringBuilder selection = new StringBuilder(SEARCH_SELECTION);
+        appendExclusion(selection, idColumn, excludedIds);
+        final String sql = "SELECT " + TextUtils.join(", ", COLUMNS_WITH_LIST_NAME) +
+                " FROM " + ENTRIES_WITH_LIST_NAME + " JOIN " + ListEntryFtsTable.TABLE_NAME +
+                " ON " + idColumn + " = " + ListEntryFtsTable.TABLE_NAME + "." +
+                ListEntryFtsTable.COLUMN_DOCID +
+                " WHERE " + selection +
+                // Rank matches in the title higher
+                " ORDER BY " + ListEntryFtsTable.TABLE_NAME + "." + ListEntryFtsTable.COLUMN_DOCID +
+                " IN (SELECT " + ListEntryFtsTable.COLUMN_DOCID + " FROM " +
+                ListEntryFtsTable.TABLE_NAME + " WHERE " + ListEntryFtsTable.TABLE_NAME +
+                " MATCH ?) " + Constants.DIRECTION_DESCENDING + ", " +
+                ListEntryTable.COLUMN_TIMESTAMP + " " + Constants.DIRECTION_DESCENDING + ", " +
+                idColumn + " " + Constants.DIRECTION_DESCENDING +
+                " LIMIT " + limit + " OFFSET " + offset;
+
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final Cursor cursor = db.rawQuery(sql, new String[]{matchQuery,
+                toMatchQuery(query, ListEntryFtsTable.COLUMN_TITLE)});
+        return readAll(cursor, new ListEntryMapper(cursor));
     }
 
     /**
-     * Return a list of all ListEntries, ordered by a specific column in ASC direction
-     * @param column Name of the column that the ListEntries will be ordered by
-     * @return Ordered List of all ListEntries
+     * Count the entries whose title or description contain all words of a search query
+     * @param query The search query as typed by the user
+     * @param excludedIds IDs of ListEntries that are not counted
+     * @return Number of matching ListEntries
      */
-    @SuppressWarnings("SameParameterValue")
-    private List<ListEntry>getAllEntriesOrderedBy(final String column) {
-        return getAllEntriesOrderedBy(column, Constants.DIRECTION_ASCENDING);
+    final public int getSearchResultCount(final String query,
+                                          final Collection<Integer> excludedIds) {
+        final String matchQuery = toMatchQuery(query, null);
+        if (matchQuery == null) {
+            return 0;
+        }
+        final StringBuilder selection = new StringBuilder(SEARCH_SELECTION);
+        appendExclusion(selection, ListEntryFtsTable.COLUMN_DOCID, excludedIds);
+        return (int)DatabaseUtils.queryNumEntries(this.getReadableDatabase(),
+                ListEntryFtsTable.TABLE_NAME, selection.toString(), new String[]{matchQuery});
     }
 
     /**
-     * Return a list of all entries, ordered ascending by the order index
-     * @return Ordered List of all ListEntries
+     * Convert a search query as typed by the user into an FTS MATCH expression.
+     * Every word has to occur and may be the beginning of a longer word.
+     * @param query The search query
+     * @param column Column to which the search is restricted or null for all columns
+     * @return The MATCH expression or null if the query contains no words
      */
-    final public List<ListEntry> getAllEntries() {
-        return getAllEntriesOrderedBy(ListEntryTable.COLUMN_ORDERINDEX);
+    private static String toMatchQuery(final String query, final String column) {
+        final StringBuilder matchQuery = new StringBuilder();
+        // Everything except letters and digits separates words, this also removes
+        // characters that have a special meaning in MATCH expressions
+        for (final String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (matchQuery.length() > 0) {
+                matchQuery.append(' ');
+            }
+            if (column != null) {
+                matchQuery.append(column).append(':');
+            }
+            matchQuery.append(word).append('*');
+        }
+        return matchQuery.length() > 0 ? matchQuery.toString() : null;
     }
 
     /**
-     * Return a list of all entries, ordered descending by the last modified timestamp
-     * @return Ordered List of all ListEntries
+     * Return a list of all entries that have an alarm date, ordered ascending by the alarm date
+     * @return Ordered List of all ListEntries with an alarm date
      */
-    final public List<ListEntry> getAllEntriesOrderedByLastModified() {
-        return getAllEntriesOrderedBy(ListEntryTable.COLUMN_TIMESTAMP, Constants.DIRECTION_DESCENDING);
+    final public List<ListEntry> getEntriesWithAlarm() {
+        return getEntries(ListEntryTable.COLUMN_ALARMDATE + " IS NOT NULL",
+                ListEntryTable.COLUMN_ALARMDATE + " " + Constants.DIRECTION_ASCENDING);
     }
 
     /**
@@ -172,26 +664,72 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return Ordered List of all ListEntries that belong to the list
      */
     final public List<ListEntry> getEntriesOfList(final int listId) {
-        final List<ListEntry> entries = new ArrayList<>();
+        return getEntries(getListSelection(listId), ORDER_BY_ORDER_INDEX);
+    }
 
-        final SQLiteDatabase db = this.getReadableDatabase();
-        final Cursor cursor = db.query(ListEntryTable.TABLE_NAME, null,
-                ListEntryTable.COLUMN_GROUPID + " = " + listId,
-                null, null, null,
-                ListEntryTable.COLUMN_ORDERINDEX + " " + Constants.DIRECTION_ASCENDING);
-        assert cursor != null;
-        // Add the returned entries to the list
-        if (cursor.moveToFirst()) {
-            do {
-                final ListEntry entry = getListEntryFromCursor(cursor);
-                entries.add(entry);
-            } while (cursor.moveToNext());
+    /**
+     * Return one page of the entries that belong to a specific list, ordered ascending by the
+     * order index. The page starts after the given entry (keyset pagination on order index and ID).
+     * @param listId ID of the list
+     * @param after The last ListEntry of the previous page or null for the first page
+     * @param limit Maximum number of ListEntries
+     * @param excludedIds IDs of ListEntries that are skipped
+     * @return Ordered List of the ListEntries of the page
+     */
+    final public List<ListEntry> getEntriesOfListPage(
+            final int listId, final ListEntry after, final int limit,
+            final Collection<Integer> excludedIds) {
+        // Only the first page without exclusions is cached, i.e. what is shown when a list is opened
+        final boolean cacheable = after == null && (excludedIds == null || excludedIds.isEmpty());
+        if (cacheable) {
+            final List<ListEntry> cached = cache.getFirstEntryPage(listId, limit);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final int generation = cache.getGeneration();
+        final StringBuilder selection = new StringBuilder(getListSelection(listId));
+        if (after != null) {
+            selection.append(" AND ").append(ListEntryTable.COLUMN_ORDERINDEX).append(" >= ")
+                    .append(after.getOrderIndex()).append(" AND (")
+                    .append(ListEntryTable.COLUMN_ORDERINDEX).append(" > ")
+                    .append(after.getOrderIndex()).append(" OR ")
+                    .append(ListEntryTable.COLUMN_ID).append(" > ").append(after.getId())
+                    .append(")");
+        }
+        appendExclusion(selection, excludedIds);
+        final List<ListEntry> entries = getEntries(selection.toString(), null,
+                ORDER_BY_ORDER_INDEX, String.valueOf(limit));
+        if (cacheable) {
+            cache.putFirstEntryPage(listId, limit, entries, generation);
         }
-        db.close();
-        cursor.close();
         return entries;
     }
 
+    /**
+     * Get the position of a ListEntry among the ListEntries of its list, in the order of
+     * getEntriesOfListPage()
+     * @param entry The ListEntry
+     * @return Number of ListEntries of the list that are ordered before it
+     */
+    final public int getPositionInList(final ListEntry entry) {
+        return (int)DatabaseUtils.queryNumEntries(this.getReadableDatabase(),
+                ListEntryTable.TABLE_NAME, getListSelection(entry.getListId()) + " AND " +
+                        getBeforeSelection(entry));
+    }
+
+    /**
+     * Build the selection of the ListEntries that are ordered before a ListEntry by their
+     * order index and ID. Package-private for QueryPlanTest.
+     * @param entry The ListEntry
+     * @return The selection
+     */
+    static String getBeforeSelection(final ListEntry entry) {
+        return ListEntryTable.COLUMN_ORDERINDEX + " <= " + entry.getOrderIndex() + " AND (" +
+                ListEntryTable.COLUMN_ORDERINDEX + " < " + entry.getOrderIndex() + " OR " +
+                ListEntryTable.COLUMN_ID + " < " + entry.getId() + ")";
+    }
+
     /**
      * Get the number of entries that belong to a specific list
      * @param listId ID of the list
@@ -201,10 +739,35 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         final SQLiteDatabase db = this.getReadableDatabase();
         final int entryCount = (int)DatabaseUtils.queryNumEntries(db, ListEntryTable.TABLE_NAME,
                 ListEntryTable.COLUMN_GROUPID + " = " + listId);
-        db.close();
         return entryCount;
     }
 
+    /**
+     * Get the number of entries that belong to a specific list, without some excluded entries
+     * @param listId ID of the list
+     * @param excludedIds IDs of ListEntries that are not counted
+     * @return Number of entries that belong to the list
+     */
+    final public int getEntryCountForList(final int listId,
+                                          final Collection<Integer> excludedIds) {
+        final boolean cacheable = excludedIds == null || excludedIds.isEmpty();
+        if (cacheable) {
+            final Integer cached = cache.getEntryCount(listId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final int generation = cache.getGeneration();
+        final StringBuilder selection = new StringBuilder(getListSelection(listId));
+        appendExclusion(selection, excludedIds);
+        final int count = (int)DatabaseUtils.queryNumEntries(this.getReadableDatabase(),
+                ListEntryTable.TABLE_NAME, selection.toString());
+        if (cacheable) {
+            cache.putEntryCount(listId, count, generation);
+        }
+        return count;
+    }
+
     /**
      * Get the number of ListEntries in the database
      * @return The number of ListEntries in the database
@@ -214,26 +777,60 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Update a ListEntry with new values
+     * Get the number of lists in the database
+     * @return The number of lists in the database
+     */
+    final public int getListsCount() {
+        return getCountFromTable(ListTable.TABLE_NAME);
+    }
+
+    /**
+     * Get the number of ListEntries in the database, without some excluded entries
+     * @param excludedIds IDs of ListEntries that are not counted
+     * @return The number of ListEntries in the database
+     */
+    final public int getEntriesCount(final Collection<Integer> excludedIds) {
+        if (excludedIds.isEmpty()) {
+            return getEntriesCount();
+        }
+        final StringBuilder selection = new StringBuilder();
+        appendExclusion(selection, excludedIds);
+        return (int)DatabaseUtils.queryNumEntries(this.getReadableDatabase(),
+                ListEntryTable.TABLE_NAME, selection.toString());
+    }
+
+    /**
+     * Move a ListEntry to another position within its list
+     * @param listId ID of the list
+     * @param id ID of the moved ListEntry
+     * @param previousId ID of the ListEntry shown before it at the new position, or NO_ID
+     * @param nextId ID of the ListEntry shown after it at the new position, or NO_ID
+     */
+    final public void reorderEntries(final int listId, final int id, final int previousId,
+                                     final int nextId) {
+        reorder(ListEntryTable.TABLE_NAME, getListSelection(listId), id, previousId, nextId);
+        cache.invalidateEntries(listId);
+    }
+
+    /**
+     * Update a ListEntry with new values. The order index is only changed through
+     * reorderEntries(), the list only through moveEntryToList().
      * @param entry ListEntry to be updated
      * @param setTimestamp Whether to set a new "last modified" date
      * @return The number of affected rows (should be 1)
      */
     private int updateEntry(final ListEntry entry, final boolean setTimestamp) {
-        final SQLiteDatabase db = this.getWritableDatabase();
-        final ContentValues values = new ContentValues();
-        values.put(ListEntryTable.COLUMN_TITLE, entry.getTitle());
-        values.put(ListEntryTable.COLUMN_DESCRIPTION, entry.getDescription());
+        final Object alarmDate = entry.hasAlarm() ? Long.valueOf(entry.getAlarmDate()) : null;
+        Log.d(Utilities.getLogTag(), "Updated Alarm Date: " + entry.getAlarmDate());
+        final int affectedRows;
         if (setTimestamp) {
-            values.put(ListEntryTable.COLUMN_TIMESTAMP, getCurrentTimestamp());
+            affectedRows = executeUpdate(SQL_UPDATE_ENTRY_AND_TIMESTAMP, entry.getTitle(),
+                    entry.getDescription(), alarmDate, System.currentTimeMillis(), entry.getId());
+        } else {
+            affectedRows = executeUpdate(SQL_UPDATE_ENTRY, entry.getTitle(),
+                    entry.getDescription(), alarmDate, entry.getId());
         }
-        values.put(ListEntryTable.COLUMN_ORDERINDEX, entry.getOrderIndex());
-        values.put(ListEntryTable.COLUMN_GROUPID, entry.getListId());
-        values.put(ListEntryTable.COLUMN_ALARMDATE, entry.getAlarmDate());
-        Log.d(Utilities.getLogTag(), "Updated Alarm Date: " + entry.getAlarmDate());
-        final int affectedRows = db.update(ListEntryTable.TABLE_NAME, values,
-                ListEntryTable.COLUMN_ID + " = ?", new String[]{String.valueOf(entry.getId())});
-        db.close();
+        cache.invalidateEntries(entry.getListId());
         return affectedRows;
     }
 
@@ -257,15 +854,69 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Get formatted current timestamp
-     * @return Formatted current timestamp
+     * Set the alarm date of a ListEntry without touching its other values
+     * @param id ID of the ListEntry
+     * @param alarmDate Alarm date in milliseconds or ListEntry.NO_ALARM
+     * @return The number of affected rows (should be 1)
      */
-    private String getCurrentTimestamp() {
-        final SimpleDateFormat dateFormat = new SimpleDateFormat(
-                Constants.TIMESTAMP_DATE_FORMAT, Locale.getDefault()
-        );
-        final Date date = new Date();
-        return dateFormat.format(date);
+    @SuppressWarnings("UnusedReturnValue")
+    final public int setAlarmDate(final int id, final long alarmDate) {
+        if (alarmDate == ListEntry.NO_ALARM) {
+            return removeAlarmForEntryId(id);
+        }
+        final int affectedRows = executeUpdate(SQL_SET_ALARM_DATE, alarmDate, id);
+        cache.invalidateAllEntries();
+        return affectedRows;
+    }
+
+    /**
+     * Set the 'last modified' timestamp of a ListEntry to now
+     * @param id ID of the ListEntry
+     * @return The number of affected rows (should be 1)
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    final public int touchEntry(final int id) {
+        final int affectedRows = executeUpdate(SQL_TOUCH_ENTRY, System.currentTimeMillis(), id);
+        cache.invalidateAllEntries();
+        return affectedRows;
+    }
+
+    /**
+     * Move a ListEntry to the top of another list
+     * @param entry The ListEntry, with its old list ID
+     * @param listId ID of the new list
+     * @return The number of affected rows (should be 1)
+     */
+    @SuppressWarnings("UnusedReturnValue")
+    final public int moveEntryToList(final ListEntry entry, final int listId) {
+        final SQLiteDatabase db = this.getWritableDatabase();
+        final int affectedRows;
+        db.beginTransaction();
+        try {
+            final int orderIndex = getTopOrderIndex(db, ListEntryTable.TABLE_NAME,
+                    getListSelection(listId));
+            affectedRows = executeUpdate(SQL_MOVE_ENTRY, listId, orderIndex,
+                    System.currentTimeMillis(), entry.getId());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        cache.invalidateEntries(entry.getListId());
+        cache.invalidateEntries(listId);
+        return affectedRows;
+    }
+
+    /**
+     * Put an alarm date into the values of a ListEntry, NULL if no alarm is set
+     * @param values The values of the ListEntry
+     * @param alarmDate Alarm date in milliseconds or ListEntry.NO_ALARM
+     */
+    private static void putAlarmDate(final ContentValues values, final long alarmDate) {
+        if (alarmDate == ListEntry.NO_ALARM) {
+            values.putNull(ListEntryTable.COLUMN_ALARMDATE);
+        } else {
+            values.put(ListEntryTable.COLUMN_ALARMDATE, alarmDate);
+        }
     }
 
     /**
@@ -276,7 +927,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         final SQLiteDatabase db = this.getWritableDatabase();
         db.delete(ListEntryTable.TABLE_NAME, ListEntryTable.COLUMN_ID + " = ?",
                 new String[]{String.valueOf(entry.getId())});
-        db.close();
+        cache.invalidateEntries(entry.getListId());
     }
 
     /**
@@ -287,26 +938,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     @SuppressWarnings("UnusedReturnValue")
     final public int removeAlarmForEntryId(final int id) {
         Log.d(Utilities.getLogTag(), "Alarm removed for ListEntry with ID: " + id);
-        final ListEntry entry = getEntry(id);
-        entry.setAlarmDate(null);
-        return updateEntryWithoutTimestamp(entry);
-    }
-
-    /**
-     * Increase the order index of all ListEntries by 1
-     */
-    private void moveAllEntriesBack() {
-        final List<ListEntry> allEntries = getAllEntries();
-        final SQLiteDatabase db = this.getWritableDatabase();
-
-        for (final ListEntry e : allEntries) {
-            e.setOrderIndex(e.getOrderIndex() + 1);
-            final ContentValues allEntriesValues = new ContentValues();
-            allEntriesValues.put(ListEntryTable.COLUMN_ORDERINDEX, e.getOrderIndex());
-            db.update(ListEntryTable.TABLE_NAME, allEntriesValues, ListEntryTable.COLUMN_ID + " = ?",
-                    new String[]{String.valueOf(e.getId())});
-        }
-        db.close();
+        final int affectedRows = executeUpdate(SQL_CLEAR_ALARM, id);
+        // Only the ID is known, so it isn't known which list is affected
+        cache.invalidateAllEntries();
+        return affectedRows;
     }
 
     /*
@@ -323,14 +958,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         final ContentValues values = new ContentValues();
         values.put(ListTable.COLUMN_NAME, name);
-        // Use -1 as the order index, to make it 0 when moving all lists back by 1 (explained below)
-        values.put(ListTable.COLUMN_ORDERINDEX, -1);
 
-        final long id = db.insert(ListTable.TABLE_NAME, null, values);
-        // Add 1 to the order index of all lists. Thereby, the newly inserted list gets
-        // index 0 and all other lists get higher numbers. I.e., the new list will be at the top.
-        moveAllListsBack();
-        db.close();
+        final long id;
+        final int orderIndex;
+        db.beginTransaction();
+        try {
+            // Use an order index below the first list, i.e. the new list will be at the top
+            orderIndex = getTopOrderIndex(db, ListTable.TABLE_NAME, null);
+            values.put(ListTable.COLUMN_ORDERINDEX, orderIndex);
+            id = db.insert(ListTable.TABLE_NAME, null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (id > -1) {
+            cache.addList(new MyList((int) id, name, orderIndex));
+        }
 
         // Return the ID of the newly inserted list
         return id;
@@ -342,6 +985,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return The MyList object
      */
     final public MyList getList(final long id) {
+        final MyList cached = cache.getList(id);
+        if (cached != null) {
+            return cached;
+        }
         final SQLiteDatabase db = this.getReadableDatabase();
 
         final Cursor cursor = db.query(ListTable.TABLE_NAME,
@@ -352,14 +999,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         assert cursor != null;
         MyList list = null;
         if (cursor.moveToFirst()) {
-            list = getListFromCursor(cursor);
+            list = new MyListMapper(cursor).map(cursor);
         }
-        db.close();
         cursor.close();
         return list;
     }
 
     final public String getListTitle(final long id) {
+        final MyList cached = cache.getList(id);
+        if (cached != null) {
+            return cached.getTitle();
+        }
         final SQLiteDatabase db = this.getReadableDatabase();
 
         final Cursor cursor = db.query(ListTable.TABLE_NAME,
@@ -371,7 +1021,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         if (cursor.moveToFirst()) {
             title = cursor.getString(cursor.getColumnIndex(ListTable.COLUMN_NAME));
         }
-        db.close();
         cursor.close();
         return title;
     }
@@ -381,26 +1030,54 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return The ordered List
      */
     final public List<MyList> getAllLists() {
-        final List<MyList> lists = new ArrayList<>();
-
-        final SQLiteDatabase db = this.getWritableDatabase();
+        final List<MyList> cached = cache.getLists();
+        if (cached != null) {
+            return cached;
+        }
+        final int generation = cache.getGeneration();
+        final SQLiteDatabase db = this.getReadableDatabase();
         final Cursor cursor = db.query(ListTable.TABLE_NAME, null, null,
-                null, null, null,
-                ListTable.COLUMN_ORDERINDEX + " " + Constants.DIRECTION_ASCENDING);
+                null, null, null, ORDER_BY_ORDER_INDEX);
         assert cursor != null;
-        // Add the returned lists to the list
-        if (cursor.moveToFirst()) {
-            do {
-                final MyList list = getListFromCursor(cursor);
-                lists.add(list);
-            } while (cursor.moveToNext());
-        }
+        final List<MyList> lists = readAll(cursor, new MyListMapper(cursor));
+        cache.putLists(lists, generation);
+        return lists;
+    }
 
-        db.close();
-        cursor.close();
+    /**
+     * Return a List of all lists, ordered ascending by the order index, with the number of
+     * entries of every list set
+     * @return The ordered List
+     */
+    final public List<MyList> getAllListsWithEntryCounts() {
+        final List<MyList> lists = getAllLists();
+        final SparseIntArray entryCounts = getEntryCountsByList();
+        for (MyList list : lists) {
+            list.setEntryCount(entryCounts.get(list.getId()));
+        }
         return lists;
     }
 
+    /**
+     * Count the entries of all lists with one query
+     * @return The number of entries by list ID, lists without entries are missing
+     */
+    private SparseIntArray getEntryCountsByList() {
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final Cursor cursor = db.query(ListEntryTable.TABLE_NAME,
+                new String[]{ListEntryTable.COLUMN_GROUPID, "COUNT(*)"}, null, null,
+                ListEntryTable.COLUMN_GROUPID, null, null);
+        final SparseIntArray entryCounts = new SparseIntArray(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                entryCounts.put(cursor.getInt(0), cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return entryCounts;
+    }
+
     /**
      * Update a list with new values
      * @param list MyList object with the new values
@@ -411,209 +1088,990 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         final SQLiteDatabase db = this.getWritableDatabase();
 
         final ContentValues values = new ContentValues();
+        // The order index is only changed through reorderLists()
         values.put(ListTable.COLUMN_NAME, list.getTitle());
-        values.put(ListTable.COLUMN_ORDERINDEX, list.getOrderIndex());
 
         final int affectedRows = db.update(ListTable.TABLE_NAME, values, ListTable.COLUMN_ID + " = ?",
                 new String[]{String.valueOf(list.getId())});
-        db.close();
+        cache.updateList(list);
         return affectedRows;
     }
 
     /**
-     * Delete a list from the database
+     * Move a list to another position
+     * @param id ID of the moved list
+     * @param previousId ID of the list shown before it at the new position, or NO_ID
+     * @param nextId ID of the list shown after it at the new position, or NO_ID
+     */
+    final public void reorderLists(final int id, final int previousId, final int nextId) {
+        reorder(ListTable.TABLE_NAME, null, id, previousId, nextId);
+        cache.invalidateLists();
+    }
+
+    /**
+     * Delete a list and all of its ListEntries from the database in one transaction
      * @param list The list to be deleted
+     * @return The deleted ListEntries that had an alarm, whose alarms have to be canceled
      */
-    final public void deleteList(final MyList list) {
-        final SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(ListTable.TABLE_NAME, ListTable.COLUMN_ID + " = ?",
-                new String[]{String.valueOf(list.getId())});
-        db.close();
+    final public List<ListEntry> deleteList(final MyList list) {
+        return deleteItems(Collections.<ListEntry>emptyList(), Collections.singletonList(list));
     }
 
     /**
-     * Increase the order index of all lists by 1
+     * Delete several ListEntries and lists, including the ListEntries of the lists,
+     * in one transaction
+     * @param entries The ListEntries to be deleted
+     * @param lists The lists to be deleted
+     * @return The deleted ListEntries that had an alarm, whose alarms have to be canceled
      */
-    private void moveAllListsBack() {
-        final List<MyList> allLists = getAllLists();
+    final public List<ListEntry> deleteItems(final List<ListEntry> entries,
+                                             final List<MyList> lists) {
         final SQLiteDatabase db = this.getWritableDatabase();
+        final List<ListEntry> entriesWithAlarm = new ArrayList<>();
+        final List<Integer> entryIds = new ArrayList<>(entries.size());
+        for (ListEntry entry : entries) {
+            entryIds.add(entry.getId());
+            if (entry.hasAlarm()) {
+                entriesWithAlarm.add(entry);
+            }
+        }
+        db.beginTransaction();
+        try {
+            if (!entryIds.isEmpty()) {
+                db.delete(ListEntryTable.TABLE_NAME, ListEntryTable.COLUMN_ID + " IN (" +
+                        TextUtils.join(",", entryIds) + ")", null);
+            }
+            for (MyList list : lists) {
+                final String listSelection = getListSelection(list.getId());
+                entriesWithAlarm.addAll(getEntries(listSelection + " AND " +
+                        ListEntryTable.COLUMN_ALARMDATE + " IS NOT NULL", null));
+                db.delete(ListEntryTable.TABLE_NAME, listSelection, null);
+                db.delete(ListTable.TABLE_NAME, ListTable.COLUMN_ID + " = ?",
+                        new String[]{String.valueOf(list.getId())});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        for (ListEntry entry : entries) {
+            cache.invalidateEntries(entry.getListId());
+        }
+        for (MyList list : lists) {
+            cache.removeList(list.getId());
+        }
+        return entriesWithAlarm;
+    }
 
-        for (MyList g : allLists) {
-            g.setOrderIndex(g.getOrderIndex() + 1);
-            final ContentValues allListsValues = new ContentValues();
-            allListsValues.put(ListTable.COLUMN_ORDERINDEX, g.getOrderIndex());
-            db.update(ListTable.TABLE_NAME, allListsValues, ListTable.COLUMN_ID + " = ?",
-                    new String[]{String.valueOf(g.getId())});
+    /**
+     * Delete the ListEntries of lists that were deleted before DB version 7. Only does something
+     * after the upgrade, until the sweep is complete. The ListEntries are deleted in small
+     * batches, so that other writes don't have to wait for the whole sweep.
+     * @return The deleted ListEntries that had an alarm, whose alarms have to be canceled
+     */
+    final public List<ListEntry> purgeOrphanedEntries() {
+        // Opening the database runs the upgrade, which decides whether the sweep is needed
+        final SQLiteDatabase db = this.getWritableDatabase();
+        if (DatabaseUtils.longForQuery(db, OrphanSweepTable.EXISTS, null) == 0) {
+            return new ArrayList<>();
+        }
+        final List<ListEntry> entriesWithAlarm = getEntries(ORPHAN_SELECTION + " AND " +
+                ListEntryTable.COLUMN_ALARMDATE + " IS NOT NULL", null);
+        final SQLiteStatement deleteBatch = db.compileStatement("DELETE FROM " +
+                ListEntryTable.TABLE_NAME + " WHERE " + ListEntryTable.COLUMN_ID + " IN (SELECT " +
+                ListEntryTable.COLUMN_ID + " FROM " + ListEntryTable.TABLE_NAME + " WHERE " +
+                ORPHAN_SELECTION + " LIMIT " + ORPHAN_BATCH_SIZE + ")");
+        int purged = 0;
+        try {
+            int deleted;
+            do {
+                db.beginTransaction();
+                try {
+                    deleted = deleteBatch.executeUpdateDelete();
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                purged += deleted;
+            } while (deleted == ORPHAN_BATCH_SIZE);
+        } finally {
+            deleteBatch.close();
         }
-        db.close();
+        // Only dropped after the last batch, an interrupted sweep continues on the next start
+        db.execSQL(OrphanSweepTable.DELETE_TABLE);
+        cache.invalidateAllEntries();
+        Log.d(Utilities.getLogTag(), "Purged orphaned ListEntries: " + purged);
+        return entriesWithAlarm;
     }
 
     /*
-     * Helper
+     * Order index helper
      */
 
     /**
-     * Creates a ListEntry object with the values returned by the cursor
-     * @param c Cursor from which the data is returned
-     * @return The new ListEntry
+     * Get the selection for all ListEntries of a list
+     * @param listId ID of the list
+     * @return The selection String
      */
-    private ListEntry getListEntryFromCursor(final Cursor c) {
-        final int groupId = c.getInt(c.getColumnIndex(ListEntryTable.COLUMN_GROUPID));
+    static String getListSelection(final int listId) {
+        return ListEntryTable.COLUMN_GROUPID + " = " + listId;
+    }
 
-        // Create ListEntry object with the data read from the database
-        ListEntry entry = new ListEntry(
-                c.getInt(c.getColumnIndex(ListEntryTable.COLUMN_ID)),
-                c.getString(c.getColumnIndex(ListEntryTable.COLUMN_TITLE)),
-                c.getString(c.getColumnIndex(ListEntryTable.COLUMN_DESCRIPTION)),
-                c.getString(c.getColumnIndex(ListEntryTable.COLUMN_TIMESTAMP)),
-                c.getInt(c.getColumnIndex(ListEntryTable.COLUMN_ORDERINDEX)),
-                groupId);
-        entry.setAlarmDate(c.getString(c.getColumnIndex(ListEntryTable.COLUMN_ALARMDATE)));
-        Log.d(Utilities.getLogTag(), "Got entry with title: " + entry.getTitle());
+    /**
+     * Add a condition that excludes ListEntries by their ID to a selection
+     * @param selection The selection, may be empty
+     * @param excludedIds IDs of the ListEntries to be excluded
+     */
+    private static void appendExclusion(final StringBuilder selection,
+                                        final Collection<Integer> excludedIds) {
+        appendExclusion(selection, ListEntryTable.COLUMN_ID, excludedIds);
+    }
 
-        return entry;
+    /**
+     * Add a condition that excludes ListEntries by their ID to a selection
+     * @param selection The selection, may be empty
+     * @param idColumn Name of the ID column, qualified with the table name if necessary
+     * @param excludedIds IDs of the ListEntries to be excluded
+     */
+    private static void appendExclusion(final StringBuilder selection, final String idColumn,
+                                        final Collection<Integer> excludedIds) {
+        if (excludedIds == null || excludedIds.isEmpty()) {
+            return;
+        }
+        if (selection.length() > 0) {
+            selection.append(" AND ");
+        }
+        selection.append(idColumn).append(" NOT IN (")
+                .append(TextUtils.join(",", excludedIds)).append(")");
     }
 
     /**
-     * Creates a MyList object with the values returned by the cursor
-     * @param c Cursor from which the data is returned
-     * @return The new list
+     * Get an order index that sorts before all items matching the selection.
+     * If the order indices come close to the lower limit, the items are renumbered in the
+     * background. Only if there is no room left at all, they are renumbered right away.
+     * @param db The database, inside a transaction
+     * @param table Table of the items (ListEntryTable or ListTable)
+     * @param selection Selection of the items, e.g. all entries of a list, or null for all items
+     * @return The new order index
      */
-    private MyList getListFromCursor(final Cursor c) {
-        final MyList list = new MyList(
-                c.getInt(c.getColumnIndex(ListTable.COLUMN_ID)),
-                c.getString(c.getColumnIndex(ListTable.COLUMN_NAME)),
-                c.getInt((c.getColumnIndex(ListTable.COLUMN_ORDERINDEX))));
-        Log.d(Utilities.getLogTag(), "Got list with title: " + list.getTitle());
-        return list;
+    private int getTopOrderIndex(final SQLiteDatabase db, final String table,
+                                 final String selection) {
+        return getTopOrderIndex(db, table, selection, 1);
     }
 
     /**
-     * Return the number of rows in a table
-     * @param table Name of the table
-     * @return Number of rows in the table
+     * Get the first of several order indices, ORDER_INDEX_GAP apart, that all sort before
+     * the items matching the selection
+     * @param db The database, inside a transaction
+     * @param table Table of the items (ListEntryTable or ListTable)
+     * @param selection Selection of the items, e.g. all entries of a list, or null for all items
+     * @param count Number of new items
+     * @return The order index of the first new item
      */
-    @SuppressWarnings("SameParameterValue")
-    private int getCountFromTable(final String table) {
-        final SQLiteDatabase db = this.getReadableDatabase();
-        final int count = (int)DatabaseUtils.queryNumEntries(db, table);
-        db.close();
-        return count;
+    private int getTopOrderIndex(final SQLiteDatabase db, final String table,
+                                 final String selection, final int count) {
+        final long space = (long) ORDER_INDEX_GAP * count;
+        long orderIndex = getMinOrderIndex(db, table, selection) - space;
+        if (orderIndex < Integer.MIN_VALUE) {
+            renumberOrderIndices(db, table, selection);
+            // The cached items still have their old order indices
+            cache.clear();
+            orderIndex = getMinOrderIndex(db, table, selection) - space;
+        } else if (orderIndex < Integer.MIN_VALUE / 2) {
+            scheduleRenumbering(table, selection);
+        }
+        return (int) orderIndex;
     }
 
     /**
-     * Read all data from the database and return it as a List of two lists
-     * @return A List of two lists, first list contains all ListEntries, second list contains all lists
+     * Get the smallest order index of the items matching the selection
+     * @param db The database
+     * @param table Table of the items (ListEntryTable or ListTable)
+     * @param selection Selection of the items or null for all items
+     * @return The smallest order index, or ORDER_INDEX_GAP if there are no items
      */
-    final public List<List<?>> getFullDatabaseContent() {
-        final List<List<?>> data = new ArrayList<>();
-        final List<ListEntry> entries = getAllEntries();
-        final List<MyList> lists = getAllLists();
+    private static long getMinOrderIndex(final SQLiteDatabase db, final String table,
+                                         final String selection) {
+        return DatabaseUtils.longForQuery(db, getMinOrderIndexQuery(table, selection), null);
+    }
 
-        data.add(entries);
-        data.add(lists);
+    /**
+     * Build the query for the smallest order index of the items matching the selection
+     * @param table Table of the items (ListEntryTable or ListTable)
+     * @param selection Selection of the items or null for all items
+     * @return The query
+     */
+    static String getMinOrderIndexQuery(final String table, final String selection) {
+        return "SELECT IFNULL(MIN(" + ListEntryTable.COLUMN_ORDERINDEX + "), " +
+                ORDER_INDEX_GAP + ") FROM " + table +
+                (selection != null ? " WHERE " + selection : "");
+    }
 
-        return data;
+    /**
+     * Renumber the items matching the selection in the background
+     * @param table Table of the items (ListEntryTable or ListTable)
+     * @param selection Selection of the items or null for all items
+     */
+    private void scheduleRenumbering(final String table, final String selection) {
+        final String key = table + ":" + selection;
+        synchronized (pendingRebalances) {
+            if (!pendingRebalances.add(key)) {
+                return;
+            }
+        }
+        rebalanceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (pendingRebalances) {
+                    pendingRebalances.remove(key);
+                }
+                retain();
+                try {
+                    renumberOrderIndices(getWritableDatabase(), table, selection);
+                    cache.clear();
+                } finally {
+                    release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Assign evenly spaced order indices (0, ORDER_INDEX_GAP, 2 * ORDER_INDEX_GAP, ...) to the
+     * items matching the selection, keeping their current order.
+     * Both tables use the same names for the ID and order index columns.
+     * @param db The database
+     * @param table Table of the items (ListEntryTable or ListTable)
+     * @param selection Selection of the items or null for all items
+     */
+    private static void renumberOrderIndices(final SQLiteDatabase db, final String table,
+                                             final String selection) {
+        final SQLiteStatement update = db.compileStatement(getSetOrderIndexSql(table));
+        db.beginTransaction();
+        final Cursor cursor = db.query(table, new String[]{ListEntryTable.COLUMN_ID}, selection,
+                null, null, null, ORDER_BY_ORDER_INDEX);
+        try {
+            long orderIndex = 0;
+            while (cursor.moveToNext()) {
+                update.bindLong(1, orderIndex);
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+                orderIndex += ORDER_INDEX_GAP;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            cursor.close();
+            db.endTransaction();
+            update.close();
+        }
     }
 
     /**
-     * Delete and recreate database tables
+     * Move an item between two neighbours. The neighbours are given by their IDs, because
+     * positions in the view don't match the rows: swiped items are hidden, but stay in the
+     * database until their undo window closes. Usually, the moved item gets an order index
+     * between its neighbours, i.e. only one row is written. If there is no room between them,
+     * the items are renumbered first.
+     * @param table Table of the items (ListEntryTable or ListTable)
+     * @param selection Selection of the items, e.g. all entries of a list, or null for all items
+     * @param id ID of the moved item
+     * @param previousId ID of the item before it at the new position, or NO_ID
+     * @param nextId ID of the item after it at the new position, or NO_ID
      */
-    final public void cleanTables() {
+    private void reorder(final String table, final String selection, final int id,
+                         final int previousId, final int nextId) {
+        if (previousId == NO_ID && nextId == NO_ID) {
+            return;
+        }
         final SQLiteDatabase db = this.getWritableDatabase();
-        db.execSQL(ListEntryTable.DELETE_TABLE);
-        db.execSQL(ListTable.DELETE_TABLE);
-        db.execSQL(ListEntryTable.CREATE_TABLE);
-        db.execSQL(ListTable.CREATE_TABLE);
-        db.close();
+        db.beginTransaction();
+        try {
+            // The second attempt runs after the renumbering
+            for (int attempt = 0; attempt < 2; attempt++) {
+                final Long previous = getOrderIndex(db, table, previousId);
+                final Long next = getOrderIndex(db, table, nextId);
+                if ((previousId != NO_ID && previous == null) ||
+                        (nextId != NO_ID && next == null)) {
+                    Log.e(Utilities.getLogTag(), "Reorder neighbour not found: " + previousId +
+                            ", " + nextId);
+                    return;
+                }
+                long newOrderIndex;
+                boolean fits;
+                if (previous != null && next != null) {
+                    newOrderIndex = previous + (next - previous) / 2;
+                    fits = next - previous >= 2;
+                } else if (next != null) {
+                    newOrderIndex = next - ORDER_INDEX_GAP;
+                    fits = newOrderIndex >= Integer.MIN_VALUE;
+                } else {
+                    newOrderIndex = previous + ORDER_INDEX_GAP;
+                    fits = newOrderIndex <= Integer.MAX_VALUE;
+                }
+                if (fits) {
+                    executeUpdate(getSetOrderIndexSql(table), newOrderIndex, id);
+                    db.setTransactionSuccessful();
+                    return;
+                }
+                renumberOrderIndices(db, table, selection);
+                // The cached items still have their old order indices
+                cache.clear();
+            }
+            Log.e(Utilities.getLogTag(), "No room for reorder: " + previousId + ", " + nextId);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Read the order index of an item
+     * @param db The database
+     * @param table Table of the item (ListEntryTable or ListTable)
+     * @param id ID of the item or NO_ID
+     * @return The order index, null if there is no such item
+     */
+    private static Long getOrderIndex(final SQLiteDatabase db, final String table,
+                                      final int id) {
+        if (id == NO_ID) {
+            return null;
+        }
+        final Cursor cursor = db.query(table, new String[]{ListEntryTable.COLUMN_ORDERINDEX},
+                ListEntryTable.COLUMN_ID + " = ?", new String[]{String.valueOf(id)},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Build the statement that sets the order index of an item.
+     * Both tables use the same names for the ID and order index columns.
+     * @param table Table of the item (ListEntryTable or ListTable)
+     * @return The statement, the order index and the ID are its arguments
+     */
+    static String getSetOrderIndexSql(final String table) {
+        return "UPDATE " + table + " SET " + ListEntryTable.COLUMN_ORDERINDEX + " = ? WHERE " +
+                ListEntryTable.COLUMN_ID + " = ?";
+    }
+
+    /*
+     * Incremental backup
+     */
+
+    /**
+     * @return ID of the current backup chain, 0 if there is none
+     */
+    final public long getBackupChainId() {
+        return DatabaseUtils.longForQuery(this.getReadableDatabase(), "SELECT " +
+                BackupChainTable.COLUMN_CHAIN_ID + " FROM " + BackupChainTable.TABLE_NAME, null);
+    }
+
+    /**
+     * @return Number of delta files that were written after the base file of the current chain
+     */
+    final public int getBackupChainLength() {
+        return (int) DatabaseUtils.longForQuery(this.getReadableDatabase(), "SELECT " +
+                BackupChainTable.COLUMN_DELTA_COUNT + " FROM " + BackupChainTable.TABLE_NAME,
+                null);
     }
 
     /**
-     * Takes a nested ArrayList of strings that represent list entry data,
-     * parses it and inserts it into the database
-     * @param entries List of Maps containing the values of the entries
-     * @return True if all entries were successfully restored
+     * Get the sequence number of the newest recorded change
+     * @return The sequence number, 0 if nothing changed since the last incremental backup
      */
-    final public boolean parseAndStoreEntries(final List<Map<String, Object>> entries) {
+    final public long getChangeLogEnd() {
+        return DatabaseUtils.longForQuery(this.getReadableDatabase(), "SELECT IFNULL(MAX(" +
+                ChangeLogTable.COLUMN_SEQ + "), 0) FROM " + ChangeLogTable.TABLE_NAME, null);
+    }
+
+    /**
+     * Start a new backup chain before its base file is written. From now on, changes are
+     * recorded, including the ones made while the base file is written.
+     * @param chainId Random ID of the new chain, not 0
+     * @return The sequence number of the newest change that is contained in the base file
+     */
+    final public long startBackupChain(final long chainId) {
         final SQLiteDatabase db = this.getWritableDatabase();
-        int insertedEntries = 0;
+        final ContentValues values = new ContentValues();
+        values.put(BackupChainTable.COLUMN_CHAIN_ID, chainId);
+        values.put(BackupChainTable.COLUMN_DELTA_COUNT, 0);
+        db.update(BackupChainTable.TABLE_NAME, values, null, null);
+        return getChangeLogEnd();
+    }
 
-        for(final Map<String, Object> entry : entries) {
-            final ContentValues values = new ContentValues();
+    /**
+     * Record that a delta file containing the changes up to a sequence number was written
+     * @param logEnd Sequence number of the newest change in the delta file
+     */
+    final public void extendBackupChain(final long logEnd) {
+        final SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("UPDATE " + BackupChainTable.TABLE_NAME + " SET " +
+                    BackupChainTable.COLUMN_DELTA_COUNT + " = " +
+                    BackupChainTable.COLUMN_DELTA_COUNT + " + 1");
+            trimChangeLog(logEnd);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Forget the changes that are contained in a backup file
+     * @param logEnd Sequence number of the newest change in the backup file
+     */
+    final public void trimChangeLog(final long logEnd) {
+        this.getWritableDatabase().delete(ChangeLogTable.TABLE_NAME,
+                ChangeLogTable.COLUMN_SEQ + " <= ?", new String[]{String.valueOf(logEnd)});
+    }
 
-            if (entry.containsKey(Constants.DESCRIPTION_KEY) && entry.get(Constants.DESCRIPTION_KEY) != null) {
-                values.put(ListEntryTable.COLUMN_DESCRIPTION,
-                        String.valueOf(entry.get(Constants.DESCRIPTION_KEY)));
+    /**
+     * End the backup chain, e.g. after its base file couldn't be written.
+     * The next incremental backup writes a new base file.
+     */
+    final public void endBackupChain() {
+        resetBackupChain(this.getWritableDatabase());
+    }
+
+    /**
+     * Get the changes since the last incremental backup. The rows are looked up by the IDs in
+     * the change log, so reading them takes time proportional to the number of changes.
+     * @param logEnd Sequence number of the newest change that is included
+     * @return The current version of the changed rows and the IDs of the deleted ones
+     */
+    final public DeltaSource getChanges(final long logEnd) {
+        final String[] args = {String.valueOf(logEnd)};
+        return new DeltaSource() {
+            @Override
+            public void forEachEntry(RowConsumer<ListEntry> consumer) throws IOException {
+                final Cursor cursor = getReadableDatabase().rawQuery(getChangedRowsQuery(
+                        ListEntryTable.TABLE_NAME, ChangeLogTable.KIND_ENTRY), args);
+                forEach(cursor, new ListEntryMapper(cursor), consumer);
             }
 
-            if (entry.containsKey(Constants.LISTID_KEY) && entry.get(Constants.LISTID_KEY) != null) {
-                values.put(ListEntryTable.COLUMN_GROUPID,
-                            (int)(Float.parseFloat(String.valueOf(entry.get(Constants.LISTID_KEY)))));
+            @Override
+            public void forEachList(RowConsumer<MyList> consumer) throws IOException {
+                final Cursor cursor = getReadableDatabase().rawQuery(getChangedRowsQuery(
+                        ListTable.TABLE_NAME, ChangeLogTable.KIND_LIST), args);
+                forEach(cursor, new MyListMapper(cursor), consumer);
             }
-            if (entry.containsKey(Constants.TITLE_KEY) && entry.get(Constants.TITLE_KEY) != null) {
-                values.put(ListEntryTable.COLUMN_TITLE,
-                           String.valueOf(entry.get(Constants.TITLE_KEY)));
+
+            @Override
+            public void forEachDeletedEntry(RowConsumer<Integer> consumer) throws IOException {
+                forEach(getReadableDatabase().rawQuery(getDeletedRowsQuery(
+                        ListEntryTable.TABLE_NAME, ChangeLogTable.KIND_ENTRY), args),
+                        ID_MAPPER, consumer);
             }
-            if (entry.containsKey(Constants.ID_KEY) && entry.get(Constants.ID_KEY) != null) {
-                values.put(ListEntryTable.COLUMN_ID,
-                        (int)(Float.parseFloat(String.valueOf(entry.get(Constants.ID_KEY)))));
+
+            @Override
+            public void forEachDeletedList(RowConsumer<Integer> consumer) throws IOException {
+                forEach(getReadableDatabase().rawQuery(getDeletedRowsQuery(
+                        ListTable.TABLE_NAME, ChangeLogTable.KIND_LIST), args),
+                        ID_MAPPER, consumer);
             }
-            if (entry.containsKey(Constants.MODIFICATIONDATE_KEY) && entry.get(Constants.MODIFICATIONDATE_KEY) != null) {
-                values.put(ListEntryTable.COLUMN_TIMESTAMP,
-                           String.valueOf(entry.get(Constants.MODIFICATIONDATE_KEY)));
+        };
+    }
+
+    /**
+     * Build the query for the rows of a table that changed up to a sequence number
+     * @param table ListEntryTable or ListTable, both have the same name for the ID column
+     * @param kind Kind of the rows in the change log
+     * @return The query, the sequence number is its only argument
+     */
+    private static String getChangedRowsQuery(final String table, final int kind) {
+        return "SELECT t.* FROM " + ChangeLogTable.TABLE_NAME + " l JOIN " + table +
+                " t ON t." + ListTable.COLUMN_ID + " = l." + ChangeLogTable.COLUMN_ROW_ID +
+                " WHERE l." + ChangeLogTable.COLUMN_KIND + " = " + kind + " AND l." +
+                ChangeLogTable.COLUMN_SEQ + " <= ?";
+    }
+
+    /**
+     * Build the query for the IDs of the rows of a table that were deleted up to a sequence
+     * number. A row counts as deleted if it changed and doesn't exist anymore.
+     * @param table ListEntryTable or ListTable, both have the same name for the ID column
+     * @param kind Kind of the rows in the change log
+     * @return The query, the sequence number is its only argument
+     */
+    private static String getDeletedRowsQuery(final String table, final int kind) {
+        return "SELECT " + ChangeLogTable.COLUMN_ROW_ID + " FROM " + ChangeLogTable.TABLE_NAME +
+                " l WHERE " + ChangeLogTable.COLUMN_KIND + " = " + kind + " AND " +
+                ChangeLogTable.COLUMN_SEQ + " <= ? AND NOT EXISTS (SELECT 1 FROM " + table +
+                " t WHERE t." + ListTable.COLUMN_ID + " = l." + ChangeLogTable.COLUMN_ROW_ID +
+                ")";
+    }
+
+    /*
+     * Compiled statements
+     */
+
+    /**
+     * Run a single-row UPDATE with a statement that is compiled once per connection
+     * @param sql The UPDATE statement, one of the constants
+     * @param args Values for the placeholders, null for NULL
+     * @return The number of affected rows
+     */
+    private int executeUpdate(final String sql, final Object... args) {
+        final SQLiteDatabase db = this.getWritableDatabase();
+        final SQLiteStatement statement = getStatement(sql);
+        // A statement can only be executed by one thread at a time. The lock is only taken
+        // inside a transaction, i.e. while holding the connection, so that a thread waiting
+        // for the lock never holds the connection that the owner of the lock waits for.
+        db.beginTransaction();
+        try {
+            final int affectedRows;
+            synchronized (statement) {
+                statement.clearBindings();
+                for (int i = 0; i < args.length; i++) {
+                    DatabaseUtils.bindObjectToProgram(statement, i + 1, args[i]);
+                }
+                affectedRows = statement.executeUpdateDelete();
             }
-            if (entry.containsKey(Constants.ORDERINDEX_KEY) && entry.get(Constants.ORDERINDEX_KEY) != null) {
-                values.put(ListEntryTable.COLUMN_ORDERINDEX,
-                        (int)(Float.parseFloat(String.valueOf(entry.get("orderIndex")))));
+            db.setTransactionSuccessful();
+            return affectedRows;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Get the compiled statement for some SQL, compile it on first use
+     * @param sql The SQL
+     * @return The compiled statement for the current connection
+     */
+    private SQLiteStatement getStatement(final String sql) {
+        final SQLiteDatabase db = this.getWritableDatabase();
+        synchronized (statements) {
+            if (statementsDb != db) {
+                // The connection was reopened, the old statements can't be used anymore
+                closeStatements();
+                statementsDb = db;
             }
-            final long insertedId = db.insert(ListEntryTable.TABLE_NAME, null, values);
-            if (insertedId > -1) {
-                insertedEntries++;
+            SQLiteStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = db.compileStatement(sql);
+                statements.put(sql, statement);
             }
-            Log.d(Utilities.getLogTag(), "Restored ListEntry with ID: " +
-                    values.getAsString(ListEntryTable.COLUMN_ID) + " and title: " +
-                    values.getAsString(ListEntryTable.COLUMN_TITLE));
+            return statement;
         }
-        db.close();
-        return insertedEntries == entries.size();
     }
 
     /**
-     * Takes a nested ArrayList of strings that represent list data,
-     * parses it and inserts it into the database
-     * @param lists List of Maps containing the values of the lists
-     * @return True if all entries were successfully restored
+     * Release the compiled statements, e.g. before the connection is closed
      */
-    final public boolean parseAndRestoreLists(final List<Map<String, Object>> lists) {
-        final SQLiteDatabase db = this.getWritableDatabase();
-        int insertedLists = 0;
+    private void closeStatements() {
+        synchronized (statements) {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+            statementsDb = null;
+        }
+    }
+
+    /**
+     * Convert the dense order indices of DB version 2 to sparse order indices.
+     * Entries are numbered per list, lists are numbered globally.
+     * @param db The database
+     */
+    private static void migrateToSparseOrderIndices(final SQLiteDatabase db) {
+        final Cursor cursor = db.query(true, ListEntryTable.TABLE_NAME,
+                new String[]{ListEntryTable.COLUMN_GROUPID}, null, null,
+                null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                renumberOrderIndices(db, ListEntryTable.TABLE_NAME,
+                        getListSelection(cursor.getInt(0)));
+            }
+        } finally {
+            cursor.close();
+        }
+        renumberOrderIndices(db, ListTable.TABLE_NAME, null);
+    }
 
-        for(final Map<String, Object> list : lists) {
-            final ContentValues values = new ContentValues();
+    /*
+     * Helper
+     */
 
-            if (list.containsKey(Constants.ID_KEY) && list.get(Constants.ID_KEY) != null) {
-                values.put(ListTable.COLUMN_ID,
-                        (int)(Float.parseFloat(String.valueOf(list.get(Constants.ID_KEY)))));
+    /**
+     * Convert all rows of a cursor into model objects and close the cursor
+     * @param cursor The cursor
+     * @param mapper The mapper that was created for the cursor
+     * @return List of the model objects, in the order of the cursor
+     */
+    private static <T> List<T> readAll(final Cursor cursor, final RowMapper<T> mapper) {
+        final List<T> items = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                items.add(mapper.map(cursor));
             }
-            if (list.containsKey(Constants.TITLE_KEY) && list.get(Constants.TITLE_KEY) != null) {
-                values.put(ListTable.COLUMN_NAME,
-                           String.valueOf(list.get(Constants.TITLE_KEY)));
+        } finally {
+            cursor.close();
+        }
+        return items;
+    }
+
+    /**
+     * Pass all rows of a cursor as model objects to a consumer and close the cursor
+     * @param cursor The cursor
+     * @param mapper The mapper that was created for the cursor
+     * @param consumer Receives the model objects, in the order of the cursor
+     * @throws IOException If the consumer fails
+     */
+    private static <T> void forEach(final Cursor cursor, final RowMapper<T> mapper,
+                                    final RowConsumer<T> consumer) throws IOException {
+        try {
+            while (cursor.moveToNext()) {
+                consumer.accept(mapper.map(cursor));
             }
-            if (list.containsKey(Constants.ORDERINDEX_KEY) && list.get(Constants.ORDERINDEX_KEY) != null) {
-                values.put(ListEntryTable.COLUMN_ORDERINDEX,
-                        (int)(Float.parseFloat(String.valueOf(list.get(Constants.ORDERINDEX_KEY)))));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the number of rows in a table
+     * @param table Name of the table
+     * @return Number of rows in the table
+     */
+    private int getCountFromTable(final String table) {
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final int count = (int)DatabaseUtils.queryNumEntries(db, table);
+        return count;
+    }
+
+    /**
+     * Pass all ListEntries to a consumer, ordered by list and by the order index within a list.
+     * The ListEntries are read from a cursor one by one, so memory use doesn't depend on
+     * the number of ListEntries.
+     * @param consumer Receives the ListEntries
+     * @throws IOException If the consumer fails, the cursor is closed in any case
+     */
+    @Override
+    final public void forEachEntry(final RowConsumer<ListEntry> consumer) throws IOException {
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final Cursor cursor = db.query(ListEntryTable.TABLE_NAME, null, null, null, null, null,
+                ListEntryTable.COLUMN_GROUPID + " " + Constants.DIRECTION_ASCENDING + ", " +
+                        ORDER_BY_ORDER_INDEX);
+        assert cursor != null;
+        forEach(cursor, new ListEntryMapper(cursor), consumer);
+    }
+
+    /**
+     * Pass all lists to a consumer, ordered ascending by the order index
+     * @param consumer Receives the lists
+     * @throws IOException If the consumer fails, the cursor is closed in any case
+     */
+    @Override
+    final public void forEachList(final RowConsumer<MyList> consumer) throws IOException {
+        final SQLiteDatabase db = this.getReadableDatabase();
+        final Cursor cursor = db.query(ListTable.TABLE_NAME, null, null, null, null, null,
+                ORDER_BY_ORDER_INDEX);
+        assert cursor != null;
+        forEach(cursor, new MyListMapper(cursor), consumer);
+    }
+
+    /**
+     * Build a database file from a backup, next to the live database. The live database isn't
+     * touched, so it can still be read and written meanwhile. The rows are inserted through
+     * compiled statements, the indexes and the full-text index are only built once all rows
+     * are inserted. If the backup can't be read completely, no file is left behind.
+     * @param reader Reads the backup
+     * @return The checked file, to be swapped in with replaceDatabase()
+     * @throws IOException If the backup can't be read or a row can't be inserted
+     */
+    final public File createFromBackup(final BackupReader reader) throws IOException {
+        return createFromBackup(reader, Collections.<DeltaReader>emptyList());
+    }
+
+    /**
+     * Build a database file from an incremental backup: the base file and the deltas that were
+     * written after it, in the order they were written. See createFromBackup(BackupReader).
+     * The restored database has no backup chain, the next incremental backup starts a new one.
+     * @param base Reads the base file
+     * @param deltas Read the deltas
+     * @return The checked file, to be swapped in with replaceDatabase()
+     * @throws IOException If the backup can't be read or a row can't be restored
+     */
+    final public File createFromBackup(final BackupReader base,
+                                       final List<? extends DeltaReader> deltas)
+            throws IOException {
+        final File restored = context.getDatabasePath(getDatabaseName() + RESTORED_SUFFIX);
+        // Left over if the app was stopped during an earlier restore
+        SQLiteDatabase.deleteDatabase(restored);
+        final SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(restored, null);
+        boolean success = false;
+        try {
+            db.beginTransaction();
+            try {
+                db.execSQL(ListEntryTable.CREATE_TABLE);
+                db.execSQL(ListTable.CREATE_TABLE);
+                fillFromBackup(db, base, deltas);
+                createIndexes(db);
+                createSearchIndex(db);
+                db.execSQL(ListEntryFtsTable.REBUILD);
+                createChangeLog(db);
+                // The helper doesn't upgrade the file when it is opened after the swap
+                db.setVersion(DATABASE_VERSION);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (!db.isDatabaseIntegrityOk()) {
+                throw new IOException("Restored database failed the integrity check");
             }
+            success = true;
+        } finally {
+            db.close();
+            if (!success) {
+                SQLiteDatabase.deleteDatabase(restored);
+            }
+        }
+        return restored;
+    }
 
-            final long insertedId = db.insert(ListTable.TABLE_NAME, null, values);
-            if (insertedId > -1) {
-                insertedLists++;
+    /**
+     * Replace the live database file with a restored one. Reads and writes that run at the same
+     * time would use the closed connection or reopen the old file, so no query may run during
+     * the swap. Has to be called in a Query of the ListRepository, whose other Queries then run
+     * before or after it. The other handles, i.e. those of acquire() and of the renumberings,
+     * have to be released first. The swap holds the lock of this helper, which
+     * getReadableDatabase(), getWritableDatabase() and close() use as well. All other readers,
+     * including the page queries of PagedEntryList, run in Queries of the ListRepository or
+     * hold a handle of acquire(), so none of them is waiting on the main thread.
+     * The rename is atomic: if the app is stopped, either the old or the new file is used.
+     * @param restored The file created by createFromBackup()
+     * @throws IOException If the file can't be swapped in, the live database is kept then
+     */
+    final public void replaceDatabase(final File restored) throws IOException {
+        final File live = context.getDatabasePath(getDatabaseName());
+        final boolean renamed;
+        synchronized (DatabaseHelper.class) {
+            // The Query that calls this holds a handle itself
+            waitForReleases(1);
+            synchronized (this) {
+                close();
+                // After a clean close, the journal of the old file isn't needed anymore.
+                // It must not be applied to the new file.
+                deleteAuxiliaryFiles(live);
+                renamed = restored.renameTo(live);
+                deleteAuxiliaryFiles(restored);
+                cache.clear();
+                // Reopened before the lock is given up, so that no query can open the
+                // connection in between. Either the new or the kept old file.
+                getWritableDatabase();
+            }
+        }
+        if (!renamed) {
+            SQLiteDatabase.deleteDatabase(restored);
+            throw new IOException("Restored database couldn't be renamed");
+        }
+    }
+
+    /**
+     * Wait until all handles obtained through acquire() or retain() are released, except for
+     * the ones of the caller. Has to be called while holding the lock of the DatabaseHelper
+     * class.
+     * @param ownHandles Number of handles held by the caller
+     * @throws IOException If the handles aren't released in time
+     */
+    private void waitForReleases(final int ownHandles) throws IOException {
+        final long deadline = System.currentTimeMillis() + RELEASE_TIMEOUT_MILLIS;
+        while (references > ownHandles) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("Database is still in use");
+            }
+            try {
+                DatabaseHelper.class.wait(remaining);
+            } catch (InterruptedException ex) {
+                throw new IOException("Interrupted while waiting for the database", ex);
+            }
+        }
+    }
+
+    /**
+     * Delete the journal files that belong to a database file
+     * @param database The database file
+     */
+    private static void deleteAuxiliaryFiles(final File database) {
+        for (String suffix : new String[] {"-journal", "-wal", "-shm"}) {
+            final File file = new File(database.getPath() + suffix);
+            if (file.exists() && !file.delete()) {
+                Log.d(Utilities.getLogTag(), "Not deleted: " + file);
+            }
+        }
+    }
+
+    /**
+     * Insert the rows of a backup into a new database
+     * @param db The new database
+     * @param base Reads the complete backup or the base file of an incremental backup
+     * @param deltas Read the deltas of an incremental backup
+     * @throws IOException If the backup can't be read or a row can't be restored
+     */
+    private static void fillFromBackup(final SQLiteDatabase db, final BackupReader base,
+                                       final List<? extends DeltaReader> deltas)
+            throws IOException {
+        final SQLiteStatement insertEntry = db.compileStatement(SQL_RESTORE_ENTRY);
+        final SQLiteStatement insertList = db.compileStatement(SQL_RESTORE_LIST);
+        final SQLiteStatement deleteEntry = db.compileStatement(SQL_RESTORE_DELETE_ENTRY);
+        final SQLiteStatement deleteList = db.compileStatement(SQL_RESTORE_DELETE_LIST);
+        try {
+            final RowConsumer<ListEntry> entries = new RowConsumer<ListEntry>() {
+                @Override
+                public void accept(ListEntry entry) throws IOException {
+                    bindIdOrNull(insertEntry, 1, entry.getId());
+                    bindStringOrNull(insertEntry, 2, entry.getTitle());
+                    bindStringOrNull(insertEntry, 3, entry.getDescription());
+                    // ListEntries without a readable date count as modified now
+                    insertEntry.bindLong(4, entry.getModificationDate() != 0 ?
+                            entry.getModificationDate() : System.currentTimeMillis());
+                    insertEntry.bindLong(5, entry.getOrderIndex());
+                    insertEntry.bindLong(6, entry.getListId());
+                    if (insertEntry.executeInsert() == -1) {
+                        throw new IOException("ListEntry " + entry.getId() + " not restored");
+                    }
+                }
+            };
+            final RowConsumer<MyList> lists = new RowConsumer<MyList>() {
+                @Override
+                public void accept(MyList list) throws IOException {
+                    bindIdOrNull(insertList, 1, list.getId());
+                    bindStringOrNull(insertList, 2, list.getTitle());
+                    insertList.bindLong(3, list.getOrderIndex());
+                    if (insertList.executeInsert() == -1) {
+                        throw new IOException("List " + list.getId() + " not restored");
+                    }
+                }
+            };
+            base.read(entries, lists);
+            for (DeltaReader delta : deltas) {
+                delta.read(entries, lists, new RowConsumer<Integer>() {
+                    @Override
+                    public void accept(Integer id) {
+                        deleteEntry.bindLong(1, id);
+                        deleteEntry.executeUpdateDelete();
+                    }
+                }, new RowConsumer<Integer>() {
+                    @Override
+                    public void accept(Integer id) {
+                        deleteList.bindLong(1, id);
+                        deleteList.executeUpdateDelete();
+                    }
+                });
             }
+        } finally {
+            insertEntry.close();
+            insertList.close();
+            deleteEntry.close();
+            deleteList.close();
+        }
+    }
+
+    /**
+     * Bind an ID, so that a missing ID (0) is assigned by the database
+     */
+    private static void bindIdOrNull(final SQLiteStatement statement, final int index,
+                                     final int id) {
+        if (id > 0) {
+            statement.bindLong(index, id);
+        } else {
+            statement.bindNull(index);
+        }
+    }
 
-            Log.d(Utilities.getLogTag(), "Restored list with ID: " +
-                    values.getAsString(ListTable.COLUMN_ID) + " and title: " +
-                    values.getAsString(ListTable.COLUMN_NAME));
+    private static void bindStringOrNull(final SQLiteStatement statement, final int index,
+                                         final String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
         }
-        db.close();
-        return insertedLists == lists.size();
     }
-}
\ No newline at end of file
+
+    /**
+     * Create the full-text index of the ListEntries and the triggers that keep it up to date.
+     * Restored ListEntries are indexed by the triggers as well.
+     * @param db The database
+     */
+    private static void createSearchIndex(final SQLiteDatabase db) {
+        db.execSQL(ListEntryFtsTable.CREATE_TABLE);
+        db.execSQL(ListEntryFtsTable.CREATE_TRIGGER_BEFORE_UPDATE);
+        db.execSQL(ListEntryFtsTable.CREATE_TRIGGER_BEFORE_DELETE);
+        db.execSQL(ListEntryFtsTable.CREATE_TRIGGER_AFTER_UPDATE);
+        db.execSQL(ListEntryFtsTable.CREATE_TRIGGER_AFTER_INSERT);
+    }
+
+    /**
+     * Create the state of the incremental backup and the change log with its triggers
+     * @param db The database
+     */
+    private static void createChangeLog(final SQLiteDatabase db) {
+        db.execSQL(BackupChainTable.CREATE_TABLE);
+        db.execSQL(BackupChainTable.INSERT_ROW);
+        db.execSQL(ChangeLogTable.CREATE_TABLE);
+        db.execSQL(ChangeLogTable.CREATE_TRIGGER_ENTRY_INSERT);
+        db.execSQL(ChangeLogTable.CREATE_TRIGGER_ENTRY_UPDATE);
+        db.execSQL(ChangeLogTable.CREATE_TRIGGER_ENTRY_DELETE);
+        db.execSQL(ChangeLogTable.CREATE_TRIGGER_LIST_INSERT);
+        db.execSQL(ChangeLogTable.CREATE_TRIGGER_LIST_UPDATE);
+        db.execSQL(ChangeLogTable.CREATE_TRIGGER_LIST_DELETE);
+    }
+
+    /**
+     * End the backup chain, which stops recording changes, and clear the change log
+     * @param db The database
+     */
+    private static void resetBackupChain(final SQLiteDatabase db) {
+        final ContentValues values = new ContentValues();
+        values.put(BackupChainTable.COLUMN_CHAIN_ID, 0);
+        values.put(BackupChainTable.COLUMN_DELTA_COUNT, 0);
+        db.update(BackupChainTable.TABLE_NAME, values, null, null);
+        db.delete(ChangeLogTable.TABLE_NAME, null, null);
+    }
+
+    /**
+     * Create the indexes for the columns that are used for filtering and sorting
+     * @param db The database
+     */
+    private static void createIndexes(final SQLiteDatabase db) {
+        db.execSQL(ListEntryTable.CREATE_INDEX_GROUPID_ORDERINDEX);
+        db.execSQL(ListEntryTable.CREATE_INDEX_TIMESTAMP);
+        db.execSQL(ListEntryTable.CREATE_INDEX_ALARMDATE);
+        db.execSQL(ListTable.CREATE_INDEX_ORDERINDEX);
+    }
+
+    /**
+     * Convert the timestamps and alarm dates from formatted local time Strings to INTEGER
+     * milliseconds since the epoch. SQLite can't change the type of a column, so the table is
+     * copied into a new one.
+     * @param db The database
+     */
+    private static void migrateToEpochMillis(final SQLiteDatabase db) {
+        final String oldTable = ListEntryTable.TABLE_NAME + "_old";
+        db.execSQL("ALTER TABLE " + ListEntryTable.TABLE_NAME + " RENAME TO " + oldTable);
+        db.execSQL(ListEntryTable.CREATE_TABLE);
+        // The Strings are in local time, strftime() with the 'utc' modifier converts them.
+        // A timestamp that can't be read is replaced by the current time.
+        db.execSQL("INSERT INTO " + ListEntryTable.TABLE_NAME + "(" +
+                ListEntryTable.COLUMN_ID + ", " + ListEntryTable.COLUMN_TITLE + ", " +
+                ListEntryTable.COLUMN_DESCRIPTION + ", " + ListEntryTable.COLUMN_TIMESTAMP + ", " +
+                ListEntryTable.COLUMN_ORDERINDEX + ", " + ListEntryTable.COLUMN_GROUPID + ", " +
+                ListEntryTable.COLUMN_ALARMDATE + ") SELECT " +
+                ListEntryTable.COLUMN_ID + ", " + ListEntryTable.COLUMN_TITLE + ", " +
+                ListEntryTable.COLUMN_DESCRIPTION + ", " +
+                "IFNULL(CAST(strftime('%s', " + ListEntryTable.COLUMN_TIMESTAMP +
+                ", 'utc') AS INTEGER) * 1000, CAST(strftime('%s', 'now') AS INTEGER) * 1000), " +
+                ListEntryTable.COLUMN_ORDERINDEX + ", " + ListEntryTable.COLUMN_GROUPID + ", " +
+                "CAST(strftime('%s', " + ListEntryTable.COLUMN_ALARMDATE +
+                ", 'utc') AS INTEGER) * 1000 FROM " + oldTable);
+        // Keep the AUTOINCREMENT counter, so IDs of deleted entries are not reused
+        db.execSQL("UPDATE sqlite_sequence SET seq = (SELECT seq FROM sqlite_sequence WHERE " +
+                "name = '" + oldTable + "') WHERE name = '" + ListEntryTable.TABLE_NAME + "'");
+        // Dropping the old table also drops its indexes
+        db.execSQL("DROP TABLE " + oldTable);
+        createIndexes(db);
+    }
+}
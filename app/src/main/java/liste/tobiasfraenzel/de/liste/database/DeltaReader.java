@@ -0,0 +1,21 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.IOException;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+
+// Reads a delta file of an incremental backup, the counterpart of DeltaSource
+interface DeltaReader {
+    /**
+     * Read the whole delta
+     * @param entries Receives the inserted or updated ListEntries
+     * @param lists Receives the inserted or updated lists
+     * @param deletedEntries Receives the IDs of the deleted ListEntries
+     * @param deletedLists Receives the IDs of the deleted lists
+     * @throws IOException If the delta can't be read or is malformed
+     */
+    void read(RowConsumer<ListEntry> entries, RowConsumer<MyList> lists,
+              RowConsumer<Integer> deletedEntries, RowConsumer<Integer> deletedLists)
+            throws IOException;
+}
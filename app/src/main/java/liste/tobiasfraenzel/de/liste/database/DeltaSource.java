@@ -0,0 +1,21 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.IOException;
+
+// The changes that are written into a delta file of an incremental backup: the ListEntries
+// and lists that were inserted or updated, and the IDs of the ones that were deleted
+interface DeltaSource extends BackupSource {
+    /**
+     * Pass the IDs of all deleted ListEntries to a consumer
+     * @param consumer Receives the IDs
+     * @throws IOException If the consumer fails
+     */
+    void forEachDeletedEntry(RowConsumer<Integer> consumer) throws IOException;
+
+    /**
+     * Pass the IDs of all deleted lists to a consumer
+     * @param consumer Receives the IDs
+     * @throws IOException If the consumer fails
+     */
+    void forEachDeletedList(RowConsumer<Integer> consumer) throws IOException;
+}
@@ -0,0 +1,148 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+import liste.tobiasfraenzel.de.liste.utils.Constants;
+import liste.tobiasfraenzel.de.liste.utils.DateCodec;
+import liste.tobiasfraenzel.de.liste.utils.Utilities;
+
+// Reads backup.json: an array containing an array of all ListEntries and an array of all lists.
+// The records are decoded one by one into typed fields, unknown keys are skipped.
+class JsonBackupReader implements BackupReader {
+    final private Reader in;
+
+    /**
+     * @param in The backup file, closed by the caller
+     */
+    JsonBackupReader(final Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public void read(final RowConsumer<ListEntry> entries, final RowConsumer<MyList> lists)
+            throws IOException {
+        final JsonReader json = new JsonReader(in);
+        json.beginArray();
+        json.beginArray();
+        while (json.hasNext()) {
+            entries.accept(readEntry(json));
+        }
+        json.endArray();
+        json.beginArray();
+        while (json.hasNext()) {
+            lists.accept(readList(json));
+        }
+        json.endArray();
+        json.endArray();
+    }
+
+    /**
+     * Read a ListEntry. The alarm date isn't restored, as in earlier versions.
+     * @param json The reader, positioned before the object of the ListEntry
+     * @return The ListEntry, with ID 0 if the backup doesn't contain one
+     * @throws IOException If the ListEntry can't be read
+     */
+    private static ListEntry readEntry(final JsonReader json) throws IOException {
+        int id = 0;
+        String title = null;
+        String description = null;
+        long modificationDate = 0;
+        int orderIndex = 0;
+        int listId = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case Constants.ID_KEY:
+                    id = json.nextInt();
+                    break;
+                case Constants.TITLE_KEY:
+                    title = json.nextString();
+                    break;
+                case Constants.DESCRIPTION_KEY:
+                    description = json.nextString();
+                    break;
+                case Constants.MODIFICATIONDATE_KEY:
+                    modificationDate = readDate(json, Constants.TIMESTAMP_DATE_FORMAT);
+                    break;
+                case Constants.ORDERINDEX_KEY:
+                    orderIndex = json.nextInt();
+                    break;
+                case Constants.LISTID_KEY:
+                    listId = json.nextInt();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return new ListEntry(id, title, description, modificationDate, orderIndex, listId);
+    }
+
+    /**
+     * Read a list
+     * @param json The reader, positioned before the object of the list
+     * @return The list, with ID 0 if the backup doesn't contain one
+     * @throws IOException If the list can't be read
+     */
+    private static MyList readList(final JsonReader json) throws IOException {
+        final MyList list = new MyList();
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case Constants.ID_KEY:
+                    list.setId(json.nextInt());
+                    break;
+                case Constants.TITLE_KEY:
+                    list.setTitle(json.nextString());
+                    break;
+                case Constants.ORDERINDEX_KEY:
+                    list.setOrderIndex(json.nextInt());
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return list;
+    }
+
+    /**
+     * Read a date. Older backups contain formatted dates, newer ones may contain
+     * the milliseconds as a number.
+     * @param json The reader, positioned before the date
+     * @param format Format of the date if it is a String
+     * @return The date in milliseconds or 0 if it can't be read
+     * @throws IOException If the value can't be read
+     */
+    private static long readDate(final JsonReader json, final String format) throws IOException {
+        if (json.peek() == JsonToken.NUMBER) {
+            return json.nextLong();
+        }
+        final String value = json.nextString();
+        try {
+            return DateCodec.parse(format, value);
+        } catch (ParseException e) {
+            Log.e(Utilities.getLogTag(), "ParseException on this date: " + value);
+            return 0;
+        }
+    }
+}
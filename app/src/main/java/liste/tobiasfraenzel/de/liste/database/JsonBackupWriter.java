@@ -0,0 +1,89 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+import liste.tobiasfraenzel.de.liste.utils.Constants;
+import liste.tobiasfraenzel.de.liste.utils.DateCodec;
+
+// Writes backup.json: an array containing an array of all ListEntries and an array of all lists.
+// The rows are written while they are read from the source.
+class JsonBackupWriter implements BackupWriter {
+    final private Writer out;
+
+    /**
+     * @param out The backup file, closed by the caller
+     */
+    JsonBackupWriter(final Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(final BackupSource source) throws IOException {
+        final JsonWriter json = new JsonWriter(out);
+        // Escaped and without null values, like Gson.toJson() did before
+        json.setHtmlSafe(true);
+        json.setSerializeNulls(false);
+        json.beginArray();
+        json.beginArray();
+        source.forEachEntry(new RowConsumer<ListEntry>() {
+            @Override
+            public void accept(ListEntry entry) throws IOException {
+                writeEntry(json, entry);
+            }
+        });
+        json.endArray();
+        json.beginArray();
+        source.forEachList(new RowConsumer<MyList>() {
+            @Override
+            public void accept(MyList list) throws IOException {
+                writeList(json, list);
+            }
+        });
+        json.endArray();
+        json.endArray();
+        json.flush();
+    }
+
+    /**
+     * Write a ListEntry with its dates formatted as in backups of older versions,
+     * so backups stay readable by them
+     * @param json Receives the ListEntry
+     * @param entry The ListEntry
+     * @throws IOException If the ListEntry can't be written
+     */
+    private static void writeEntry(final JsonWriter json, final ListEntry entry)
+            throws IOException {
+        json.beginObject();
+        json.name(Constants.DESCRIPTION_KEY).value(entry.getDescription());
+        if (entry.hasAlarm()) {
+            json.name(Constants.ALARMDATE_KEY)
+                    .value(DateCodec.format(Constants.ALARM_DATE_FORMAT, entry.getAlarmDate()));
+        }
+        json.name(Constants.MODIFICATIONDATE_KEY).value(
+                DateCodec.format(Constants.TIMESTAMP_DATE_FORMAT, entry.getModificationDate()));
+        json.name(Constants.LISTID_KEY).value(entry.getListId());
+        json.name(Constants.ID_KEY).value(entry.getId());
+        json.name(Constants.TITLE_KEY).value(entry.getTitle());
+        json.name(Constants.ORDERINDEX_KEY).value(entry.getOrderIndex());
+        json.endObject();
+    }
+
+    /**
+     * Write a list with the same keys that Gson used for MyList objects
+     * @param json Receives the list
+     * @param list The list
+     * @throws IOException If the list can't be written
+     */
+    private static void writeList(final JsonWriter json, final MyList list) throws IOException {
+        json.beginObject();
+        json.name(Constants.ID_KEY).value(list.getId());
+        json.name(Constants.TITLE_KEY).value(list.getTitle());
+        json.name(Constants.ORDERINDEX_KEY).value(list.getOrderIndex());
+        json.endObject();
+    }
+}
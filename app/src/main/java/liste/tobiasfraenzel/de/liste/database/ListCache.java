@@ -0,0 +1,281 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.MyList;
+
+// In-memory copy of the lists and of the first page of the recently viewed lists.
+// Kept up to date by the DatabaseHelper on every write. Only copies are handed out,
+// so callers can change the returned objects without affecting the cache.
+class ListCache {
+    // Number of lists whose first page is kept
+    private static final int MAX_CACHED_LISTS = 8;
+
+    // Number and first page of the ListEntries of a list
+    private static class EntryPage {
+        final private int count;
+        final private int limit;
+        final private List<ListEntry> entries;
+
+        private EntryPage(final int count, final int limit, final List<ListEntry> entries) {
+            this.count = count;
+            this.limit = limit;
+            this.entries = entries;
+        }
+    }
+
+    // All lists ordered by the order index or null if they are not loaded
+    private List<MyList> lists = null;
+    // Count and first page of the recently viewed lists by list ID
+    final private LruCache<Integer, EntryPage> entryPages = new LruCache<>(MAX_CACHED_LISTS);
+    // Counts of the entry pages that were loaded, but whose first page is not loaded yet
+    final private LruCache<Integer, Integer> entryCounts = new LruCache<>(MAX_CACHED_LISTS);
+    // Incremented on every change, so that a result that was read from the database before
+    // a concurrent write isn't stored
+    private int generation = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * Get the current generation, to be passed to the put methods after reading from the database
+     * @return The generation
+     */
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Get all lists
+     * @return Copies of the lists or null if they are not cached
+     */
+    synchronized List<MyList> getLists() {
+        if (lists == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        final List<MyList> copy = new ArrayList<>(lists.size());
+        for (MyList list : lists) {
+            copy.add(copyOf(list));
+        }
+        return copy;
+    }
+
+    /**
+     * Get a list
+     * @param id ID of the list
+     * @return A copy of the list or null if it is not cached
+     */
+    synchronized MyList getList(final long id) {
+        if (lists != null) {
+            for (MyList list : lists) {
+                if (list.getId() == id) {
+                    hitCount++;
+                    return copyOf(list);
+                }
+            }
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Store all lists
+     * @param lists The lists as read from the database, ordered by the order index
+     * @param generation The generation before the lists were read
+     */
+    synchronized void putLists(final List<MyList> lists, final int generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        this.lists = new ArrayList<>(lists.size());
+        for (MyList list : lists) {
+            this.lists.add(copyOf(list));
+        }
+    }
+
+    /**
+     * Add a new list at the top
+     * @param list The list as read from the database
+     */
+    synchronized void addList(final MyList list) {
+        generation++;
+        if (lists != null && list != null) {
+            lists.add(0, copyOf(list));
+        }
+    }
+
+    /**
+     * Update the title of a list, the order index is only changed through invalidateLists()
+     * @param list The list with the new title
+     */
+    synchronized void updateList(final MyList list) {
+        generation++;
+        if (lists == null) {
+            return;
+        }
+        for (MyList cached : lists) {
+            if (cached.getId() == list.getId()) {
+                cached.setTitle(list.getTitle());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove a list and its ListEntries
+     * @param id ID of the list
+     */
+    synchronized void removeList(final int id) {
+        generation++;
+        if (lists != null) {
+            for (int i = 0; i < lists.size(); i++) {
+                if (lists.get(i).getId() == id) {
+                    lists.remove(i);
+                    break;
+                }
+            }
+        }
+        entryPages.remove(id);
+        entryCounts.remove(id);
+    }
+
+    /**
+     * Drop the lists, e.g. after their order changed
+     */
+    synchronized void invalidateLists() {
+        generation++;
+        lists = null;
+    }
+
+    /**
+     * Get the number of ListEntries of a list
+     * @param listId ID of the list
+     * @return The number or null if it is not cached
+     */
+    synchronized Integer getEntryCount(final int listId) {
+        final EntryPage page = entryPages.get(listId);
+        final Integer count = page != null ? Integer.valueOf(page.count) : entryCounts.get(listId);
+        if (count == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return count;
+    }
+
+    /**
+     * Store the number of ListEntries of a list
+     * @param listId ID of the list
+     * @param count The number as read from the database
+     * @param generation The generation before the number was read
+     */
+    synchronized void putEntryCount(final int listId, final int count, final int generation) {
+        if (generation == this.generation) {
+            entryCounts.put(listId, count);
+        }
+    }
+
+    /**
+     * Get the first page of the ListEntries of a list
+     * @param listId ID of the list
+     * @param limit Size of the page
+     * @return Copies of the ListEntries or null if they are not cached
+     */
+    synchronized List<ListEntry> getFirstEntryPage(final int listId, final int limit) {
+        final EntryPage page = entryPages.get(listId);
+        if (page == null || page.limit != limit) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        final List<ListEntry> copy = new ArrayList<>(page.entries.size());
+        for (ListEntry entry : page.entries) {
+            copy.add(copyOf(entry));
+        }
+        return copy;
+    }
+
+    /**
+     * Store the first page of the ListEntries of a list. Only stored if the number of
+     * ListEntries of the list is cached as well.
+     * @param listId ID of the list
+     * @param limit Size of the page
+     * @param entries The ListEntries as read from the database
+     * @param generation The generation before the ListEntries were read
+     */
+    synchronized void putFirstEntryPage(final int listId, final int limit,
+                                        final List<ListEntry> entries, final int generation) {
+        final Integer count = entryCounts.get(listId);
+        if (generation != this.generation || count == null) {
+            return;
+        }
+        final List<ListEntry> copy = new ArrayList<>(entries.size());
+        for (ListEntry entry : entries) {
+            copy.add(copyOf(entry));
+        }
+        entryPages.put(listId, new EntryPage(count, limit, copy));
+    }
+
+    /**
+     * Drop the ListEntries of a list, e.g. after one of them was inserted, deleted or moved
+     * @param listId ID of the list
+     */
+    synchronized void invalidateEntries(final int listId) {
+        generation++;
+        entryPages.remove(listId);
+        entryCounts.remove(listId);
+    }
+
+    /**
+     * Drop the ListEntries of all lists
+     */
+    synchronized void invalidateAllEntries() {
+        generation++;
+        entryPages.evictAll();
+        entryCounts.evictAll();
+    }
+
+    /**
+     * Drop everything
+     */
+    synchronized void clear() {
+        invalidateLists();
+        invalidateAllEntries();
+    }
+
+    /**
+     * Get the number of lookups that were served from memory
+     * @return Number of hits
+     */
+    synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get the number of lookups that had to go to the database
+     * @return Number of misses
+     */
+    synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private static MyList copyOf(final MyList list) {
+        final MyList copy = new MyList(list.getId(), list.getTitle(), list.getOrderIndex());
+        copy.setEntryCount(list.getEntryCount());
+        return copy;
+    }
+
+    private static ListEntry copyOf(final ListEntry entry) {
+        final ListEntry copy = new ListEntry(entry.getId(), entry.getTitle(),
+                entry.getDescription(), entry.getModificationDate(), entry.getOrderIndex(),
+                entry.getListId());
+        copy.setAlarmDate(entry.getAlarmDate());
+        copy.setListName(entry.getListName());
+        return copy;
+    }
+}
@@ -0,0 +1,52 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.database.Cursor;
+
+import liste.tobiasfraenzel.de.liste.ListEntry;
+import liste.tobiasfraenzel.de.liste.database.model.ListEntryTable;
+
+// Creates ListEntry objects from the rows of a cursor over the ListEntryTable.
+// If the cursor also contains the name of the list, it is set on the ListEntries.
+// Queries that only read the keys of the ListEntries leave out the title and description.
+class ListEntryMapper implements RowMapper<ListEntry> {
+    // Alias of the list name column in queries that join the ListTable
+    static final String COLUMN_LIST_NAME = "list_name";
+
+    final private int idIndex;
+    final private int titleIndex;
+    final private int descriptionIndex;
+    final private int timestampIndex;
+    final private int orderIndexIndex;
+    final private int groupIdIndex;
+    final private int alarmDateIndex;
+    final private int listNameIndex;
+
+    ListEntryMapper(final Cursor c) {
+        idIndex = c.getColumnIndexOrThrow(ListEntryTable.COLUMN_ID);
+        titleIndex = c.getColumnIndex(ListEntryTable.COLUMN_TITLE);
+        descriptionIndex = c.getColumnIndex(ListEntryTable.COLUMN_DESCRIPTION);
+        timestampIndex = c.getColumnIndexOrThrow(ListEntryTable.COLUMN_TIMESTAMP);
+        orderIndexIndex = c.getColumnIndexOrThrow(ListEntryTable.COLUMN_ORDERINDEX);
+        groupIdIndex = c.getColumnIndexOrThrow(ListEntryTable.COLUMN_GROUPID);
+        alarmDateIndex = c.getColumnIndexOrThrow(ListEntryTable.COLUMN_ALARMDATE);
+        listNameIndex = c.getColumnIndex(COLUMN_LIST_NAME);
+    }
+
+    @Override
+    public ListEntry map(final Cursor c) {
+        final ListEntry entry = new ListEntry(
+                c.getInt(idIndex),
+                titleIndex >= 0 ? c.getString(titleIndex) : "",
+                descriptionIndex >= 0 ? c.getString(descriptionIndex) : "",
+                c.getLong(timestampIndex),
+                c.getInt(orderIndexIndex),
+                c.getInt(groupIdIndex));
+        if (!c.isNull(alarmDateIndex)) {
+            entry.setAlarmDate(c.getLong(alarmDateIndex));
+        }
+        if (listNameIndex >= 0) {
+            entry.setListName(c.getString(listNameIndex));
+        }
+        return entry;
+    }
+}
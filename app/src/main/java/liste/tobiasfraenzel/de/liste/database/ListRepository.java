@@ -0,0 +1,144 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs database work off the UI thread. All work is done one after the other on the same
+// background thread, so a read always sees the writes that were submitted before it.
+// The results are delivered on the main thread. Long work that only reads the database, e.g.
+// preparing a restore, runs on a second thread, so the lists can be used meanwhile.
+public class ListRepository {
+
+    /**
+     * Database work that is run in the background
+     * @param <T> Type of the result
+     */
+    public interface Query<T> {
+        /**
+         * Do the work, called on the background thread
+         * @param db The shared DatabaseHelper
+         * @return The result
+         */
+        T run(DatabaseHelper db);
+    }
+
+    /**
+     * Receives the result of a Query
+     * @param <T> Type of the result
+     */
+    public interface Callback<T> {
+        /**
+         * Called on the main thread, unless the task was cancelled
+         * @param result The result of the Query
+         */
+        void onResult(T result);
+    }
+
+    // Handle to a submitted Query that can be used to cancel it
+    public static class Task {
+        private volatile boolean cancelled = false;
+
+        /**
+         * Cancel the task. If it hasn't started yet, it won't run. If it has finished already,
+         * its result is not delivered. Has to be called on the main thread to guarantee the latter.
+         */
+        final public void cancel() {
+            cancelled = true;
+        }
+
+        final public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static ListRepository instance;
+    final private DatabaseHelper db;
+    final private ExecutorService executor = Executors.newSingleThreadExecutor();
+    final private ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    final private Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private ListRepository(final Context context) {
+        db = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Get the process-wide ListRepository
+     * @param context Any context, only its application context is kept
+     * @return The shared ListRepository
+     */
+    public static synchronized ListRepository getInstance(final Context context) {
+        if (instance == null) {
+            instance = new ListRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Run a Query in the background and deliver its result on the main thread
+     * @param query The Query
+     * @param callback Receives the result or null if the result is not needed
+     * @param <T> Type of the result
+     * @return The Task, to cancel it
+     */
+    final public <T> Task execute(final Query<T> query, final Callback<T> callback) {
+        return submit(executor, query, callback);
+    }
+
+    /**
+     * Run a long Query in the background without delaying the Queries passed to execute().
+     * It isn't ordered with them, so it must not write to the shared database.
+     * @param query The Query
+     * @param callback Receives the result or null if the result is not needed
+     * @param <T> Type of the result
+     * @return The Task, to cancel it
+     */
+    final public <T> Task executeInBackground(final Query<T> query, final Callback<T> callback) {
+        return submit(backgroundExecutor, query, callback);
+    }
+
+    /**
+     * Run a Query on an executor and deliver its result on the main thread
+     * @param target The executor that runs the Query
+     * @param query The Query
+     * @param callback Receives the result or null if the result is not needed
+     * @param <T> Type of the result
+     * @return The Task, to cancel it
+     */
+    private <T> Task submit(final ExecutorService target, final Query<T> query,
+                            final Callback<T> callback) {
+        final Task task = new Task();
+        target.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (task.isCancelled()) {
+                    return;
+                }
+                // Keeps a low memory close from closing the connection under the Query
+                db.retain();
+                final T result;
+                try {
+                    result = query.run(db);
+                } finally {
+                    db.release();
+                }
+                if (callback == null) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Checked again on the main thread, where cancel() is called as well
+                        if (!task.isCancelled()) {
+                            callback.onResult(result);
+                        }
+                    }
+                });
+            }
+        });
+        return task;
+    }
+}
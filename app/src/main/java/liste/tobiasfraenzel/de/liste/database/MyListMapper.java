@@ -0,0 +1,24 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.database.Cursor;
+
+import liste.tobiasfraenzel.de.liste.MyList;
+import liste.tobiasfraenzel.de.liste.database.model.ListTable;
+
+// Creates MyList objects from the rows of a cursor over the ListTable
+class MyListMapper implements RowMapper<MyList> {
+    final private int idIndex;
+    final private int nameIndex;
+    final private int orderIndexIndex;
+
+    MyListMapper(final Cursor c) {
+        idIndex = c.getColumnIndexOrThrow(ListTable.COLUMN_ID);
+        nameIndex = c.getColumnIndexOrThrow(ListTable.COLUMN_NAME);
+        orderIndexIndex = c.getColumnIndexOrThrow(ListTable.COLUMN_ORDERINDEX);
+    }
+
+    @Override
+    public MyList map(final Cursor c) {
+        return new MyList(c.getInt(idIndex), c.getString(nameIndex), c.getInt(orderIndexIndex));
+    }
+}
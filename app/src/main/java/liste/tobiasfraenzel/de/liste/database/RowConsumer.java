@@ -0,0 +1,14 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import java.io.IOException;
+
+// Receives model objects one by one while a cursor is walked, so that a whole table can be
+// processed (e.g. written into a backup) without holding all of its rows in memory
+interface RowConsumer<T> {
+    /**
+     * Process the model object of the current row
+     * @param item The model object
+     * @throws IOException If the model object can't be written
+     */
+    void accept(T item) throws IOException;
+}
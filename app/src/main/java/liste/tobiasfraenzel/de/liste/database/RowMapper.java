@@ -0,0 +1,14 @@
+package liste.tobiasfraenzel.de.liste.database;
+
+import android.database.Cursor;
+
+// Converts the rows of a cursor into model objects.
+// Implementations look up the column indices once, when they are created for a cursor.
+interface RowMapper<T> {
+    /**
+     * Create a model object from the current row of the cursor
+     * @param c The cursor the mapper was created for, positioned on a row
+     * @return The new model object
+     */
+    T map(Cursor c);
+}
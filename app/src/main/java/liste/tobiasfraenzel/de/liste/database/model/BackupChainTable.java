@@ -0,0 +1,30 @@
+package liste.tobiasfraenzel.de.liste.database.model;
+
+// State of the incremental backup, a single row. While a chain of backup files exists
+// (chain ID != 0), the ChangeLogTable records which rows changed since its last file.
+public class BackupChainTable {
+    public static final String TABLE_NAME = "backup_chain";
+    public static final String COLUMN_ID = "id";
+    // Random ID written into all files of the chain, 0 if there is no chain
+    public static final String COLUMN_CHAIN_ID = "chain_id";
+    // Number of delta files written after the base file
+    public static final String COLUMN_DELTA_COUNT = "delta_count";
+    // ID of the only row
+    public static final int ROW_ID = 1;
+
+    // Create table SQL
+    public static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + "("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY,"
+                    + COLUMN_CHAIN_ID + " INTEGER NOT NULL DEFAULT 0,"
+                    + COLUMN_DELTA_COUNT + " INTEGER NOT NULL DEFAULT 0"
+                    + ")";
+
+    // Insert the only row, without a chain
+    public static final String INSERT_ROW =
+            "INSERT OR IGNORE INTO " + TABLE_NAME + "(" + COLUMN_ID + ") VALUES (" + ROW_ID + ")";
+
+    // Delete table SQL
+    public static final String DELETE_TABLE =
+            "DROP TABLE IF EXISTS " + TABLE_NAME + ";";
+}
@@ -0,0 +1,77 @@
+package liste.tobiasfraenzel.de.liste.database.model;
+
+// IDs of the ListEntries and lists that were inserted, updated or deleted since the last
+// incremental backup, one row per item. Filled by triggers while a backup chain exists, see
+// BackupChainTable. Whether an item was deleted follows from its absence in its table.
+public class ChangeLogTable {
+    public static final String TABLE_NAME = "backup_log";
+    // Increases with every change. The triggers replace the row of an item on each change,
+    // so its sequence number is the one of its newest change.
+    public static final String COLUMN_SEQ = "seq";
+    public static final String COLUMN_KIND = "kind";
+    public static final String COLUMN_ROW_ID = "row_id";
+
+    // Values of COLUMN_KIND
+    public static final int KIND_ENTRY = 0;
+    public static final int KIND_LIST = 1;
+
+    // Create table SQL
+    public static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + "("
+                    + COLUMN_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                    + COLUMN_KIND + " INTEGER NOT NULL,"
+                    + COLUMN_ROW_ID + " INTEGER NOT NULL,"
+                    + "UNIQUE(" + COLUMN_KIND + ", " + COLUMN_ROW_ID + ")"
+                    + ")";
+
+    // Record changes of ListEntries
+    public static final String CREATE_TRIGGER_ENTRY_INSERT =
+            createTrigger("INSERT", ListEntryTable.TABLE_NAME, KIND_ENTRY, "new");
+    public static final String CREATE_TRIGGER_ENTRY_UPDATE =
+            createTrigger("UPDATE", ListEntryTable.TABLE_NAME, KIND_ENTRY, "new");
+    public static final String CREATE_TRIGGER_ENTRY_DELETE =
+            createTrigger("DELETE", ListEntryTable.TABLE_NAME, KIND_ENTRY, "old");
+
+    // Record changes of lists
+    public static final String CREATE_TRIGGER_LIST_INSERT =
+            createTrigger("INSERT", ListTable.TABLE_NAME, KIND_LIST, "new");
+    public static final String CREATE_TRIGGER_LIST_UPDATE =
+            createTrigger("UPDATE", ListTable.TABLE_NAME, KIND_LIST, "new");
+    public static final String CREATE_TRIGGER_LIST_DELETE =
+            createTrigger("DELETE", ListTable.TABLE_NAME, KIND_LIST, "old");
+
+    // Delete table SQL
+    public static final String DELETE_TABLE =
+            "DROP TABLE IF EXISTS " + TABLE_NAME + ";";
+
+    /**
+     * Create the SQL that deletes the recorded change of an item, run by the triggers
+     * @param kind KIND_ENTRY or KIND_LIST
+     * @param rowId Expression for the ID of the item
+     * @return The SQL
+     */
+    public static String deleteChange(final int kind, final String rowId) {
+        return "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_KIND + " = " + kind + " AND " +
+                COLUMN_ROW_ID + " = " + rowId;
+    }
+
+    /**
+     * Create the SQL of a trigger that records a change while a backup chain exists.
+     * The old row of the item is deleted explicitly instead of through a conflict clause,
+     * because the conflict clause of the statement that fires the trigger would override it.
+     * @param event INSERT, UPDATE or DELETE
+     * @param table The table of the items
+     * @param kind KIND_ENTRY or KIND_LIST
+     * @param row new or old, the row whose ID is recorded
+     * @return The SQL
+     */
+    private static String createTrigger(final String event, final String table, final int kind,
+                                        final String row) {
+        return "CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_" + table + "_" +
+                event.toLowerCase() + " AFTER " + event + " ON " + table + " WHEN (SELECT " +
+                BackupChainTable.COLUMN_CHAIN_ID + " FROM " + BackupChainTable.TABLE_NAME +
+                ") != 0 BEGIN " + deleteChange(kind, row + "." + ListTable.COLUMN_ID) + "; " +
+                "INSERT INTO " + TABLE_NAME + "(" + COLUMN_KIND + ", " + COLUMN_ROW_ID +
+                ") VALUES (" + kind + ", " + row + "." + ListTable.COLUMN_ID + "); END";
+    }
+}
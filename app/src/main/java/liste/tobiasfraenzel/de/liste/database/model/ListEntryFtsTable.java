@@ -0,0 +1,59 @@
+package liste.tobiasfraenzel.de.liste.database.model;
+
+// Full-text index over the titles and descriptions of the ListEntryTable.
+// The text itself is only stored in the ListEntryTable, the triggers keep the index in sync.
+public class ListEntryFtsTable {
+    public static final String TABLE_NAME = "entries_fts";
+    // The docid of a row is the ID of the ListEntry
+    public static final String COLUMN_DOCID = "docid";
+    public static final String COLUMN_TITLE = ListEntryTable.COLUMN_TITLE;
+    public static final String COLUMN_DESCRIPTION = ListEntryTable.COLUMN_DESCRIPTION;
+
+    // Create table SQL. The prefix indexes make the prefix queries used while typing fast.
+    public static final String CREATE_TABLE =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_NAME + " USING fts4("
+                    + "content=\"" + ListEntryTable.TABLE_NAME + "\", "
+                    + COLUMN_TITLE + ", "
+                    + COLUMN_DESCRIPTION + ", "
+                    + "tokenize=unicode61, "
+                    + "prefix=\"2,3\""
+                    + ")";
+
+    // Remove the old text from the index before a ListEntry is updated or deleted
+    public static final String CREATE_TRIGGER_BEFORE_UPDATE =
+            "CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_before_update BEFORE UPDATE OF "
+                    + ListEntryTable.COLUMN_TITLE + ", " + ListEntryTable.COLUMN_DESCRIPTION
+                    + " ON " + ListEntryTable.TABLE_NAME + " BEGIN "
+                    + "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_DOCID + " = old."
+                    + ListEntryTable.COLUMN_ID + "; END";
+    public static final String CREATE_TRIGGER_BEFORE_DELETE =
+            "CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_before_delete BEFORE DELETE ON "
+                    + ListEntryTable.TABLE_NAME + " BEGIN "
+                    + "DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_DOCID + " = old."
+                    + ListEntryTable.COLUMN_ID + "; END";
+
+    // Add the new text to the index after a ListEntry is inserted or updated
+    public static final String CREATE_TRIGGER_AFTER_UPDATE =
+            "CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_after_update AFTER UPDATE OF "
+                    + ListEntryTable.COLUMN_TITLE + ", " + ListEntryTable.COLUMN_DESCRIPTION
+                    + " ON " + ListEntryTable.TABLE_NAME + " BEGIN "
+                    + "INSERT INTO " + TABLE_NAME + "(" + COLUMN_DOCID + ", " + COLUMN_TITLE + ", "
+                    + COLUMN_DESCRIPTION + ") VALUES (new." + ListEntryTable.COLUMN_ID + ", new."
+                    + ListEntryTable.COLUMN_TITLE + ", new." + ListEntryTable.COLUMN_DESCRIPTION
+                    + "); END";
+    public static final String CREATE_TRIGGER_AFTER_INSERT =
+            "CREATE TRIGGER IF NOT EXISTS " + TABLE_NAME + "_after_insert AFTER INSERT ON "
+                    + ListEntryTable.TABLE_NAME + " BEGIN "
+                    + "INSERT INTO " + TABLE_NAME + "(" + COLUMN_DOCID + ", " + COLUMN_TITLE + ", "
+                    + COLUMN_DESCRIPTION + ") VALUES (new." + ListEntryTable.COLUMN_ID + ", new."
+                    + ListEntryTable.COLUMN_TITLE + ", new." + ListEntryTable.COLUMN_DESCRIPTION
+                    + "); END";
+
+    // Build the index from the current content of the ListEntryTable
+    public static final String REBUILD =
+            "INSERT INTO " + TABLE_NAME + "(" + TABLE_NAME + ") VALUES('rebuild')";
+
+    // Delete table SQL
+    public static final String DELETE_TABLE =
+            "DROP TABLE IF EXISTS " + TABLE_NAME + ";";
+}
@@ -13,18 +13,37 @@ public class ListEntryTable {
     @SuppressWarnings("SpellCheckingInspection")
     public static final String COLUMN_ALARMDATE = "alarmdate";
 
-    // Create table SQL
+    // Current time in milliseconds since the epoch
+    private static final String NOW_MILLIS = "(CAST(strftime('%s', 'now') AS INTEGER) * 1000)";
+
+    // Create table SQL. Timestamp and alarm date are stored in milliseconds since the epoch.
     public static final String CREATE_TABLE =
             "CREATE TABLE " + TABLE_NAME + "("
                     + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
                     + COLUMN_TITLE + " TEXT,"
                     + COLUMN_DESCRIPTION + " TEXT,"
-                    + COLUMN_TIMESTAMP + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
+                    + COLUMN_TIMESTAMP + " INTEGER DEFAULT " + NOW_MILLIS + ","
                     + COLUMN_ORDERINDEX + " INTEGER,"
                     + COLUMN_GROUPID + " INTEGER,"
-                    + COLUMN_ALARMDATE + " DATETIME DEFAULT NULL"
+                    + COLUMN_ALARMDATE + " INTEGER DEFAULT NULL"
                     + ")";
 
+    // Index for the entries of a list in display order
+    public static final String CREATE_INDEX_GROUPID_ORDERINDEX =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COLUMN_GROUPID + "_" +
+                    COLUMN_ORDERINDEX + " ON " + TABLE_NAME + "("
+                    + COLUMN_GROUPID + "," + COLUMN_ORDERINDEX + ")";
+
+    // Index for sorting by last modification
+    public static final String CREATE_INDEX_TIMESTAMP =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COLUMN_TIMESTAMP +
+                    " ON " + TABLE_NAME + "(" + COLUMN_TIMESTAMP + ")";
+
+    // Index for finding entries with a reminder
+    public static final String CREATE_INDEX_ALARMDATE =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COLUMN_ALARMDATE +
+                    " ON " + TABLE_NAME + "(" + COLUMN_ALARMDATE + ")";
+
     // Delete table SQL
     public static final String DELETE_TABLE =
             "DROP TABLE IF EXISTS " + TABLE_NAME + ";";
@@ -15,6 +15,11 @@ public class ListTable {
                     + COLUMN_ORDERINDEX + " INTEGER"
                     + ")";
 
+    // Index for the lists in display order
+    public static final String CREATE_INDEX_ORDERINDEX =
+            "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COLUMN_ORDERINDEX +
+                    " ON " + TABLE_NAME + "(" + COLUMN_ORDERINDEX + ")";
+
     // Delete table SQL
     public static final String DELETE_TABLE =
             "DROP TABLE IF EXISTS " + TABLE_NAME + ";";
@@ -0,0 +1,24 @@
+package liste.tobiasfraenzel.de.liste.database.model;
+
+// Marks that the ListEntries of lists deleted before DB version 7 still have to be purged.
+// Created by the upgrade and dropped once the last batch is deleted, so that a sweep that was
+// interrupted continues on the next start. The table stays empty, only its existence counts.
+public class OrphanSweepTable {
+    public static final String TABLE_NAME = "orphan_sweep";
+    public static final String COLUMN_ID = "id";
+
+    // Create table SQL
+    public static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + "("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY"
+                    + ")";
+
+    // Check whether the table exists, returns 1 if it does
+    public static final String EXISTS =
+            "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = '" +
+                    TABLE_NAME + "'";
+
+    // Delete table SQL
+    public static final String DELETE_TABLE =
+            "DROP TABLE IF EXISTS " + TABLE_NAME + ";";
+}
@@ -21,6 +21,8 @@ public final class Constants {
 
     // Backup
     public static final String BACKUP_FILE_NAME = "backup.json";
+    public static final String BINARY_BACKUP_FILE_NAME = "backup.bin";
+    public static final String INCREMENTAL_BACKUP_DIRECTORY = "incremental";
     // Backup keys
     public static final String DESCRIPTION_KEY = "description";
     @SuppressWarnings("SpellCheckingInspection")
@@ -31,6 +33,7 @@ public final class Constants {
     public static final String MODIFICATIONDATE_KEY = "modificationDate";
     @SuppressWarnings("SpellCheckingInspection")
     public static final String ORDERINDEX_KEY = "orderIndex";
+    public static final String ALARMDATE_KEY = "alarmDate";
 
     // Sort directions
     public static final String DIRECTION_ASCENDING = "ASC";
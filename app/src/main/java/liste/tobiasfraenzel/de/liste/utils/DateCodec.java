@@ -0,0 +1,292 @@
+package liste.tobiasfraenzel.de.liste.utils;
+
+import java.text.DateFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+// Formats and parses dates with formatters that are created once per thread instead of on
+// every call. The formatters follow the default locale and timezone, invalidate() has to be
+// called when one of them changes.
+// The fixed patterns of the Constants (e.g. yyyy-MM-dd HH:mm) only consist of numbers, they
+// are formatted and parsed without a SimpleDateFormat and without creating a Date.
+public class DateCodec {
+    // Incremented by invalidate(), the formatters of a thread are created again on their next use
+    private static volatile int generation = 0;
+
+    private static final ThreadLocal<Formats> FORMATS = new ThreadLocal<>();
+
+    // The formatters of one thread, for one locale and timezone
+    private static class Formats {
+        final private int generation;
+        final private Locale locale;
+        final private DateFormat localDate;
+        final private DateFormat localDateShort;
+        final private DateFormat localTime;
+        // SimpleDateFormats by pattern, for the patterns that aren't only numbers
+        final private Map<String, SimpleDateFormat> patterns = new HashMap<>();
+        final private Calendar calendar;
+        final private StringBuilder builder = new StringBuilder();
+        // The numeric fast path is only used if the locale writes numbers with 0-9
+        final private boolean asciiDigits;
+
+        private Formats(final int generation, final Locale locale) {
+            this.generation = generation;
+            this.locale = locale;
+            final TimeZone timeZone = TimeZone.getDefault();
+            localDate = DateFormat.getDateInstance(DateFormat.MEDIUM, locale);
+            localDate.setTimeZone(timeZone);
+            localDateShort = DateFormat.getDateInstance(DateFormat.SHORT, locale);
+            localDateShort.setTimeZone(timeZone);
+            localTime = DateFormat.getTimeInstance(DateFormat.SHORT, locale);
+            localTime.setTimeZone(timeZone);
+            calendar = Calendar.getInstance(timeZone, locale);
+            asciiDigits = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+        }
+
+        private SimpleDateFormat getPattern(final String pattern) {
+            SimpleDateFormat format = patterns.get(pattern);
+            if (format == null) {
+                format = new SimpleDateFormat(pattern, locale);
+                format.setTimeZone(calendar.getTimeZone());
+                patterns.put(pattern, format);
+            }
+            return format;
+        }
+    }
+
+    /**
+     * Drop the formatters of all threads, e.g. after the locale or the timezone changed
+     */
+    public static void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Get the formatters of the current thread
+     * @return The formatters for the current locale and timezone
+     */
+    private static Formats getFormats() {
+        Formats formats = FORMATS.get();
+        final Locale locale = Locale.getDefault();
+        if (formats == null || formats.generation != generation || formats.locale != locale) {
+            formats = new Formats(generation, locale);
+            FORMATS.set(formats);
+        }
+        return formats;
+    }
+
+    /**
+     * Format a date with a pattern
+     * @param pattern The pattern, e.g. Constants.ALARM_DATE_FORMAT
+     * @param millis Date in milliseconds since the epoch
+     * @return The formatted date
+     */
+    public static String format(final String pattern, final long millis) {
+        final Formats formats = getFormats();
+        if (formats.asciiDigits && isNumeric(pattern)) {
+            final Calendar calendar = formats.calendar;
+            final StringBuilder builder = formats.builder;
+            calendar.setTimeInMillis(millis);
+            builder.setLength(0);
+            for (int i = 0; i < pattern.length(); ) {
+                final char c = pattern.charAt(i);
+                final int length = runLength(pattern, i);
+                if (isField(c)) {
+                    appendPadded(builder, getField(calendar, c), length);
+                } else {
+                    builder.append(c);
+                }
+                i += length;
+            }
+            return builder.toString();
+        }
+        return formats.getPattern(pattern).format(new Date(millis));
+    }
+
+    /**
+     * Parse a date with a pattern
+     * @param pattern The pattern, e.g. Constants.ALARM_DATE_FORMAT
+     * @param text The formatted date
+     * @return The date in milliseconds since the epoch
+     * @throws ParseException If the text doesn't match the pattern
+     */
+    public static long parse(final String pattern, final String text) throws ParseException {
+        final Formats formats = getFormats();
+        if (formats.asciiDigits && isNumeric(pattern) && pattern.length() == text.length()) {
+            final Calendar calendar = formats.calendar;
+            calendar.clear();
+            boolean matches = true;
+            for (int i = 0; i < pattern.length() && matches; ) {
+                final char c = pattern.charAt(i);
+                final int length = runLength(pattern, i);
+                if (isField(c)) {
+                    final int value = parseDigits(text, i, length);
+                    matches = value >= 0;
+                    setField(calendar, c, value);
+                } else {
+                    matches = text.charAt(i) == c;
+                }
+                i += length;
+            }
+            if (matches) {
+                return calendar.getTimeInMillis();
+            }
+        }
+        // E.g. numbers without leading zeros, which SimpleDateFormat accepts as well
+        final Date date = formats.getPattern(pattern).parse(text);
+        if (date == null) {
+            throw new ParseException("Unparseable date: " + text, 0);
+        }
+        return date.getTime();
+    }
+
+    /**
+     * Format a date with the medium date format of the locale
+     * @param millis Date in milliseconds since the epoch
+     * @return The formatted date, e.g. Jun 20, 2020
+     */
+    public static String formatLocalDate(final long millis) {
+        return getFormats().localDate.format(new Date(millis));
+    }
+
+    /**
+     * Format a date with the short date format of the locale
+     * @param millis Date in milliseconds since the epoch
+     * @return The formatted date, e.g. 6/20/20
+     */
+    public static String formatLocalDateShort(final long millis) {
+        return getFormats().localDateShort.format(new Date(millis));
+    }
+
+    /**
+     * Format the time of a date with the short time format of the locale
+     * @param millis Date in milliseconds since the epoch
+     * @return The formatted time, e.g. 3:30 PM
+     */
+    public static String formatLocalTime(final long millis) {
+        return getFormats().localTime.format(new Date(millis));
+    }
+
+    /**
+     * Parse a date in the medium date format of the locale
+     * @param text The formatted date
+     * @return The date
+     * @throws ParseException If the text can't be parsed
+     */
+    public static Date parseLocalDate(final String text) throws ParseException {
+        return getFormats().localDate.parse(text);
+    }
+
+    /**
+     * Parse a time in the short time format of the locale
+     * @param text The formatted time
+     * @return The date with the time set
+     * @throws ParseException If the text can't be parsed
+     */
+    public static Date parseLocalTime(final String text) throws ParseException {
+        return getFormats().localTime.parse(text);
+    }
+
+    /**
+     * Check whether a pattern only consists of numeric fields and literals
+     * @param pattern The pattern
+     * @return True if the pattern can be formatted without a SimpleDateFormat
+     */
+    private static boolean isNumeric(final String pattern) {
+        for (int i = 0; i < pattern.length(); ) {
+            final char c = pattern.charAt(i);
+            final int length = runLength(pattern, i);
+            if (c == '\'' || (Character.isLetter(c) && !isField(c))) {
+                return false;
+            }
+            // Two-digit years are cut off by SimpleDateFormat
+            if (c == 'y' && length != 4) {
+                return false;
+            }
+            i += length;
+        }
+        return true;
+    }
+
+    private static boolean isField(final char c) {
+        return c == 'y' || c == 'M' || c == 'd' || c == 'H' || c == 'm' || c == 's';
+    }
+
+    /**
+     * Get the number of times a character is repeated in a pattern
+     * @param pattern The pattern
+     * @param start Position of the first occurrence
+     * @return The length of the run
+     */
+    private static int runLength(final String pattern, final int start) {
+        int end = start + 1;
+        while (end < pattern.length() && pattern.charAt(end) == pattern.charAt(start)) {
+            end++;
+        }
+        return end - start;
+    }
+
+    private static int getField(final Calendar calendar, final char field) {
+        switch (field) {
+            case 'y': return calendar.get(Calendar.YEAR);
+            case 'M': return calendar.get(Calendar.MONTH) + 1;
+            case 'd': return calendar.get(Calendar.DAY_OF_MONTH);
+            case 'H': return calendar.get(Calendar.HOUR_OF_DAY);
+            case 'm': return calendar.get(Calendar.MINUTE);
+            default: return calendar.get(Calendar.SECOND);
+        }
+    }
+
+    private static void setField(final Calendar calendar, final char field, final int value) {
+        switch (field) {
+            case 'y': calendar.set(Calendar.YEAR, value); break;
+            case 'M': calendar.set(Calendar.MONTH, value - 1); break;
+            case 'd': calendar.set(Calendar.DAY_OF_MONTH, value); break;
+            case 'H': calendar.set(Calendar.HOUR_OF_DAY, value); break;
+            case 'm': calendar.set(Calendar.MINUTE, value); break;
+            default: calendar.set(Calendar.SECOND, value); break;
+        }
+    }
+
+    /**
+     * Append a number with leading zeros
+     * @param builder Receives the digits
+     * @param value The number, not negative
+     * @param length Minimum number of digits
+     */
+    private static void appendPadded(final StringBuilder builder, final int value,
+                                     final int length) {
+        for (int limit = 10, digits = 1; digits < length; limit *= 10, digits++) {
+            if (value < limit) {
+                builder.append('0');
+            }
+        }
+        builder.append(value);
+    }
+
+    /**
+     * Read a number with a fixed number of digits
+     * @param text The text
+     * @param start Position of the first digit
+     * @param length Number of digits
+     * @return The number or -1 if one of the characters isn't a digit
+     */
+    private static int parseDigits(final String text, final int start, final int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
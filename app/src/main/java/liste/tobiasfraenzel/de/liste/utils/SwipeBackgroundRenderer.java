@@ -0,0 +1,128 @@
+package liste.tobiasfraenzel.de.liste.utils;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Objects;
+
+import liste.tobiasfraenzel.de.liste.R;
+
+import static java.lang.Math.abs;
+
+// Draws the background behind an item that is swiped to a side.
+// Created once per RecyclerView: the paints, icons and colors are loaded in the constructor,
+// drawing a frame only changes their alpha and bounds and doesn't allocate anything.
+public class SwipeBackgroundRenderer {
+    // alpha:    0.0f = invisible
+    //           1.0f = looks normal
+    // alphaInt:    0 = invisible
+    //            255 = looks normal
+    private static final float ALPHA_FULL = 1.0f;
+    private static final int ALPHA_INT_FULL = 255;
+
+    // Red background and recycling bin icon for the delete action
+    final private Paint deletePaint = new Paint();
+    final private Drawable binIcon;
+    // Green background and pencil icon for the edit action
+    final private Paint editPaint = new Paint();
+    final private Drawable pencilIcon;
+
+    public SwipeBackgroundRenderer(final Context context) {
+        deletePaint.setColor(ContextCompat.getColor(context, android.R.color.holo_red_light));
+        editPaint.setColor(ContextCompat.getColor(context, R.color.colorPrimary));
+        // Mutated, so that changing the alpha doesn't affect the icons elsewhere in the app
+        binIcon = Objects.requireNonNull(
+                ContextCompat.getDrawable(context, R.drawable.ic_action_delete)).mutate();
+        pencilIcon = Objects.requireNonNull(
+                ContextCompat.getDrawable(context, R.drawable.ic_action_edit_white)).mutate();
+    }
+
+    /**
+     * On left swipe, draw red background and show recycling bin icon, to indicate to the user
+     * that the item is about to be deleted
+     * On right swipe, draw green background and show pencil icon, to indicate to the user
+     * that the edit dialog will be opened
+     * @param c The canvas on which the colors are drawn
+     * @param viewHolder The ViewHolder describing the view for which the background is drawn
+     * @param dX Horizontal offset by which the item is swiped to a side
+     */
+    public void draw(final Canvas c, final RecyclerView.ViewHolder viewHolder, final float dX) {
+        final View itemView = viewHolder.itemView;
+        // The ViewHolder expects the alpha value in a range of 0.0f - 1.0f
+        final float alpha = ALPHA_FULL - abs(dX) / (float) itemView.getWidth();
+        // Paint and icon expect the alpha value in a range of 0 - 255, therefore,
+        // it is converted to this range. This process has two steps:
+        // Step 1: Convert from floats of 0 through 1 to a scale of ints from -255 through 0
+        // *2 is to make the background appear twice as fast as the foreground fades
+        int alphaInt = (int)(ALPHA_INT_FULL-(ALPHA_INT_FULL * alpha * 2));
+        // Step 2: Convert -255 through 0 to 0 through 255, returning 255 for all values >= 0
+        alphaInt = alphaInt < 0 ? ALPHA_INT_FULL - alphaInt * (-1) : ALPHA_INT_FULL;
+
+        if (dX > 0) {
+            drawBackgroundForRightSwipe(itemView, dX, alphaInt, c);
+        } else if (dX < 0) {
+            drawBackgroundForLeftSwipe(itemView, dX, alphaInt, c);
+        }
+
+        // Fade out the list item as it is swiped out
+        itemView.setAlpha(alpha);
+        itemView.setTranslationX(dX);
+    }
+
+    /**
+     * Draw a rectangle on the background, in the area where the item is swiped away to indicate
+     * the edit action that is triggered by the swipe
+     * @param itemView The item that is swiped
+     * @param dX Horizontal offset by which the item is swiped to a side
+     * @param alphaInt How much the background is faded (0-255)
+     * @param c The canvas on which the colors are drawn
+     */
+    private void drawBackgroundForRightSwipe(final View itemView, final float dX,
+                                             final int alphaInt, final Canvas c) {
+        // Draw rectangle with varying right side, equal to displacement dX
+        editPaint.setAlpha(alphaInt);
+        c.drawRect((float) itemView.getLeft(), (float) itemView.getTop(), dX,
+                (float) itemView.getBottom(), editPaint);
+        // Set the icon on the left side, for right swipe
+        final int left = itemView.getLeft();
+        final int top = itemView.getTop() - (itemView.getTop() - itemView.getBottom()) / 4;
+        final int bottom = itemView.getBottom() + (itemView.getTop() - itemView.getBottom()) / 4;
+        final int right = itemView.getLeft() + (bottom - top);
+
+        pencilIcon.setBounds(left, top , right, bottom);
+        pencilIcon.setAlpha(alphaInt);
+        pencilIcon.draw(c);
+    }
+
+    /**
+     * Draw a rectangle on the background, in the area where the item is swiped away to indicate
+     * the delete action that is triggered by the swipe
+     * @param itemView The item that is swiped
+     * @param dX Horizontal offset by which the item is swiped to a side
+     * @param alphaInt How much the background is faded (0-255)
+     * @param c The canvas on which the colors are drawn
+     */
+    private void drawBackgroundForLeftSwipe(final View itemView, final float dX,
+                                            final int alphaInt, final Canvas c) {
+        // Draw rectangle with varying left side, equal to the item's right side
+        // plus negative displacement dX
+        deletePaint.setAlpha(alphaInt);
+        c.drawRect((float) itemView.getRight() + dX, (float) itemView.getTop(),
+                (float) itemView.getRight(), (float) itemView.getBottom(), deletePaint);
+        // Set the icon on the right side, for left swipe
+        final int right = itemView.getRight();
+        final int top = itemView.getTop() - (itemView.getTop() - itemView.getBottom()) / 4;
+        final int bottom = itemView.getBottom() + (itemView.getTop() - itemView.getBottom()) / 4;
+        final int left = itemView.getRight() - (bottom - top);
+
+        binIcon.setBounds(left, top , right, bottom);
+        binIcon.setAlpha(alphaInt);
+        binIcon.draw(c);
+    }
+}